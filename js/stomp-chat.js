@@ -36,9 +36,11 @@ class SichrPlaceChat {
   /**
    * Connect to WebSocket server
    * @param {string} userId - Current user ID
+   * @param {Object} options - { compact: true } requests the compact frame encoding
    */
-  async connect(userId) {
+  async connect(userId, options = {}) {
     this.currentUserId = userId;
+    this.senderNames = {};
     const wsUrl = SichrPlaceAPI.CONFIG.WS_URL || `${SichrPlaceAPI.CONFIG.BASE_URL}/ws`;
     const token = SichrPlaceAPI.Auth.getToken();
 
@@ -50,6 +52,7 @@ class SichrPlaceChat {
         webSocketFactory: () => socket,
         connectHeaders: {
           Authorization: `Bearer ${token}`,
+          ...(options.compact ? { 'frame-encoding': 'compact' } : {}),
         },
         debug: (msg) => {
           if (window.SICHRPLACE_DEBUG) console.log('STOMP:', msg);
@@ -67,7 +70,7 @@ class SichrPlaceChat {
         // Subscribe to personal notification queue
         this.subscriptions['notifications'] = this.stompClient.subscribe(
           `/queue/notifications/${userId}`,
-          (message) => this._handleNotification(JSON.parse(message.body))
+          (message) => this._handleNotification(this._decode(message.body))
         );
 
         resolve(frame);
@@ -133,7 +136,7 @@ class SichrPlaceChat {
     // Subscribe to conversation messages
     this.subscriptions[`conv-${conversationId}`] = this.stompClient.subscribe(
       `/topic/conversation/${conversationId}`,
-      (message) => this._handleNewMessage(JSON.parse(message.body))
+      (message) => this._handleNewMessage(this._decode(message.body))
     );
 
     // Subscribe to typing indicators
@@ -258,6 +261,42 @@ class SichrPlaceChat {
   // Event Handlers (private)
   // ============================
 
+  /**
+   * Parse a frame body; compact frames (JSON arrays, see CompactFrameEncoder) are expanded
+   * back into the regular object shape so handlers see one format
+   */
+  _decode(body) {
+    const data = JSON.parse(body);
+    if (!Array.isArray(data)) return data;
+
+    const uuid = (s) => {
+      if (!s) return s;
+      const hex = Array.from(atob(s.replace(/-/g, '+').replace(/_/g, '/')),
+        (c) => c.charCodeAt(0).toString(16).padStart(2, '0')).join('');
+      return `${hex.slice(0, 8)}-${hex.slice(8, 12)}-${hex.slice(12, 16)}-${hex.slice(16, 20)}-${hex.slice(20)}`;
+    };
+    const iso = (ms) => (ms != null ? new Date(ms).toISOString() : null);
+
+    if (data[0] === 1) {
+      const [, id, conversationId, senderId, content, ts, senderName] = data;
+      const key = `${uuid(conversationId)}:${uuid(senderId)}`;
+      if (senderName) this.senderNames[key] = senderName;
+      return {
+        id: uuid(id),
+        conversationId: uuid(conversationId),
+        senderId: uuid(senderId),
+        senderName: this.senderNames[key],
+        content,
+        timestamp: iso(ts),
+      };
+    }
+    if (data[0] === 2) {
+      const [, id, type, title, message, priority, ts] = data;
+      return { id: uuid(id), type, title, message, priority, createdAt: iso(ts) };
+    }
+    return data;
+  }
+
   _handleNewMessage(message) {
     console.log('📨 New message:', message);
 
@@ -0,0 +1,156 @@
+package com.sichrplace.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sichrplace.dto.ChatDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.nio.ByteBuffer;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional compact encoding for chat and notification frames.
+ * A client opts in with a "frame-encoding: compact" header on CONNECT. Senders attach a
+ * pre-encoded compact body as a message header; this outbound interceptor swaps it in
+ * for opted-in sessions only, so everyone else keeps the regular JSON objects.
+ *
+ * Compact frames are JSON arrays with a numeric type first and 22-char base64url ids:
+ *   chat:         [1, id, conversationId, senderId, content, epochMillis, senderName?]
+ *   notification: [2, id, type, title, message, priority, epochMillis]
+ * senderName is only sent the first time a session sees that sender in a conversation.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CompactFrameEncoder implements ChannelInterceptor {
+
+    public static final String ENCODING_HEADER = "frame-encoding";
+    public static final String COMPACT = "compact";
+
+    public static final int TYPE_CHAT = 1;
+    public static final int TYPE_NOTIFICATION = 2;
+
+    private static final String FRAME_HEADER = "compactFrame";
+
+    private final ObjectMapper objectMapper;
+
+    // sessionId -> "conversationId:senderId" keys whose sender name was already delivered
+    private final Map<String, Set<String>> sessions = new ConcurrentHashMap<>();
+
+    // ===== SENDER SIDE =====
+
+    /**
+     * Headers for convertAndSend carrying the compact form of a chat message,
+     * or null when no connected session uses the compact encoding
+     */
+    public MessageHeaders chat(ChatDto.ChatNotification notification, OffsetDateTime createdAt) {
+        if (sessions.isEmpty()) return null;
+        List<Object> fields = new ArrayList<>(Arrays.asList(TYPE_CHAT,
+                shortId(notification.getId()),
+                shortId(notification.getConversationId()),
+                shortId(notification.getSenderId()),
+                notification.getContent(),
+                epochMillis(createdAt)));
+        byte[] abbreviated = write(fields);
+        fields.add(notification.getSenderName());
+        byte[] full = write(fields);
+        if (full == null || abbreviated == null) return null;
+        return headers(new CompactFrame(full, abbreviated,
+                notification.getConversationId() + ":" + notification.getSenderId()));
+    }
+
+    /**
+     * Headers for convertAndSendToUser carrying the compact form of a notification,
+     * or null when no connected session uses the compact encoding
+     */
+    public MessageHeaders notification(UUID id, String type, String title, String message,
+                                       String priority, OffsetDateTime createdAt) {
+        if (sessions.isEmpty()) return null;
+        byte[] body = write(Arrays.asList(TYPE_NOTIFICATION,
+                shortId(id.toString()), type, title, message, priority, epochMillis(createdAt)));
+        return body != null ? headers(new CompactFrame(body, body, null)) : null;
+    }
+
+    // ===== OUTBOUND INTERCEPTOR =====
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!(message.getHeaders().get(FRAME_HEADER) instanceof CompactFrame frame)) return message;
+        Set<String> namesSent = sessions.get(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        if (namesSent == null) return message;
+
+        byte[] payload = frame.senderKey() == null || namesSent.add(frame.senderKey())
+                ? frame.full() : frame.abbreviated();
+        return MessageBuilder.createMessage(payload, message.getHeaders());
+    }
+
+    // ===== SESSION LIFECYCLE =====
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (COMPACT.equalsIgnoreCase(accessor.getFirstNativeHeader(ENCODING_HEADER))
+                && accessor.getSessionId() != null) {
+            sessions.put(accessor.getSessionId(), ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    // ===== HELPERS =====
+
+    private static MessageHeaders headers(CompactFrame frame) {
+        // Custom (non-native) header: copied to each subscriber message, never written to the wire
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setHeader(FRAME_HEADER, frame);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    private byte[] write(List<Object> fields) {
+        try {
+            return objectMapper.writeValueAsBytes(fields);
+        } catch (JsonProcessingException e) {
+            log.warn("Compact frame encoding failed, sending regular JSON: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    static String shortId(String uuid) {
+        if (uuid == null) return null;
+        UUID id = UUID.fromString(uuid);
+        ByteBuffer bytes = ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+
+    private static Long epochMillis(OffsetDateTime time) {
+        return time != null ? time.toInstant().toEpochMilli() : null;
+    }
+
+    private record CompactFrame(byte[] full, byte[] abbreviated, String senderKey) {}
+}
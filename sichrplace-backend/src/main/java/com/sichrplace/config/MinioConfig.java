@@ -2,6 +2,7 @@ package com.sichrplace.config;
 
 import io.minio.BucketExistsArgs;
 import io.minio.MakeBucketArgs;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -30,6 +31,9 @@ public class MinioConfig {
     @Value("${minio.bucket.profiles}")
     private String profilesBucket;
 
+    @Value("${minio.bucket.exports:gdpr-exports}")
+    private String exportsBucket;
+
     @Bean
     public MinioClient minioClient() {
         MinioClient client = MinioClient.builder()
@@ -42,6 +46,7 @@ public class MinioConfig {
             createBucketIfNotExists(client, apartmentsBucket);
             createBucketIfNotExists(client, videosBucket);
             createBucketIfNotExists(client, profilesBucket);
+            createBucketIfNotExists(client, exportsBucket);
             log.info("MinIO buckets initialized successfully");
         } catch (Exception e) {
             log.warn("MinIO bucket initialization failed (will retry on first use): {}", e.getMessage());
@@ -50,6 +55,18 @@ public class MinioConfig {
         return client;
     }
 
+    /**
+     * Exposes the S3 multipart primitives (create / uploadPart / complete / abort) that
+     * MinioClient keeps internal; used by the streaming and resumable upload paths.
+     */
+    @Bean
+    public MinioAsyncClient minioAsyncClient() {
+        return MinioAsyncClient.builder()
+                .endpoint(endpoint)
+                .credentials(accessKey, secretKey)
+                .build();
+    }
+
     private void createBucketIfNotExists(MinioClient client, String bucket) throws Exception {
         if (!client.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
             client.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
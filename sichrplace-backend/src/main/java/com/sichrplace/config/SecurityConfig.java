@@ -53,8 +53,16 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 // Public endpoints
                 .requestMatchers("/api/auth/login", "/api/auth/register").permitAll()
+                .requestMatchers("/api/auth/verify-email", "/api/auth/resend-verification",
+                        "/api/auth/forgot-password", "/api/auth/verify-reset-token",
+                        "/api/auth/reset-password").permitAll()
                 .requestMatchers("/api/health", "/api-docs/**", "/swagger-ui/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/apartments", "/api/apartments/**").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/media/apartment-images/**").permitAll()
+                .requestMatchers(HttpMethod.HEAD, "/api/media/apartment-images/**").permitAll()
+                // Videos authorize by link token in the controller
+                .requestMatchers(HttpMethod.GET, "/api/videos/*", "/api/videos/*/stream").permitAll()
+                .requestMatchers(HttpMethod.HEAD, "/api/videos/*/stream").permitAll()
                 .requestMatchers("/ws/**").permitAll() // WebSocket
                 .requestMatchers("/actuator/health").permitAll()
                 // Admin only
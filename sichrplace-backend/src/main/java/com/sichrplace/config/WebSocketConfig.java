@@ -1,30 +1,147 @@
 package com.sichrplace.config;
 
+import com.sichrplace.security.StompAuthChannelInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompAuthChannelInterceptor stompAuthChannelInterceptor;
+    private final WebSocketSessionMonitor webSocketSessionMonitor;
+    private final CompactFrameEncoder compactFrameEncoder;
+    private final Environment environment;
+
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    @Value("${websocket.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    @Value("${websocket.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    @Value("${websocket.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${websocket.send-buffer-bytes:524288}")
+    private int sendBufferBytes;
+
+    @Value("${websocket.send-time-ms:15000}")
+    private int sendTimeMs;
+
+    @Value("${websocket.outbound.threads:8}")
+    private int outboundThreads;
+
+    @Value("${websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${websocket.sockjs.stream-bytes-limit:524288}")
+    private int sockJsStreamBytesLimit;
+
+    @Value("${websocket.sockjs.http-message-cache-size:500}")
+    private int sockJsMessageCacheSize;
+
+    @Value("${websocket.sockjs.disconnect-delay-ms:5000}")
+    private long sockJsDisconnectDelayMs;
+
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Lazy TaskScheduler messageBrokerTaskScheduler) {
+        this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple in-memory message broker for topics and queues
-        config.enableSimpleBroker("/topic", "/queue");
+        // Enable a simple in-memory message broker for topics and queues.
+        // Heartbeats let the broker close dead sessions, which drives presence to offline.
+        config.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[]{heartbeatMs, heartbeatMs})
+                .setTaskScheduler(messageBrokerTaskScheduler);
         // Prefix for messages FROM client to server
         config.setApplicationDestinationPrefixes("/app");
         // Prefix for user-specific messages
         config.setUserDestinationPrefix("/user");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // JWT on CONNECT + presence tracking
+        registration.interceptors(stompAuthChannelInterceptor);
+
+        // Virtual-thread mode: inbound handlers (DB writes in chat.send) get a thread each
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ws-inbound-");
+            executor.setVirtualThreads(true);
+            registration.executor(executor);
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Bounded pool + queue: a stuck client cannot grow the heap or hold every sender thread
+        registration.taskExecutor()
+                .corePoolSize(outboundThreads)
+                .maxPoolSize(outboundThreads)
+                .queueCapacity(outboundQueueCapacity);
+        registration.interceptors(webSocketSessionMonitor, compactFrameEncoder);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Per-session buffer/time limits: sessions that exceed them are closed
+        registration.setMessageSizeLimit(messageSizeLimit)
+                .setSendBufferSizeLimit(sendBufferBytes)
+                .setSendTimeLimit(sendTimeMs)
+                .addDecoratorFactory(webSocketSessionMonitor::decorate);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // WebSocket endpoint that clients connect to
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
-                .withSockJS(); // Fallback for browsers that don't support WebSocket
+                .setHandshakeHandler(handshakeHandler())
+                .withSockJS() // Fallback for browsers that don't support WebSocket
+                .setStreamBytesLimit(sockJsStreamBytesLimit)
+                .setHttpMessageCacheSize(sockJsMessageCacheSize)
+                .setDisconnectDelay(sockJsDisconnectDelayMs);
+    }
+
+    /**
+     * Negotiates permessage-deflate (RFC 7692) with clients that offer it; the container
+     * does the compression. websocket.compression.enabled=false strips it from the response.
+     */
+    private DefaultHandshakeHandler handshakeHandler() {
+        return new DefaultHandshakeHandler() {
+            @Override
+            protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                         List<WebSocketExtension> requested,
+                                                                         List<WebSocketExtension> supported) {
+                return super.filterRequestedExtensions(request, requested, supported).stream()
+                        .filter(e -> compressionEnabled || !PERMESSAGE_DEFLATE.equalsIgnoreCase(e.getName()))
+                        .toList();
+            }
+        };
     }
 }
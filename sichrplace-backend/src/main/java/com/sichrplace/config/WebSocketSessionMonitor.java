@@ -0,0 +1,207 @@
+package com.sichrplace.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-session outbound accounting for STOMP clients.
+ * Counts frames queued on the client outbound channel per session and how long the
+ * current socket write has been blocked. Sessions over either threshold are "slow":
+ * their non-critical frames (typing, presence) are dropped before they are queued, while
+ * chat frames still go through and are bounded by the transport's send buffer/time limit,
+ * which closes a session that stays stuck.
+ */
+@Component
+@Slf4j
+public class WebSocketSessionMonitor implements ExecutorChannelInterceptor {
+
+    @Value("${websocket.slow-consumer.send-time-ms:2000}")
+    private long slowSendMs;
+
+    @Value("${websocket.slow-consumer.queue-depth:50}")
+    private int slowQueueDepth;
+
+    private final Map<String, SessionStats> sessions = new ConcurrentHashMap<>();
+    private final Counter droppedFrames;
+
+    public WebSocketSessionMonitor(MeterRegistry meterRegistry) {
+        this.droppedFrames = Counter.builder("websocket.outbound.dropped")
+                .description("Non-critical frames dropped for slow consumers")
+                .register(meterRegistry);
+        Gauge.builder("websocket.sessions.active", sessions, Map::size)
+                .register(meterRegistry);
+        Gauge.builder("websocket.sessions.slow", this, WebSocketSessionMonitor::slowSessionCount)
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.queue.max", this, WebSocketSessionMonitor::maxQueueDepth)
+                .description("Deepest per-session outbound queue")
+                .register(meterRegistry);
+    }
+
+    // ===== TRANSPORT DECORATOR =====
+
+    /**
+     * WebSocketHandlerDecoratorFactory: registers each session and wraps it to time socket writes
+     */
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionStats stats = new SessionStats();
+                sessions.put(session.getId(), stats);
+                super.afterConnectionEstablished(new MonitoredSession(session, stats));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SessionStats stats = sessions.remove(session.getId());
+                if (stats != null && stats.dropped.sum() > 0) {
+                    log.debug("WebSocket session {} closed ({}), {} frames dropped",
+                            session.getId(), closeStatus, stats.dropped.sum());
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    // ===== CLIENT OUTBOUND CHANNEL =====
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SessionStats stats = statsFor(message);
+        if (stats == null) return message;
+
+        if (isNonCritical(message) && isSlow(stats)) {
+            stats.dropped.increment();
+            droppedFrames.increment();
+            return null;
+        }
+        stats.queued.incrementAndGet();
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        // Rejected by the executor (or a later interceptor): never reaches afterMessageHandled
+        if (!sent || ex != null) {
+            release(message);
+        }
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        release(message);
+    }
+
+    // ===== METRICS =====
+
+    /**
+     * Sessions with the deepest outbound queues, for the admin dashboard
+     */
+    public List<Map<String, Object>> snapshot(int limit) {
+        long now = System.currentTimeMillis();
+        return sessions.entrySet().stream()
+                .sorted(Comparator.comparingInt((Map.Entry<String, SessionStats> e) -> e.getValue().queued.get()).reversed())
+                .limit(limit)
+                .map(e -> {
+                    SessionStats stats = e.getValue();
+                    long started = stats.sendStartedAt;
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("sessionId", e.getKey());
+                    row.put("queued", stats.queued.get());
+                    row.put("sendBlockedMs", started == 0 ? 0 : now - started);
+                    row.put("bytesSent", stats.bytesSent.sum());
+                    row.put("dropped", stats.dropped.sum());
+                    row.put("slow", isSlow(stats));
+                    return row;
+                })
+                .toList();
+    }
+
+    private double slowSessionCount() {
+        return sessions.values().stream().filter(this::isSlow).count();
+    }
+
+    private double maxQueueDepth() {
+        return sessions.values().stream().mapToInt(s -> s.queued.get()).max().orElse(0);
+    }
+
+    private boolean isSlow(SessionStats stats) {
+        long started = stats.sendStartedAt;
+        return stats.queued.get() >= slowQueueDepth
+                || (started != 0 && System.currentTimeMillis() - started >= slowSendMs);
+    }
+
+    private static boolean isNonCritical(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        return destination != null && (destination.endsWith("/typing") || destination.endsWith("/presence"));
+    }
+
+    private SessionStats statsFor(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return sessionId != null ? sessions.get(sessionId) : null;
+    }
+
+    private void release(Message<?> message) {
+        SessionStats stats = statsFor(message);
+        if (stats != null) {
+            stats.queued.updateAndGet(n -> Math.max(0, n - 1));
+        }
+    }
+
+    private static final class SessionStats {
+        final AtomicInteger queued = new AtomicInteger();
+        final LongAdder bytesSent = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        volatile long sendStartedAt;
+    }
+
+    private static final class MonitoredSession extends WebSocketSessionDecorator {
+
+        private final SessionStats stats;
+
+        MonitoredSession(WebSocketSession delegate, SessionStats stats) {
+            super(delegate);
+            this.stats = stats;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            stats.sendStartedAt = System.currentTimeMillis();
+            try {
+                getDelegate().sendMessage(message);
+                stats.bytesSent.add(message.getPayloadLength());
+            } finally {
+                stats.sendStartedAt = 0;
+            }
+        }
+    }
+}
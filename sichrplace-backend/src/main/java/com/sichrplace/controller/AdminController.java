@@ -1,7 +1,14 @@
 package com.sichrplace.controller;
 
+import com.sichrplace.config.WebSocketSessionMonitor;
 import com.sichrplace.entity.User;
 import com.sichrplace.repository.*;
+import com.sichrplace.service.AdminStatsService;
+import com.sichrplace.service.BulkNotificationService;
+import com.sichrplace.service.EmailService;
+import com.sichrplace.service.LocalObjectCache;
+import com.sichrplace.service.MediaCleanupService;
+import com.sichrplace.service.NotificationRetentionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -16,18 +23,31 @@ import java.util.Map;
 public class AdminController {
 
     private final UserRepository userRepository;
-    private final ApartmentRepository apartmentRepository;
-    private final ViewingRequestRepository viewingRequestRepository;
     private final ReviewRepository reviewRepository;
+    private final WebSocketSessionMonitor webSocketSessionMonitor;
+    private final BulkNotificationService bulkNotificationService;
+    private final EmailService emailService;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final NotificationRetentionService notificationRetentionService;
+    private final LocalObjectCache localObjectCache;
+    private final MediaCleanupService mediaCleanupService;
+    private final AdminStatsService adminStatsService;
 
+    /**
+     * Served from maintained counters (see AdminStatsService), no table scans per refresh
+     */
     @GetMapping("/dashboard")
     public ResponseEntity<?> getDashboard() {
-        return ResponseEntity.ok(Map.of(
-                "totalUsers", userRepository.count(),
-                "totalApartments", apartmentRepository.count(),
-                "totalViewingRequests", viewingRequestRepository.count(),
-                "pendingReviews", reviewRepository.findByStatus("pending", org.springframework.data.domain.PageRequest.of(0, 1)).getTotalElements()
-        ));
+        return ResponseEntity.ok(adminStatsService.dashboard());
+    }
+
+    /**
+     * Recount the dashboard figures from the database now (normally every 15 minutes)
+     */
+    @PostMapping("/dashboard/reconcile")
+    public ResponseEntity<?> reconcileDashboard() {
+        adminStatsService.reconcile();
+        return ResponseEntity.ok(adminStatsService.dashboard());
     }
 
     @GetMapping("/users")
@@ -58,11 +78,94 @@ public class AdminController {
                                              @RequestBody Map<String, String> body) {
         return reviewRepository.findById(id)
                 .map(review -> {
+                    String previousStatus = review.getStatus();
                     review.setStatus(body.get("status"));
                     review.setModerationNote(body.get("note"));
                     reviewRepository.save(review);
+                    adminStatsService.reviewStatusChanged(previousStatus, review.getStatus());
                     return ResponseEntity.ok(Map.of("success", true));
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    @GetMapping("/websocket/sessions")
+    public ResponseEntity<?> getWebSocketSessions(@RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(webSocketSessionMonitor.snapshot(Math.min(limit, 500)));
+    }
+
+    /**
+     * Announcement to every active user; runs in the background, poll the returned job
+     */
+    @PostMapping("/notifications/broadcast")
+    public ResponseEntity<?> broadcast(@RequestBody Map<String, String> body) {
+        String title = body.get("title");
+        String message = body.get("message");
+        if (title == null || title.isBlank() || message == null || message.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "title and message are required"));
+        }
+        return ResponseEntity.accepted().body(bulkNotificationService.broadcast(
+                title, message, body.get("actionUrl"), body.get("priority")));
+    }
+
+    @GetMapping("/notifications/jobs")
+    public ResponseEntity<?> listNotificationJobs() {
+        return ResponseEntity.ok(bulkNotificationService.listJobs());
+    }
+
+    @GetMapping("/notifications/jobs/{id}")
+    public ResponseEntity<?> getNotificationJob(@PathVariable java.util.UUID id) {
+        return bulkNotificationService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Run notification compaction + retention now (normally nightly); returns the pass summary
+     */
+    @PostMapping("/notifications/retention/run")
+    public ResponseEntity<?> runNotificationRetention() {
+        return ResponseEntity.ok(notificationRetentionService.run());
+    }
+
+    /**
+     * Queue a test mail (end-to-end check against MailHog / the configured SMTP server)
+     */
+    @PostMapping("/email/test")
+    public ResponseEntity<?> sendTestEmail(@RequestBody Map<String, String> body) {
+        String to = body.get("to");
+        if (to == null || !to.contains("@")) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Valid 'to' address required"));
+        }
+        var queued = emailService.enqueue(to, "SichrPlace test email",
+                "This is a test message from the SichrPlace email outbox.", "test");
+        return ResponseEntity.accepted().body(Map.of("id", queued.getId()));
+    }
+
+    @GetMapping("/email/outbox")
+    public ResponseEntity<?> getEmailOutboxStats() {
+        Map<String, Long> counts = new java.util.TreeMap<>();
+        for (Object[] row : emailOutboxRepository.countByStatus()) {
+            counts.put((String) row[0], (Long) row[1]);
+        }
+        return ResponseEntity.ok(counts);
+    }
+
+    @GetMapping("/storage/cache")
+    public ResponseEntity<?> getStorageCacheStats() {
+        return ResponseEntity.ok(localObjectCache.stats());
+    }
+
+    /**
+     * Start an orphan sweep of the media buckets (dryRun only reports what would be removed)
+     */
+    @PostMapping("/storage/orphan-sweep")
+    public ResponseEntity<?> sweepOrphans(@RequestParam(defaultValue = "true") boolean dryRun) {
+        return ResponseEntity.accepted().body(mediaCleanupService.sweep(dryRun));
+    }
+
+    @GetMapping("/storage/orphan-sweep")
+    public ResponseEntity<?> getLastOrphanSweep() {
+        var report = mediaCleanupService.lastSweep();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
 }
@@ -1,18 +1,31 @@
 package com.sichrplace.controller;
 
+import com.sichrplace.dto.StorageDto;
 import com.sichrplace.entity.Apartment;
+import com.sichrplace.entity.SecureVideo;
 import com.sichrplace.entity.User;
+import com.sichrplace.repository.SecureVideoRepository;
+import com.sichrplace.service.AdminStatsService;
 import com.sichrplace.service.ApartmentService;
+import com.sichrplace.service.BulkNotificationService;
 import com.sichrplace.service.FileStorageService;
+import com.sichrplace.service.ImageVariantService;
+import com.sichrplace.service.StreamingUploadService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @RestController
@@ -22,6 +35,23 @@ public class ApartmentController {
 
     private final ApartmentService apartmentService;
     private final FileStorageService fileStorageService;
+    private final BulkNotificationService bulkNotificationService;
+    private final StreamingUploadService streamingUploadService;
+    private final SecureVideoRepository secureVideoRepository;
+    private final ImageVariantService imageVariantService;
+    private final AdminStatsService adminStatsService;
+
+    private static final Set<String> IMAGE_TYPES = Set.of("image/jpeg", "image/png", "image/webp", "image/gif");
+    private static final Set<String> VIDEO_TYPES = Set.of("video/mp4", "video/webm", "video/quicktime");
+
+    @Value("${storage.upload.max-image-size:50MB}")
+    private DataSize maxImageSize;
+
+    @Value("${storage.upload.max-video-size:2GB}")
+    private DataSize maxVideoSize;
+
+    @Value("${minio.bucket.videos:secure-videos}")
+    private String videoBucket;
 
     @GetMapping
     public ResponseEntity<Page<Apartment>> list(
@@ -48,6 +78,16 @@ public class ApartmentController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * All images with pre-signed original and variant URLs
+     */
+    @GetMapping("/{id}/gallery")
+    public ResponseEntity<?> gallery(@PathVariable UUID id) {
+        return apartmentService.findById(id)
+                .map(a -> ResponseEntity.ok(Map.of("images", imageVariantService.gallery(a.getImages(), "apartment-images"))))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @PostMapping
     public ResponseEntity<Apartment> create(@RequestBody Apartment apartment,
                                             @AuthenticationPrincipal User user) {
@@ -62,6 +102,8 @@ public class ApartmentController {
         return apartmentService.findById(id)
                 .filter(a -> a.getOwner().getId().equals(user.getId()) || "admin".equals(user.getRole()))
                 .map(existing -> {
+                    BigDecimal previousPrice = existing.getPrice();
+                    String previousCity = existing.getCity();
                     if (updates.getTitle() != null) existing.setTitle(updates.getTitle());
                     if (updates.getDescription() != null) existing.setDescription(updates.getDescription());
                     if (updates.getPrice() != null) existing.setPrice(updates.getPrice());
@@ -69,7 +111,18 @@ public class ApartmentController {
                     if (updates.getAddress() != null) existing.setAddress(updates.getAddress());
                     if (updates.getRooms() != null) existing.setRooms(updates.getRooms());
                     if (updates.getAmenities() != null) existing.setAmenities(updates.getAmenities());
-                    return ResponseEntity.ok(apartmentService.update(existing));
+                    Apartment saved = apartmentService.update(existing);
+                    adminStatsService.listingChanged(previousCity, saved.getStatus(), saved.getCity(), saved.getStatus());
+
+                    // Price drop: tell everyone who favorited it (background fan-out)
+                    if (previousPrice != null && saved.getPrice() != null
+                            && saved.getPrice().compareTo(previousPrice) < 0) {
+                        bulkNotificationService.favoritedBy(saved.getId(), "price_drop",
+                                "Price drop",
+                                saved.getTitle() + " is now " + saved.getPrice() + " (was " + previousPrice + ")",
+                                "/apartments/" + saved.getId(), "normal");
+                    }
+                    return ResponseEntity.ok(saved);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -92,9 +145,76 @@ public class ApartmentController {
         return apartmentService.findById(id)
                 .filter(a -> a.getOwner().getId().equals(user.getId()))
                 .map(apartment -> {
-                    String url = fileStorageService.uploadFile(file, "apartment-images", id.toString());
+                    String url = fileStorageService.uploadFile(file, "apartment-images");
+                    imageVariantService.imageUploaded(id, "apartment-images", fileStorageService.objectKey("apartment-images", url));
                     return ResponseEntity.ok(Map.of("success", true, "imageUrl", url));
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    /**
+     * Streaming image upload: the raw request body (Content-Type image/*) goes straight to MinIO,
+     * no multipart parsing or temp file
+     */
+    @PostMapping("/{id}/images/stream")
+    public ResponseEntity<?> streamImage(@PathVariable UUID id,
+                                         HttpServletRequest request,
+                                         @AuthenticationPrincipal User user) throws IOException {
+        if (apartmentService.findById(id).filter(a -> a.getOwner().getId().equals(user.getId())).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        ResponseEntity<?> rejected = rejectOversized(request, maxImageSize);
+        if (rejected != null) return rejected;
+
+        try {
+            StorageDto.UploadResult result = streamingUploadService.upload(request.getInputStream(),
+                    "apartment-images", request.getContentType(), IMAGE_TYPES, maxImageSize.toBytes());
+            imageVariantService.imageUploaded(id, result.getBucket(), result.getObjectKey());
+            return ResponseEntity.ok(Map.of("success", true, "imageUrl", result.getUrl(), "size", result.getSize()));
+        } catch (StreamingUploadService.UploadRejectedException e) {
+            return ResponseEntity.status(e.getStatus()).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Streaming video upload (raw body, Content-Type video/*); optional X-Video-Title header
+     */
+    @PostMapping("/{id}/videos")
+    public ResponseEntity<?> uploadVideo(@PathVariable UUID id,
+                                         @RequestHeader(value = "X-Video-Title", required = false) String title,
+                                         HttpServletRequest request,
+                                         @AuthenticationPrincipal User user) throws IOException {
+        Apartment apartment = apartmentService.findById(id)
+                .filter(a -> a.getOwner().getId().equals(user.getId()))
+                .orElse(null);
+        if (apartment == null) {
+            return ResponseEntity.notFound().build();
+        }
+        ResponseEntity<?> rejected = rejectOversized(request, maxVideoSize);
+        if (rejected != null) return rejected;
+
+        try {
+            StorageDto.UploadResult result = streamingUploadService.upload(request.getInputStream(),
+                    videoBucket, request.getContentType(), VIDEO_TYPES, maxVideoSize.toBytes());
+            SecureVideo video = secureVideoRepository.save(SecureVideo.builder()
+                    .apartment(apartment)
+                    .uploadedBy(user)
+                    .filePath(result.getObjectKey())
+                    .title(title)
+                    .build());
+            return ResponseEntity.ok(Map.of("success", true, "videoId", video.getId(), "size", result.getSize()));
+        } catch (StreamingUploadService.UploadRejectedException e) {
+            return ResponseEntity.status(e.getStatus()).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /** Fails fast on a declared Content-Length over the limit, before reading any of the body */
+    private ResponseEntity<?> rejectOversized(HttpServletRequest request, DataSize limit) {
+        long declared = request.getContentLengthLong();
+        if (declared > limit.toBytes()) {
+            return ResponseEntity.status(413).header(HttpHeaders.CONNECTION, "close")
+                    .body(Map.of("error", "File exceeds " + limit.toMegabytes() + "MB limit"));
+        }
+        return null;
+    }
 }
@@ -7,6 +7,8 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
@@ -32,6 +34,47 @@ public class AuthController {
         return ResponseEntity.badRequest().body(response);
     }
 
+    @PostMapping("/verify-email")
+    public ResponseEntity<?> verifyEmail(@Valid @RequestBody AuthDto.TokenRequest request) {
+        if (authService.verifyEmail(request.getToken())) {
+            return ResponseEntity.ok(Map.of("success", true, "message", "Email verified"));
+        }
+        return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid or expired token"));
+    }
+
+    @PostMapping("/resend-verification")
+    public ResponseEntity<?> resendVerification(@Valid @RequestBody AuthDto.EmailRequest request) {
+        authService.resendVerification(request.getEmail());
+        return ResponseEntity.ok(Map.of("success", true,
+                "message", "If the address belongs to an unverified account, a new link is on its way"));
+    }
+
+    @PostMapping("/forgot-password")
+    public ResponseEntity<?> forgotPassword(@Valid @RequestBody AuthDto.EmailRequest request) {
+        authService.requestPasswordReset(request.getEmail());
+        return ResponseEntity.ok(Map.of("success", true,
+                "message", "If an account exists for this address, a reset link has been sent"));
+    }
+
+    @PostMapping("/verify-reset-token")
+    public ResponseEntity<?> verifyResetToken(@Valid @RequestBody AuthDto.TokenRequest request) {
+        if (authService.isPasswordResetTokenValid(request.getToken())) {
+            return ResponseEntity.ok(Map.of("success", true));
+        }
+        return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid or expired token"));
+    }
+
+    @PostMapping("/reset-password")
+    public ResponseEntity<?> resetPassword(@Valid @RequestBody AuthDto.ResetPasswordRequest request) {
+        if (request.getConfirmPassword() != null && !request.getConfirmPassword().equals(request.getPassword())) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Passwords do not match"));
+        }
+        if (authService.resetPassword(request.getToken(), request.getPassword())) {
+            return ResponseEntity.ok(Map.of("success", true, "message", "Password updated"));
+        }
+        return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid or expired token"));
+    }
+
     @GetMapping("/me")
     public ResponseEntity<?> getCurrentUser(@RequestAttribute("user") com.sichrplace.entity.User user) {
         return ResponseEntity.ok(AuthDto.UserInfo.builder()
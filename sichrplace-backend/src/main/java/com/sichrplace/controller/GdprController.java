@@ -4,6 +4,7 @@ import com.sichrplace.entity.GdprRequest;
 import com.sichrplace.entity.User;
 import com.sichrplace.repository.GdprRequestRepository;
 import com.sichrplace.repository.UserRepository;
+import com.sichrplace.service.GdprExportService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,9 +13,11 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.OffsetDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/gdpr")
@@ -25,6 +28,7 @@ public class GdprController {
     private final GdprRequestRepository gdprRequestRepository;
     private final UserRepository userRepository;
     private final ObjectMapper objectMapper;
+    private final GdprExportService gdprExportService;
 
     @GetMapping("/my-data")
     public ResponseEntity<?> getMyData(@AuthenticationPrincipal User user) {
@@ -34,33 +38,67 @@ public class GdprController {
         ));
     }
 
+    /**
+     * Queues a full data export (tables + media, zipped to MinIO); poll GET /data-export/{id} for the link
+     */
     @PostMapping("/data-export")
-    @Transactional
     public ResponseEntity<?> requestDataExport(@AuthenticationPrincipal User user) {
-        GdprRequest request = GdprRequest.builder()
+        // One export at a time per user; open exports nobody is working on (node restarted) are failed instead
+        GdprRequest running = null;
+        for (GdprRequest open : gdprRequestRepository.findByUser_IdOrderByCreatedAtDesc(user.getId())) {
+            if (!"data_export".equals(open.getRequestType()) || !Set.of("pending", "processing").contains(open.getStatus())) continue;
+            if (!gdprExportService.isAlive(open)) gdprExportService.abandon(open.getId());
+            else if (running == null) running = open;
+        }
+        if (running != null) {
+            return ResponseEntity.accepted().body(Map.of("success", true, "requestId", running.getId(), "status", running.getStatus()));
+        }
+
+        GdprRequest request = gdprRequestRepository.save(GdprRequest.builder()
                 .user(user)
                 .requestType("data_export")
-                .status("processing")
-                .build();
-
-        try {
-            String userData = objectMapper.writeValueAsString(user);
-            request.setResponseData(userData);
-            request.setStatus("completed");
-            request.setCompletedAt(OffsetDateTime.now());
-        } catch (Exception e) {
-            request.setStatus("failed");
-            log.error("Data export failed for user {}", user.getId(), e);
-        }
+                .status("pending")
+                .build());
+        gdprExportService.submit(request.getId(), user.getId());
 
-        gdprRequestRepository.save(request);
         log.info("GDPR data export requested by user {}", user.getId());
-        return ResponseEntity.ok(Map.of("success", true, "requestId", request.getId()));
+        return ResponseEntity.accepted().body(Map.of("success", true, "requestId", request.getId(), "status", "pending"));
     }
 
+    @GetMapping("/data-export/{id}")
+    public ResponseEntity<?> getDataExport(@PathVariable UUID id, @AuthenticationPrincipal User user) {
+        return gdprRequestRepository.findById(id)
+                .filter(r -> r.getUser().getId().equals(user.getId()) && "data_export".equals(r.getRequestType()))
+                .map(r -> {
+                    Map<String, Object> body = new HashMap<>();
+                    body.put("requestId", r.getId());
+                    body.put("status", r.getStatus());
+                    try {
+                        body.put("progress", r.getResponseData() != null ? objectMapper.readTree(r.getResponseData()) : null);
+                    } catch (Exception e) {
+                        body.put("progress", null);
+                    }
+                    body.put("downloadUrl", gdprExportService.downloadUrl(r));
+                    return ResponseEntity.ok(body);
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Queues account erasure; GdprDeletionService works through it in the background
+     */
     @PostMapping("/data-deletion")
     @Transactional
     public ResponseEntity<?> requestDataDeletion(@AuthenticationPrincipal User user) {
+        GdprRequest open = gdprRequestRepository.findByUser_IdOrderByCreatedAtDesc(user.getId()).stream()
+                .filter(r -> "data_deletion".equals(r.getRequestType()))
+                .filter(r -> Set.of("pending", "processing").contains(r.getStatus()))
+                .findFirst()
+                .orElse(null);
+        if (open != null) {
+            return ResponseEntity.ok(Map.of("success", true, "requestId", open.getId(), "status", open.getStatus()));
+        }
+
         GdprRequest request = GdprRequest.builder()
                 .user(user)
                 .requestType("data_deletion")
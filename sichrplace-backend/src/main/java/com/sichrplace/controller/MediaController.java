@@ -0,0 +1,35 @@
+package com.sichrplace.controller;
+
+import com.sichrplace.service.LocalObjectCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Public image proxy for apartment photos, served from the node-local object cache
+ */
+@RestController
+@RequestMapping("/api/media")
+@RequiredArgsConstructor
+public class MediaController {
+
+    private final LocalObjectCache localObjectCache;
+
+    @Value("${minio.bucket.apartments:apartment-images}")
+    private String imagesBucket;
+
+    @RequestMapping(value = "/apartment-images/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void apartmentImage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String prefix = request.getContextPath() + "/api/media/apartment-images/";
+        String objectKey = request.getRequestURI().substring(prefix.length());
+        if (objectKey.isEmpty() || objectKey.contains("..") || objectKey.startsWith("tmp/")) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        localObjectCache.serve(imagesBucket, objectKey, request, response);
+    }
+}
@@ -7,18 +7,20 @@ import com.sichrplace.entity.User;
 import com.sichrplace.repository.ConversationRepository;
 import com.sichrplace.repository.MessageRepository;
 import com.sichrplace.repository.UserRepository;
+import com.sichrplace.service.MessageSearchService;
+import com.sichrplace.service.MessageService;
+import com.sichrplace.service.TypingIndicatorService;
+import com.sichrplace.service.UnreadCounterService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -32,7 +34,13 @@ public class MessageController {
     private final MessageRepository messageRepository;
     private final ConversationRepository conversationRepository;
     private final UserRepository userRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageService messageService;
+    private final TypingIndicatorService typingIndicatorService;
+    private final UnreadCounterService unreadCounterService;
+    private final MessageSearchService messageSearchService;
+
+    private static final int MAX_HISTORY_LIMIT = 100;
+    private static final int MAX_SEARCH_LIMIT = 50;
 
     /**
      * Get all conversations for the current user
@@ -42,6 +50,15 @@ public class MessageController {
         return conversationRepository.findByParticipant(user.getId());
     }
 
+    /**
+     * Inbox: one flat row per conversation with the other participant, apartment title,
+     * last message preview and unread count, resolved in a single query
+     */
+    @GetMapping("/inbox")
+    public List<ChatDto.ConversationSummary> getInbox(@AuthenticationPrincipal User user) {
+        return conversationRepository.findInbox(user.getId());
+    }
+
     /**
      * Get messages for a conversation
      */
@@ -52,11 +69,88 @@ public class MessageController {
         return messageRepository.findByConversation_IdOrderByCreatedAtAsc(conversationId, PageRequest.of(page, size));
     }
 
+    /**
+     * Cursor-based message history. Without a cursor (or with ?before=) returns the
+     * newest messages first so the client can load older history on scroll; with
+     * ?after= returns newer messages in chronological order for catching up.
+     */
+    @GetMapping("/conversations/{conversationId}/history")
+    public ResponseEntity<?> getHistory(@PathVariable UUID conversationId,
+                                        @RequestParam(required = false) UUID before,
+                                        @RequestParam(required = false) UUID after,
+                                        @RequestParam(defaultValue = "50") int limit,
+                                        @AuthenticationPrincipal User user) {
+        if (!conversationRepository.isParticipant(conversationId, user.getId())) {
+            return ResponseEntity.notFound().build();
+        }
+
+        int size = Math.max(1, Math.min(limit, MAX_HISTORY_LIMIT));
+        // Fetch one extra row to know whether more history exists
+        PageRequest window = PageRequest.of(0, size + 1);
+
+        List<Message> messages;
+        if (before != null || after != null) {
+            Message cursor = messageRepository.findById(before != null ? before : after)
+                    .filter(m -> m.getConversation().getId().equals(conversationId))
+                    .orElse(null);
+            if (cursor == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+            }
+            messages = before != null
+                    ? messageRepository.findBefore(conversationId, cursor.getCreatedAt(), cursor.getId(), window)
+                    : messageRepository.findAfter(conversationId, cursor.getCreatedAt(), cursor.getId(), window);
+        } else {
+            messages = messageRepository.findLatest(conversationId, window);
+        }
+
+        boolean hasMore = messages.size() > size;
+        if (hasMore) {
+            messages = messages.subList(0, size);
+        }
+
+        List<ChatDto.ChatNotification> items = messages.stream()
+                .map(m -> ChatDto.ChatNotification.builder()
+                        .id(m.getId().toString())
+                        .conversationId(conversationId.toString())
+                        .senderId(m.getSender().getId().toString())
+                        .content(m.getContent())
+                        .timestamp(m.getCreatedAt().toString())
+                        .read(m.getIsRead())
+                        .build())
+                .toList();
+
+        String first = items.isEmpty() ? null : items.get(0).getId();
+        String last = items.isEmpty() ? null : items.get(items.size() - 1).getId();
+        boolean newestFirst = after == null;
+
+        return ResponseEntity.ok(ChatDto.MessageHistory.builder()
+                .messages(items)
+                .hasMore(hasMore)
+                .oldestId(newestFirst ? last : first)
+                .newestId(newestFirst ? first : last)
+                .build());
+    }
+
+    /**
+     * Search the caller's chat history; ranked hits with a snippet around the first match
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam String q,
+                                    @RequestParam(defaultValue = "20") int limit,
+                                    @AuthenticationPrincipal User user) {
+        if (q.isBlank() || q.strip().length() < 2) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Query must be at least 2 characters"));
+        }
+        int size = Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        return ResponseEntity.ok(Map.of(
+                "query", q,
+                "hits", messageSearchService.search(user.getId(), q, size)));
+    }
+
     /**
      * Send a message via REST (alternative to WebSocket)
      */
     @PostMapping("/send")
-    @Transactional
     public Message sendMessage(@RequestBody Map<String, String> body,
                                 @AuthenticationPrincipal User user) {
         UUID conversationId = UUID.fromString(body.get("conversationId"));
@@ -65,45 +159,36 @@ public class MessageController {
         Conversation conversation = conversationRepository.findById(conversationId)
                 .orElseThrow(() -> new RuntimeException("Conversation not found"));
 
-        Message message = Message.builder()
-                .conversation(conversation)
-                .sender(user)
-                .content(content)
-                .build();
-
-        message = messageRepository.save(message);
-
-        // Update last message timestamp
-        conversation.setLastMessageAt(OffsetDateTime.now());
-        conversationRepository.save(conversation);
-
-        // Notify via WebSocket
-        messagingTemplate.convertAndSend(
-                "/topic/conversation/" + conversationId,
-                ChatDto.ChatNotification.builder()
-                        .id(message.getId().toString())
-                        .conversationId(conversationId.toString())
-                        .senderId(user.getId().toString())
-                        .senderName(user.getFirstName() + " " + user.getLastName())
-                        .content(content)
-                        .timestamp(message.getCreatedAt().toString())
-                        .build()
-        );
-
-        return message;
+        return messageService.send(conversation, user, content);
     }
 
     /**
      * Mark messages as read
      */
     @PostMapping("/conversations/{conversationId}/read")
-    @Transactional
     public Map<String, Object> markAsRead(@PathVariable UUID conversationId,
                                            @AuthenticationPrincipal User user) {
-        int updated = messageRepository.markAsRead(conversationId, user.getId());
+        int updated = messageService.markAsRead(conversationId, user.getId());
         return Map.of("success", true, "markedRead", updated);
     }
 
+    /**
+     * Unread message badge across all conversations (served from memory)
+     */
+    @GetMapping("/unread-count")
+    public Map<String, Long> getUnreadCount(@AuthenticationPrincipal User user) {
+        return Map.of("count", unreadCounterService.unreadMessages(user.getId()));
+    }
+
+    /**
+     * Unread message badge for one conversation (served from memory)
+     */
+    @GetMapping("/conversations/{conversationId}/unread-count")
+    public Map<String, Long> getConversationUnreadCount(@PathVariable UUID conversationId,
+                                                         @AuthenticationPrincipal User user) {
+        return Map.of("count", unreadCounterService.unreadMessages(conversationId, user.getId()));
+    }
+
     /**
      * WebSocket: Handle incoming chat messages via STOMP
      */
@@ -117,37 +202,22 @@ public class MessageController {
 
         if (conversation == null || sender == null) return;
 
-        Message message = Message.builder()
-                .conversation(conversation)
-                .sender(sender)
-                .content(chatMessage.getContent())
-                .build();
-
-        message = messageRepository.save(message);
-        conversation.setLastMessageAt(OffsetDateTime.now());
-        conversationRepository.save(conversation);
-
-        messagingTemplate.convertAndSend(
-                "/topic/conversation/" + conversationId,
-                ChatDto.ChatNotification.builder()
-                        .id(message.getId().toString())
-                        .conversationId(conversationId.toString())
-                        .senderId(senderId.toString())
-                        .senderName(sender.getFirstName() + " " + sender.getLastName())
-                        .content(chatMessage.getContent())
-                        .timestamp(message.getCreatedAt().toString())
-                        .build()
-        );
+        messageService.send(conversation, sender, chatMessage.getContent());
     }
 
     /**
-     * WebSocket: Handle typing indicators
+     * WebSocket: Handle typing indicators (coalesced server-side, see TypingIndicatorService)
      */
     @MessageMapping("/chat.typing")
     public void handleTyping(@Payload ChatDto.ChatMessage chatMessage) {
-        messagingTemplate.convertAndSend(
-                "/topic/conversation/" + chatMessage.getConversationId() + "/typing",
-                Map.of("userId", chatMessage.getSenderId(), "typing", true)
-        );
+        UUID conversationId = UUID.fromString(chatMessage.getConversationId());
+        UUID userId = UUID.fromString(chatMessage.getSenderId() != null
+                ? chatMessage.getSenderId() : chatMessage.getUserId());
+
+        if (Boolean.FALSE.equals(chatMessage.getIsTyping())) {
+            typingIndicatorService.stopped(conversationId, userId);
+        } else {
+            typingIndicatorService.typing(conversationId, userId);
+        }
     }
 }
@@ -0,0 +1,43 @@
+package com.sichrplace.controller;
+
+import com.sichrplace.dto.ChatDto;
+import com.sichrplace.service.PresenceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/presence")
+@RequiredArgsConstructor
+public class PresenceController {
+
+    private static final int MAX_BATCH = 200;
+
+    private final PresenceService presenceService;
+
+    /**
+     * Batch online/offline lookup, e.g. GET /api/presence?userIds=a,b,c
+     */
+    @GetMapping
+    public ResponseEntity<?> lookup(@RequestParam List<UUID> userIds) {
+        if (userIds.size() > MAX_BATCH) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At most " + MAX_BATCH + " users per lookup"));
+        }
+
+        Map<String, ChatDto.PresenceStatus> result = new LinkedHashMap<>();
+        for (UUID userId : userIds) {
+            Instant lastSeen = presenceService.lastSeen(userId);
+            result.put(userId.toString(), ChatDto.PresenceStatus.builder()
+                    .online(presenceService.isOnline(userId))
+                    .lastSeen(lastSeen != null ? lastSeen.toString() : null)
+                    .build());
+        }
+        return ResponseEntity.ok(result);
+    }
+}
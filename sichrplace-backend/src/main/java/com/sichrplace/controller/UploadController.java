@@ -0,0 +1,82 @@
+package com.sichrplace.controller;
+
+import com.sichrplace.dto.StorageDto;
+import com.sichrplace.entity.User;
+import com.sichrplace.service.ResumableUploadService;
+import com.sichrplace.service.StreamingUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Resumable video uploads: POST init, PUT raw chunks at ?offset=, GET status to resume, POST complete
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+public class UploadController {
+
+    private final ResumableUploadService resumableUploadService;
+
+    @PostMapping
+    public ResponseEntity<?> init(@Valid @RequestBody StorageDto.InitUploadRequest request,
+                                  @AuthenticationPrincipal User user) {
+        try {
+            return ResponseEntity.status(201).body(resumableUploadService.init(user, request));
+        } catch (StreamingUploadService.UploadRejectedException e) {
+            return rejected(e);
+        }
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<?> putChunk(@PathVariable UUID id,
+                                      @RequestParam long offset,
+                                      HttpServletRequest request,
+                                      @AuthenticationPrincipal User user) throws IOException {
+        try {
+            return ResponseEntity.ok(resumableUploadService.putChunk(id, user, offset,
+                    request.getContentLengthLong(), request.getInputStream()));
+        } catch (StreamingUploadService.UploadRejectedException e) {
+            return rejected(e);
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> status(@PathVariable UUID id, @AuthenticationPrincipal User user) {
+        try {
+            return ResponseEntity.ok(resumableUploadService.status(id, user));
+        } catch (StreamingUploadService.UploadRejectedException e) {
+            return rejected(e);
+        }
+    }
+
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<?> complete(@PathVariable UUID id, @AuthenticationPrincipal User user) {
+        try {
+            return ResponseEntity.ok(resumableUploadService.complete(id, user));
+        } catch (StreamingUploadService.UploadRejectedException e) {
+            return rejected(e);
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> abort(@PathVariable UUID id, @AuthenticationPrincipal User user) {
+        try {
+            resumableUploadService.abort(id, user);
+            return ResponseEntity.ok(Map.of("success", true));
+        } catch (StreamingUploadService.UploadRejectedException e) {
+            return rejected(e);
+        }
+    }
+
+    private static ResponseEntity<?> rejected(StreamingUploadService.UploadRejectedException e) {
+        return ResponseEntity.status(e.getStatus()).body(Map.of("error", e.getMessage()));
+    }
+}
@@ -2,6 +2,7 @@ package com.sichrplace.controller;
 
 import com.sichrplace.entity.*;
 import com.sichrplace.repository.*;
+import com.sichrplace.service.AdminStatsService;
 import com.sichrplace.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -26,6 +27,7 @@ public class UserFeaturesController {
     private final NotificationRepository notificationRepository;
     private final ApartmentRepository apartmentRepository;
     private final NotificationService notificationService;
+    private final AdminStatsService adminStatsService;
 
     // ===== FAVORITES =====
     @GetMapping("/favorites")
@@ -91,7 +93,9 @@ public class UserFeaturesController {
                                                 @AuthenticationPrincipal User user) {
         review.setUser(user);
         review.setStatus("pending");
-        return ResponseEntity.status(201).body(reviewRepository.save(review));
+        Review saved = reviewRepository.save(review);
+        adminStatsService.reviewCreated(saved.getStatus());
+        return ResponseEntity.status(201).body(saved);
     }
 
     // ===== NOTIFICATIONS =====
@@ -0,0 +1,108 @@
+package com.sichrplace.controller;
+
+import com.sichrplace.entity.SecureVideo;
+import com.sichrplace.entity.User;
+import com.sichrplace.repository.SecureVideoRepository;
+import com.sichrplace.security.JwtTokenProvider;
+import com.sichrplace.service.VideoStreamService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/videos")
+@RequiredArgsConstructor
+public class VideoController {
+
+    private final SecureVideoRepository secureVideoRepository;
+    private final VideoStreamService videoStreamService;
+    private final JwtTokenProvider jwtTokenProvider;
+
+    @Value("${videos.link-ttl-days:7}")
+    private int linkTtlDays;
+
+    /**
+     * Video metadata for the secure viewer; requires a video link token or an authorized user
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> metadata(@PathVariable UUID id,
+                                      @RequestParam(required = false) String token,
+                                      @AuthenticationPrincipal User user) {
+        return secureVideoRepository.findActiveWithApartment(id)
+                .filter(video -> canView(video, token, user))
+                .map(video -> {
+                    Map<String, Object> body = new HashMap<>();
+                    body.put("success", true);
+                    body.put("id", video.getId());
+                    body.put("title", video.getTitle() != null ? video.getTitle() : "Apartment viewing video");
+                    body.put("apartmentAddress", video.getApartment().getAddress() + ", " + video.getApartment().getCity());
+                    body.put("uploadDate", video.getCreatedAt());
+                    body.put("notes", video.getDescription());
+                    return ResponseEntity.ok(body);
+                })
+                .orElse(ResponseEntity.status(404).body(Map.of("success", false, "error", "Video not found or link expired")));
+    }
+
+    /**
+     * Range-capable stream (GET/HEAD). Authorized by the link token since a video element cannot send headers.
+     */
+    @RequestMapping(value = "/{id}/stream", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void stream(@PathVariable UUID id,
+                       @RequestParam(required = false) String token,
+                       @AuthenticationPrincipal User user,
+                       HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+        SecureVideo video = secureVideoRepository.findActiveWithApartment(id)
+                .filter(v -> canView(v, token, user))
+                .orElse(null);
+        if (video == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        videoStreamService.stream(video.getFilePath(), request, response);
+    }
+
+    /**
+     * Issue a shareable viewer link (apartment owner, uploader or admin)
+     */
+    @PostMapping("/{id}/link")
+    public ResponseEntity<?> createLink(@PathVariable UUID id, @AuthenticationPrincipal User user) {
+        return secureVideoRepository.findActiveWithApartment(id)
+                .filter(video -> isManager(video, user))
+                .map(video -> {
+                    long ttlMs = TimeUnit.DAYS.toMillis(linkTtlDays);
+                    String token = jwtTokenProvider.generateVideoToken(id, ttlMs);
+                    return ResponseEntity.ok(Map.of(
+                            "success", true,
+                            "token", token,
+                            "viewerUrl", "/secure-viewer/" + id + "?token=" + token,
+                            "expiresAt", OffsetDateTime.now().plusDays(linkTtlDays)));
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private boolean canView(SecureVideo video, String token, User user) {
+        if (token != null && jwtTokenProvider.isValidVideoToken(token, video.getId())) {
+            return true;
+        }
+        return isManager(video, user);
+    }
+
+    private boolean isManager(SecureVideo video, User user) {
+        if (user == null) return false;
+        return "admin".equals(user.getRole())
+                || video.getUploadedBy().getId().equals(user.getId())
+                || video.getApartment().getOwner().getId().equals(user.getId());
+    }
+}
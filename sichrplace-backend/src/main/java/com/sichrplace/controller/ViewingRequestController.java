@@ -3,6 +3,7 @@ package com.sichrplace.controller;
 import com.sichrplace.entity.*;
 import com.sichrplace.repository.ApartmentRepository;
 import com.sichrplace.repository.ViewingRequestRepository;
+import com.sichrplace.service.AdminStatsService;
 import com.sichrplace.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -21,6 +22,7 @@ public class ViewingRequestController {
     private final ViewingRequestRepository viewingRequestRepository;
     private final ApartmentRepository apartmentRepository;
     private final NotificationService notificationService;
+    private final AdminStatsService adminStatsService;
 
     @PostMapping
     public ResponseEntity<?> createRequest(@RequestBody Map<String, String> body,
@@ -38,6 +40,7 @@ public class ViewingRequestController {
                 .build();
 
         vr = viewingRequestRepository.save(vr);
+        adminStatsService.viewingRequestCreated(vr.getStatus());
 
         // Notify landlord
         notificationService.create(
@@ -69,8 +72,10 @@ public class ViewingRequestController {
         return viewingRequestRepository.findById(id)
                 .filter(vr -> vr.getLandlord().getId().equals(user.getId()) || "admin".equals(user.getRole()))
                 .map(vr -> {
+                    String previousStatus = vr.getStatus();
                     vr.setStatus(body.get("status"));
                     viewingRequestRepository.save(vr);
+                    adminStatsService.viewingRequestStatusChanged(previousStatus, vr.getStatus());
 
                     notificationService.create(
                             vr.getRequester().getId(),
@@ -0,0 +1,23 @@
+package com.sichrplace.dto;
+
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+
+public class AdminDto {
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class Dashboard {
+        private long totalUsers;
+        private long totalApartments;
+        private long totalViewingRequests;
+        private long pendingReviews;
+        private long activeListings;
+        private Map<String, Long> newUsersPerDay; // UTC date -> registrations, oldest first
+        private Map<String, Long> activeListingsByCity; // largest first
+        private Map<String, Long> viewingRequestsByStatus;
+        private double requestConversionRate; // accepted + completed over all requests
+        private OffsetDateTime reconciledAt;
+    }
+}
@@ -46,4 +46,25 @@ public class AuthDto {
         private String firstName;
         private String lastName;
     }
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class TokenRequest {
+        @NotBlank
+        private String token;
+    }
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class EmailRequest {
+        @NotBlank @Email
+        private String email;
+    }
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class ResetPasswordRequest {
+        @NotBlank
+        private String token;
+        @NotBlank @Size(min = 8)
+        private String password;
+        private String confirmPassword;
+    }
 }
@@ -2,6 +2,10 @@ package com.sichrplace.dto;
 
 import lombok.*;
 
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
 public class ChatDto {
 
     @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
@@ -10,6 +14,8 @@ public class ChatDto {
         private String senderId;
         private String content;
         private String type; // TEXT, TYPING, READ
+        private String userId; // typing frames from stomp-chat.js carry userId instead of senderId
+        private Boolean isTyping;
     }
 
     @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
@@ -20,5 +26,57 @@ public class ChatDto {
         private String senderName;
         private String content;
         private String timestamp;
+        private Boolean read;
+    }
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class MessageHistory {
+        private List<ChatNotification> messages;
+        private boolean hasMore;
+        private String oldestId; // cursor for ?before=
+        private String newestId; // cursor for ?after=
+    }
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class PresenceStatus {
+        private boolean online;
+        private String lastSeen;
+    }
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class SearchHit {
+        private String messageId;
+        private String conversationId;
+        private String senderId;
+        private String snippet;
+        private String timestamp;
+        private double score;
+    }
+
+    /**
+     * Row used to build a conversation's search segments (see MessageRepository.findForIndexAfter)
+     */
+    public interface IndexedMessage {
+        UUID getId();
+        UUID getConversationId();
+        UUID getSenderId();
+        String getContent();
+        OffsetDateTime getCreatedAt();
+    }
+
+    /**
+     * Flat inbox row, one per conversation (see ConversationRepository.findInbox)
+     */
+    public interface ConversationSummary {
+        UUID getConversationId();
+        UUID getApartmentId();
+        String getApartmentTitle();
+        UUID getOtherUserId();
+        String getOtherFirstName();
+        String getOtherLastName();
+        String getLastMessagePreview();
+        UUID getLastMessageSenderId();
+        OffsetDateTime getLastMessageAt();
+        Long getUnreadCount();
     }
 }
@@ -0,0 +1,37 @@
+package com.sichrplace.dto;
+
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public class NotificationDto {
+
+    /**
+     * Application event published by NotificationService.create; badge and push follow the commit
+     */
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class Requested {
+        private UUID id; // notifications row, committed by the time the event is handled
+        private UUID userId;
+        private String type;
+        private String title;
+        private String message;
+        private String actionUrl;
+        private String priority;
+        private OffsetDateTime createdAt;
+    }
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class BulkJob {
+        private String id;
+        private String name;
+        private String status; // queued, running, completed, failed
+        private long recipients;
+        private long inserted;
+        private long pushed;
+        private String startedAt;
+        private String finishedAt;
+        private String error;
+    }
+}
@@ -0,0 +1,63 @@
+package com.sichrplace.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public class StorageDto {
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class UploadResult {
+        private String bucket;
+        private String objectKey;
+        private String contentHash;
+        private String url;
+        private long size;
+        private String contentType;
+        private int parts;
+    }
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class SweepReport {
+        private String status; // running, completed, failed
+        private boolean dryRun;
+        private long scanned;
+        private long orphaned;
+        private long removed;
+        private long bytesFreed;
+        private String startedAt;
+        private String finishedAt;
+        private String error;
+    }
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor
+    public static class InitUploadRequest {
+        @NotNull
+        private UUID apartmentId;
+        @NotBlank
+        private String contentType;
+        @NotNull @Positive
+        private Long size;
+        private String fileName;
+        private String title;
+        private Integer chunkSize; // optional; clamped to server limits
+    }
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class ResumableUpload {
+        private UUID uploadId;
+        private String status;
+        private long totalSize;
+        private int chunkSize;
+        private long receivedBytes;
+        private Long nextOffset; // first missing chunk, null when all are in
+        private List<Integer> missingParts; // first few only
+        private OffsetDateTime expiresAt;
+        private UUID videoId;
+    }
+}
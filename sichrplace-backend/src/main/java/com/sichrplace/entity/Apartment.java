@@ -60,6 +60,10 @@ public class Apartment {
     @Column(columnDefinition = "NVARCHAR(MAX)")
     private String images; // JSON array
 
+    /** Smallest suitable image variant for listing cards; filled in by ApartmentService, not persisted */
+    @Transient
+    private String coverImage;
+
     @Column(columnDefinition = "NVARCHAR(MAX)")
     private String amenities; // JSON array
 
@@ -0,0 +1,56 @@
+package com.sichrplace.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "digest_runs")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class DigestRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "run_key", nullable = false, length = 50)
+    private String runKey;
+
+    @Column(nullable = false, length = 20)
+    private String frequency;
+
+    @Column(name = "partition_no", nullable = false)
+    private Integer partitionNo;
+
+    @Column(name = "partition_count", nullable = false)
+    private Integer partitionCount;
+
+    @Column(name = "window_start", nullable = false)
+    private OffsetDateTime windowStart;
+
+    @Column(name = "window_end", nullable = false)
+    private OffsetDateTime windowEnd;
+
+    @Column(name = "last_user_id")
+    private UUID lastUserId; // keyset checkpoint
+
+    @Column(name = "users_processed", nullable = false)
+    @Builder.Default
+    private Integer usersProcessed = 0;
+
+    @Column(name = "digests_created", nullable = false)
+    @Builder.Default
+    private Integer digestsCreated = 0;
+
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private String status = "running";
+
+    @Column(name = "started_at")
+    private OffsetDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private OffsetDateTime finishedAt;
+}
@@ -0,0 +1,34 @@
+package com.sichrplace.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "upload_parts")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class UploadPart {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "upload_id", nullable = false)
+    private UUID uploadId;
+
+    @Column(name = "part_number", nullable = false)
+    private Integer partNumber;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(nullable = false, length = 100)
+    private String etag;
+
+    @CreationTimestamp
+    @Column(name = "uploaded_at", updatable = false)
+    private OffsetDateTime uploadedAt;
+}
@@ -0,0 +1,71 @@
+package com.sichrplace.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "upload_sessions")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class UploadSession {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "apartment_id", nullable = false)
+    private UUID apartmentId;
+
+    @Column(nullable = false, length = 63)
+    private String bucket;
+
+    @Column(name = "object_key", nullable = false, length = 500)
+    private String objectKey;
+
+    @Column(name = "file_name", length = 255)
+    private String fileName;
+
+    @Column(length = 200)
+    private String title;
+
+    @Column(name = "content_type", nullable = false, length = 100)
+    private String contentType;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+
+    @Column(name = "multipart_upload_id", length = 200)
+    private String multipartUploadId;
+
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private String status = "uploading"; // uploading, completing, completed, aborted, expired
+
+    @Column(name = "result_id")
+    private UUID resultId;
+
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private OffsetDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private OffsetDateTime updatedAt;
+
+    public int partCount() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+}
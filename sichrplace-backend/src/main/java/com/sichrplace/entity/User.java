@@ -1,5 +1,6 @@
 package com.sichrplace.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
@@ -61,8 +62,21 @@ public class User {
     @Builder.Default
     private Boolean emailVerified = false;
 
-    @Column(name = "email_verification_token")
-    private String emailVerificationToken;
+    @JsonIgnore
+    @Column(name = "email_verification_token_hash", length = 64)
+    private String emailVerificationTokenHash;
+
+    @JsonIgnore
+    @Column(name = "email_verification_expires_at")
+    private OffsetDateTime emailVerificationExpiresAt;
+
+    @JsonIgnore
+    @Column(name = "password_reset_token_hash", length = 64)
+    private String passwordResetTokenHash;
+
+    @JsonIgnore
+    @Column(name = "password_reset_expires_at")
+    private OffsetDateTime passwordResetExpiresAt;
 
     @Size(max = 20)
     @Column(name = "account_status", length = 20)
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -35,5 +36,26 @@ public interface ApartmentRepository extends JpaRepository<Apartment, UUID> {
             @Param("maxSize") Double maxSize,
             Pageable pageable);
 
+    // Saved-search alerts: same filters as searchApartments, limited to listings created since the last run
+    @Query("SELECT a FROM Apartment a WHERE a.status = 'active' AND a.createdAt > :since " +
+           "AND (:city IS NULL OR LOWER(a.city) LIKE LOWER(CONCAT('%', :city, '%'))) " +
+           "AND (:minPrice IS NULL OR a.price >= :minPrice) " +
+           "AND (:maxPrice IS NULL OR a.price <= :maxPrice) " +
+           "AND (:minRooms IS NULL OR a.rooms >= :minRooms) " +
+           "AND (:maxRooms IS NULL OR a.rooms <= :maxRooms) " +
+           "AND (:minSize IS NULL OR a.sizeSqm >= :minSize) " +
+           "AND (:maxSize IS NULL OR a.sizeSqm <= :maxSize) " +
+           "ORDER BY a.createdAt DESC")
+    List<Apartment> findNewMatches(
+            @Param("since") OffsetDateTime since,
+            @Param("city") String city,
+            @Param("minPrice") BigDecimal minPrice,
+            @Param("maxPrice") BigDecimal maxPrice,
+            @Param("minRooms") Integer minRooms,
+            @Param("maxRooms") Integer maxRooms,
+            @Param("minSize") Double minSize,
+            @Param("maxSize") Double maxSize,
+            Pageable pageable);
+
     Page<Apartment> findByStatusOrderByCreatedAtDesc(String status, Pageable pageable);
 }
@@ -1,5 +1,6 @@
 package com.sichrplace.repository;
 
+import com.sichrplace.dto.ChatDto;
 import com.sichrplace.entity.Conversation;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -16,6 +17,25 @@ public interface ConversationRepository extends JpaRepository<Conversation, UUID
     @Query("SELECT c FROM Conversation c WHERE c.participant1.id = :userId OR c.participant2.id = :userId ORDER BY c.lastMessageAt DESC")
     List<Conversation> findByParticipant(@Param("userId") UUID userId);
 
+    @Query("SELECT c.id FROM Conversation c WHERE c.participant1.id = :userId OR c.participant2.id = :userId")
+    List<UUID> findIdsByParticipant(@Param("userId") UUID userId);
+
+    @Query("SELECT c.id AS conversationId, a.id AS apartmentId, a.title AS apartmentTitle, " +
+           "CASE WHEN p1.id = :userId THEN p2.id ELSE p1.id END AS otherUserId, " +
+           "CASE WHEN p1.id = :userId THEN p2.firstName ELSE p1.firstName END AS otherFirstName, " +
+           "CASE WHEN p1.id = :userId THEN p2.lastName ELSE p1.lastName END AS otherLastName, " +
+           "c.lastMessagePreview AS lastMessagePreview, c.lastMessageSenderId AS lastMessageSenderId, " +
+           "c.lastMessageAt AS lastMessageAt, " +
+           "(SELECT COUNT(m) FROM Message m WHERE m.conversation = c " +
+           "AND m.sender.id <> :userId AND m.isRead = false) AS unreadCount " +
+           "FROM Conversation c JOIN c.participant1 p1 JOIN c.participant2 p2 LEFT JOIN c.apartment a " +
+           "WHERE p1.id = :userId OR p2.id = :userId ORDER BY c.lastMessageAt DESC")
+    List<ChatDto.ConversationSummary> findInbox(@Param("userId") UUID userId);
+
+    @Query("SELECT COUNT(c) > 0 FROM Conversation c WHERE c.id = :conversationId " +
+           "AND (c.participant1.id = :userId OR c.participant2.id = :userId)")
+    boolean isParticipant(@Param("conversationId") UUID conversationId, @Param("userId") UUID userId);
+
     @Query("SELECT c FROM Conversation c WHERE c.apartment.id = :apartmentId " +
            "AND ((c.participant1.id = :user1 AND c.participant2.id = :user2) " +
            "OR (c.participant1.id = :user2 AND c.participant2.id = :user1))")
@@ -0,0 +1,14 @@
+package com.sichrplace.repository;
+
+import com.sichrplace.entity.DigestRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface DigestRunRepository extends JpaRepository<DigestRun, UUID> {
+    List<DigestRun> findByRunKeyOrderByPartitionNo(String runKey);
+    List<DigestRun> findByStatus(String status);
+}
@@ -1,5 +1,6 @@
 package com.sichrplace.repository;
 
+import com.sichrplace.dto.ChatDto;
 import com.sichrplace.entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -9,6 +10,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
@@ -16,11 +20,71 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
 
     Page<Message> findByConversation_IdOrderByCreatedAtAsc(UUID conversationId, Pageable pageable);
 
+    // Keyset pagination over (created_at, id) - see IX_messages_conversation_created
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findLatest(@Param("conversationId") UUID conversationId, Pageable pageable);
+
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId " +
+           "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findBefore(@Param("conversationId") UUID conversationId,
+                             @Param("createdAt") OffsetDateTime createdAt,
+                             @Param("id") UUID id,
+                             Pageable pageable);
+
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId " +
+           "AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.id > :id)) " +
+           "ORDER BY m.createdAt ASC, m.id ASC")
+    List<Message> findAfter(@Param("conversationId") UUID conversationId,
+                            @Param("createdAt") OffsetDateTime createdAt,
+                            @Param("id") UUID id,
+                            Pageable pageable);
+
+    // Search segments: keyset ranges over (created_at, id), same order as findAfter
+    @Query("SELECT m.id AS id, m.conversation.id AS conversationId, m.sender.id AS senderId, m.content AS content, " +
+           "m.createdAt AS createdAt FROM Message m WHERE m.conversation.id = :conversationId " +
+           "AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.id > :id)) " +
+           "ORDER BY m.createdAt ASC, m.id ASC")
+    List<ChatDto.IndexedMessage> findForIndexAfter(@Param("conversationId") UUID conversationId,
+                                                   @Param("createdAt") OffsetDateTime createdAt,
+                                                   @Param("id") UUID id,
+                                                   Pageable pageable);
+
+    @Query("SELECT m.id AS id, m.conversation.id AS conversationId, m.sender.id AS senderId, m.content AS content, " +
+           "m.createdAt AS createdAt FROM Message m WHERE m.conversation.id = :conversationId " +
+           "AND (m.createdAt > :afterCreatedAt OR (m.createdAt = :afterCreatedAt AND m.id > :afterId)) " +
+           "AND (m.createdAt < :toCreatedAt OR (m.createdAt = :toCreatedAt AND m.id <= :toId))")
+    List<ChatDto.IndexedMessage> findForIndexBetween(@Param("conversationId") UUID conversationId,
+                                                     @Param("afterCreatedAt") OffsetDateTime afterCreatedAt,
+                                                     @Param("afterId") UUID afterId,
+                                                     @Param("toCreatedAt") OffsetDateTime toCreatedAt,
+                                                     @Param("toId") UUID toId);
+
+    // Small conversations are indexed several per query
+    @Query("SELECT m.id AS id, m.conversation.id AS conversationId, m.sender.id AS senderId, m.content AS content, " +
+           "m.createdAt AS createdAt FROM Message m WHERE m.conversation.id IN :conversationIds")
+    List<ChatDto.IndexedMessage> findForIndexIn(@Param("conversationIds") Collection<UUID> conversationIds);
+
+    @Query("SELECT m.id AS id, m.conversation.id AS conversationId, m.sender.id AS senderId, m.content AS content, " +
+           "m.createdAt AS createdAt FROM Message m WHERE m.conversation.id IN :conversationIds AND m.createdAt >= :since")
+    List<ChatDto.IndexedMessage> findForIndexSince(@Param("conversationIds") Collection<UUID> conversationIds,
+                                                   @Param("since") OffsetDateTime since);
+
+    @Query("SELECT m.conversation.id, COUNT(m) FROM Message m WHERE m.conversation.id IN :conversationIds " +
+           "GROUP BY m.conversation.id")
+    List<Object[]> countByConversations(@Param("conversationIds") Collection<UUID> conversationIds);
+
     @Modifying
     @Query("UPDATE Message m SET m.isRead = true, m.readAt = CURRENT_TIMESTAMP " +
            "WHERE m.conversation.id = :conversationId AND m.sender.id != :userId AND m.isRead = false")
     int markAsRead(@Param("conversationId") UUID conversationId, @Param("userId") UUID userId);
 
-    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.id = :conversationId AND m.sender.id != :userId AND m.isRead = false")
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.id = :conversationId AND m.sender.id != :userId AND m.isRead = false " +
+           "AND (m.conversation.participant1.id = :userId OR m.conversation.participant2.id = :userId)")
     long countUnread(@Param("conversationId") UUID conversationId, @Param("userId") UUID userId);
+
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.sender.id != :userId AND m.isRead = false " +
+           "AND (m.conversation.participant1.id = :userId OR m.conversation.participant2.id = :userId)")
+    long countUnreadForUser(@Param("userId") UUID userId);
 }
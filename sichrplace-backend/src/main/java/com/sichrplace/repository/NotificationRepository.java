@@ -9,6 +9,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
@@ -18,6 +21,11 @@ public interface NotificationRepository extends JpaRepository<Notification, UUID
     @Query("SELECT COUNT(n) FROM Notification n WHERE n.user.id = :userId AND n.isRead = false")
     long countUnreadByUserId(@Param("userId") UUID userId);
 
+    // Digest: unread (non-digest) notifications per user in one grouped query -> [userId, count]
+    @Query("SELECT n.user.id, COUNT(n) FROM Notification n WHERE n.user.id IN :userIds AND n.isRead = false " +
+           "AND n.createdAt > :since AND n.type <> 'digest' GROUP BY n.user.id")
+    List<Object[]> countUnreadSinceByUser(@Param("userIds") Collection<UUID> userIds, @Param("since") OffsetDateTime since);
+
     @Modifying
     @Query("UPDATE Notification n SET n.isRead = true, n.readAt = CURRENT_TIMESTAMP WHERE n.user.id = :userId AND n.isRead = false")
     int markAllAsRead(@Param("userId") UUID userId);
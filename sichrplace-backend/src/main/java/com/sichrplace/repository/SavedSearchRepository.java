@@ -4,10 +4,12 @@ import com.sichrplace.entity.SavedSearch;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface SavedSearchRepository extends JpaRepository<SavedSearch, UUID> {
     List<SavedSearch> findByUser_Id(UUID userId);
+    List<SavedSearch> findByUser_IdInAndAlertsEnabledTrueAndAlertFrequency(Collection<UUID> userIds, String alertFrequency);
 }
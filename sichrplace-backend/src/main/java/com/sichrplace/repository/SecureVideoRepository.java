@@ -2,12 +2,19 @@ package com.sichrplace.repository;
 
 import com.sichrplace.entity.SecureVideo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface SecureVideoRepository extends JpaRepository<SecureVideo, UUID> {
     List<SecureVideo> findByApartment_IdAndStatus(UUID apartmentId, String status);
+
+    List<SecureVideo> findByApartment_Id(UUID apartmentId);
+
+    @Query("SELECT v FROM SecureVideo v JOIN FETCH v.apartment a JOIN FETCH a.owner WHERE v.id = :id AND v.status = 'active'")
+    Optional<SecureVideo> findActiveWithApartment(UUID id);
 }
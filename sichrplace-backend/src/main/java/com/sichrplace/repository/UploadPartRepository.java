@@ -0,0 +1,15 @@
+package com.sichrplace.repository;
+
+import com.sichrplace.entity.UploadPart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface UploadPartRepository extends JpaRepository<UploadPart, UUID> {
+    List<UploadPart> findByUploadIdOrderByPartNumber(UUID uploadId);
+    Optional<UploadPart> findByUploadIdAndPartNumber(UUID uploadId, Integer partNumber);
+}
@@ -0,0 +1,39 @@
+package com.sichrplace.repository;
+
+import com.sichrplace.entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, UUID> {
+    List<UploadSession> findTop100ByStatusAndExpiresAtBefore(String status, OffsetDateTime cutoff);
+
+    List<UploadSession> findTop100ByStatusAndUpdatedAtBefore(String status, OffsetDateTime cutoff);
+
+    // State changes are conditional on the status the caller saw, so a stale entity never reverts a
+    // concurrent complete/abort/expiry; 0 rows means the session moved on
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.expiresAt = :expiresAt, s.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE s.id = :id AND s.status = 'uploading'")
+    int extend(@Param("id") UUID id, @Param("expiresAt") OffsetDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.status = :to, s.updatedAt = CURRENT_TIMESTAMP WHERE s.id = :id AND s.status = :from")
+    int transition(@Param("id") UUID id, @Param("from") String from, @Param("to") String to);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.status = 'completed', s.resultId = :resultId, s.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE s.id = :id AND s.status = 'completing'")
+    int markCompleted(@Param("id") UUID id, @Param("resultId") UUID resultId);
+}
@@ -13,4 +13,6 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByUsername(String username);
     boolean existsByEmail(String email);
     boolean existsByUsername(String username);
+    Optional<User> findByEmailVerificationTokenHash(String tokenHash);
+    Optional<User> findByPasswordResetTokenHash(String tokenHash);
 }
@@ -41,6 +41,31 @@ public class JwtTokenProvider {
                 .compact();
     }
 
+    /**
+     * Capability token for a single video, for clients that cannot send an Authorization header
+     * (a {@code <video src>} URL). Its subject is the video id, so it never authenticates a user.
+     */
+    public String generateVideoToken(UUID videoId, long ttlMs) {
+        Date now = new Date();
+        return Jwts.builder()
+                .subject(videoId.toString())
+                .claims(Map.of("scope", "video"))
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + ttlMs))
+                .signWith(key)
+                .compact();
+    }
+
+    public boolean isValidVideoToken(String token, UUID videoId) {
+        try {
+            Claims claims = parseToken(token);
+            return "video".equals(claims.get("scope", String.class))
+                    && videoId.toString().equals(claims.getSubject());
+        } catch (JwtException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     public UUID getUserIdFromToken(String token) {
         Claims claims = parseToken(token);
         return UUID.fromString(claims.getSubject());
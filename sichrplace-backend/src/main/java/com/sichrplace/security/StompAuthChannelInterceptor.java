@@ -0,0 +1,58 @@
+package com.sichrplace.security;
+
+import com.sichrplace.service.PresenceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Authenticates STOMP CONNECT frames with the same JWT as the REST API and feeds the
+ * presence registry. The session principal name is the user id, so
+ * convertAndSendToUser(userId.toString(), ...) reaches that user's sessions.
+ */
+@Component
+@RequiredArgsConstructor
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private final JwtTokenProvider jwtTokenProvider;
+    private final PresenceService presenceService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) return message;
+
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            String token = extractToken(accessor.getFirstNativeHeader("Authorization"));
+            if (StringUtils.hasText(token) && jwtTokenProvider.validateToken(token)) {
+                UUID userId = jwtTokenProvider.getUserIdFromToken(token);
+                String role = jwtTokenProvider.getRoleFromToken(token);
+                var authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role.toUpperCase()));
+                accessor.setUser(new UsernamePasswordAuthenticationToken(userId.toString(), null, authorities));
+                presenceService.connected(accessor.getSessionId(), userId);
+            }
+        } else {
+            // Heartbeats and regular frames keep the session's last-seen fresh
+            presenceService.touch(accessor.getSessionId());
+        }
+        return message;
+    }
+
+    private String extractToken(String header) {
+        if (StringUtils.hasText(header) && header.startsWith("Bearer ")) {
+            return header.substring(7);
+        }
+        return null;
+    }
+}
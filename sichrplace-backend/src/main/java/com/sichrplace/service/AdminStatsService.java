@@ -0,0 +1,269 @@
+package com.sichrplace.service;
+
+import com.sichrplace.dto.AdminDto;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Counters behind the admin dashboard. A reconciliation pass loads them with aggregate queries;
+ * in between, the write paths (registration, listing create/update/delete, viewing requests,
+ * reviews) adjust them after commit. The dashboard reads a prepared snapshot that is rebuilt only
+ * after a counter moved, so a refresh never touches the database. Bulk changes made in SQL
+ * (GDPR erasure, manual fixes) and races with a running pass are corrected by the next pass.
+ * The scheduled pass runs on its own thread, not the shared scheduler thread.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AdminStatsService {
+
+    private static final String UNKNOWN_CITY = "unknown";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "admin-stats");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private volatile Counters counters;
+    private volatile AdminDto.Dashboard snapshot;
+
+    @Value("${admin.stats.new-user-days:30}")
+    private int newUserDays;
+
+    /** One generation of counters; reconciliation swaps in a fresh instance */
+    private static class Counters {
+        final AtomicLong users = new AtomicLong();
+        final AtomicLong apartments = new AtomicLong();
+        final AtomicLong pendingReviews = new AtomicLong();
+        final Map<LocalDate, AtomicLong> newUsersByDay = new ConcurrentHashMap<>();
+        final Map<String, AtomicLong> activeByCity = new ConcurrentHashMap<>();
+        final Map<String, AtomicLong> requestsByStatus = new ConcurrentHashMap<>();
+        final OffsetDateTime reconciledAt = OffsetDateTime.now(ZoneOffset.UTC);
+    }
+
+    // ===== READS =====
+
+    public AdminDto.Dashboard dashboard() {
+        if (counters == null) {
+            reconcileLock.lock();
+            try {
+                if (counters == null) reload();
+            } finally {
+                reconcileLock.unlock();
+            }
+        }
+        AdminDto.Dashboard current = snapshot;
+        if (dirty.compareAndSet(true, false) || current == null) {
+            current = build(counters);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    // ===== WRITES =====
+
+    public void userRegistered() {
+        afterCommit(c -> {
+            c.users.incrementAndGet();
+            add(c.newUsersByDay, LocalDate.now(ZoneOffset.UTC), 1);
+        });
+    }
+
+    public void apartmentCreated(String city, String status) {
+        afterCommit(c -> {
+            c.apartments.incrementAndGet();
+            if ("active".equals(status)) add(c.activeByCity, city(city), 1);
+        });
+    }
+
+    public void listingChanged(String oldCity, String oldStatus, String newCity, String newStatus) {
+        if (Objects.equals(city(oldCity), city(newCity)) && Objects.equals(oldStatus, newStatus)) return;
+        afterCommit(c -> {
+            if ("active".equals(oldStatus)) add(c.activeByCity, city(oldCity), -1);
+            if ("active".equals(newStatus)) add(c.activeByCity, city(newCity), 1);
+        });
+    }
+
+    public void apartmentDeleted(String city, String status) {
+        afterCommit(c -> {
+            c.apartments.decrementAndGet();
+            if ("active".equals(status)) add(c.activeByCity, city(city), -1);
+        });
+    }
+
+    public void viewingRequestCreated(String status) {
+        afterCommit(c -> add(c.requestsByStatus, status, 1));
+    }
+
+    public void viewingRequestStatusChanged(String oldStatus, String newStatus) {
+        if (Objects.equals(oldStatus, newStatus)) return;
+        afterCommit(c -> {
+            add(c.requestsByStatus, oldStatus, -1);
+            add(c.requestsByStatus, newStatus, 1);
+        });
+    }
+
+    public void reviewCreated(String status) {
+        if ("pending".equals(status)) afterCommit(c -> c.pendingReviews.incrementAndGet());
+    }
+
+    public void reviewStatusChanged(String oldStatus, String newStatus) {
+        if (Objects.equals(oldStatus, newStatus)) return;
+        afterCommit(c -> {
+            if ("pending".equals(oldStatus)) c.pendingReviews.decrementAndGet();
+            if ("pending".equals(newStatus)) c.pendingReviews.incrementAndGet();
+        });
+    }
+
+    // ===== RECONCILIATION =====
+
+    @Scheduled(fixedDelayString = "${admin.stats.reconcile-ms:900000}", initialDelayString = "${admin.stats.initial-delay-ms:30000}")
+    public void scheduledReconcile() {
+        worker.execute(this::reconcile);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    public void reconcile() {
+        if (!reconcileLock.tryLock()) return;
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Admin stats reconciliation failed: {}", e.getMessage());
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * Reloads every counter from the database and swaps them in; logs the drift it corrected.
+     * Caller holds the reconcile lock.
+     */
+    private void reload() {
+        Counters fresh = new Counters();
+        fresh.users.set(count("SELECT COUNT_BIG(*) FROM users"));
+        fresh.apartments.set(count("SELECT COUNT_BIG(*) FROM apartments"));
+        fresh.pendingReviews.set(count("SELECT COUNT_BIG(*) FROM reviews WHERE status = 'pending'"));
+        jdbcTemplate.query("SELECT status, COUNT_BIG(*) FROM viewing_requests GROUP BY status",
+                (ResultSet rs) -> {
+                    add(fresh.requestsByStatus, rs.getString(1), rs.getLong(2));
+                });
+        jdbcTemplate.query("SELECT city, COUNT_BIG(*) FROM apartments WHERE status = 'active' GROUP BY city",
+                (ResultSet rs) -> {
+                    add(fresh.activeByCity, city(rs.getString(1)), rs.getLong(2));
+                });
+        LocalDate since = LocalDate.now(ZoneOffset.UTC).minusDays(newUserDays - 1L);
+        jdbcTemplate.query("SELECT CAST(SWITCHOFFSET(created_at, '+00:00') AS DATE), COUNT_BIG(*) FROM users " +
+                        "WHERE created_at >= ? GROUP BY CAST(SWITCHOFFSET(created_at, '+00:00') AS DATE)",
+                (ResultSet rs) -> {
+                    add(fresh.newUsersByDay, rs.getObject(1, LocalDate.class), rs.getLong(2));
+                },
+                since.atStartOfDay().atOffset(ZoneOffset.UTC));
+
+        Counters previous = counters;
+        if (previous != null) {
+            long drift = Math.abs(previous.users.get() - fresh.users.get())
+                    + Math.abs(previous.apartments.get() - fresh.apartments.get())
+                    + Math.abs(previous.pendingReviews.get() - fresh.pendingReviews.get())
+                    + Math.abs(sum(previous.requestsByStatus) - sum(fresh.requestsByStatus))
+                    + Math.abs(sum(previous.activeByCity) - sum(fresh.activeByCity));
+            if (drift > 0) log.info("Admin stats reconciled, corrected a drift of {}", drift);
+        }
+        counters = fresh;
+        dirty.set(true);
+    }
+
+    private long count(String sql) {
+        Long value = jdbcTemplate.queryForObject(sql, Long.class);
+        return value != null ? value : 0;
+    }
+
+    private AdminDto.Dashboard build(Counters c) {
+        Map<String, Long> newUsers = new LinkedHashMap<>();
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        for (int i = newUserDays - 1; i >= 0; i--) {
+            LocalDate day = today.minusDays(i);
+            AtomicLong count = c.newUsersByDay.get(day);
+            newUsers.put(day.toString(), count != null ? count.get() : 0);
+        }
+
+        Map<String, Long> byCity = new LinkedHashMap<>();
+        c.activeByCity.entrySet().stream()
+                .filter(e -> e.getValue().get() > 0)
+                .sorted((a, b) -> Long.compare(b.getValue().get(), a.getValue().get()))
+                .forEach(e -> byCity.put(e.getKey(), e.getValue().get()));
+
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        c.requestsByStatus.forEach((status, count) -> byStatus.put(status, count.get()));
+        long requests = sum(c.requestsByStatus);
+        long converted = byStatus.getOrDefault("accepted", 0L) + byStatus.getOrDefault("completed", 0L);
+
+        return AdminDto.Dashboard.builder()
+                .totalUsers(c.users.get())
+                .totalApartments(c.apartments.get())
+                .totalViewingRequests(requests)
+                .pendingReviews(c.pendingReviews.get())
+                .activeListings(sum(c.activeByCity))
+                .newUsersPerDay(newUsers)
+                .activeListingsByCity(byCity)
+                .viewingRequestsByStatus(byStatus)
+                .requestConversionRate(requests > 0 ? Math.round(converted * 10000.0 / requests) / 10000.0 : 0)
+                .reconciledAt(c.reconciledAt)
+                .build();
+    }
+
+    private static <K> void add(Map<K, AtomicLong> counters, K key, long delta) {
+        if (key == null) return;
+        counters.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    private static long sum(Map<?, AtomicLong> counters) {
+        long total = 0;
+        for (AtomicLong count : counters.values()) total += count.get();
+        return total;
+    }
+
+    private static String city(String city) {
+        return city == null || city.isBlank() ? UNKNOWN_CITY : city.trim();
+    }
+
+    /**
+     * Applies the update to the current generation once the write is committed; before the
+     * first reconciliation there is nothing to update (the first read loads everything)
+     */
+    private void afterCommit(Consumer<Counters> update) {
+        AfterCommit.run(() -> {
+            Counters c = counters;
+            if (c == null) return;
+            update.accept(c);
+            dirty.set(true);
+        });
+    }
+}
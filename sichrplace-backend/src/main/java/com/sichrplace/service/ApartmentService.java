@@ -1,17 +1,21 @@
 package com.sichrplace.service;
 
 import com.sichrplace.entity.Apartment;
+import com.sichrplace.entity.SecureVideo;
 import com.sichrplace.repository.ApartmentRepository;
+import com.sichrplace.repository.SecureVideoRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -21,17 +25,30 @@ import java.util.UUID;
 public class ApartmentService {
 
     private final ApartmentRepository apartmentRepository;
+    private final ImageVariantService imageVariantService;
+    private final SecureVideoRepository secureVideoRepository;
+    private final MediaCleanupService mediaCleanupService;
+    private final MediaObjectService mediaObjectService;
+    private final AdminStatsService adminStatsService;
+
+    @Value("${minio.bucket.apartments:apartment-images}")
+    private String imagesBucket;
 
     public Page<Apartment> search(String city, BigDecimal minPrice, BigDecimal maxPrice,
                                    Integer minRooms, Integer maxRooms,
                                    Double minSize, Double maxSize,
                                    int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        return apartmentRepository.searchApartments(city, minPrice, maxPrice, minRooms, maxRooms, minSize, maxSize, pageable);
+        return withCoverImages(apartmentRepository.searchApartments(city, minPrice, maxPrice, minRooms, maxRooms, minSize, maxSize, pageable));
     }
 
     public Page<Apartment> listActive(int page, int size) {
-        return apartmentRepository.findByStatusOrderByCreatedAtDesc("active", PageRequest.of(page, size));
+        return withCoverImages(apartmentRepository.findByStatusOrderByCreatedAtDesc("active", PageRequest.of(page, size)));
+    }
+
+    private Page<Apartment> withCoverImages(Page<Apartment> page) {
+        page.forEach(a -> a.setCoverImage(imageVariantService.coverImage(a.getImages())));
+        return page;
     }
 
     public Optional<Apartment> findById(UUID id) {
@@ -40,7 +57,11 @@ public class ApartmentService {
 
     @Transactional
     public Apartment create(Apartment apartment) {
-        return apartmentRepository.save(apartment);
+        // Stored photos only arrive through the upload endpoints
+        apartment.setImages(imageVariantService.withoutStoredImages(apartment.getImages(), imagesBucket));
+        Apartment saved = apartmentRepository.save(apartment);
+        adminStatsService.apartmentCreated(saved.getCity(), saved.getStatus());
+        return saved;
     }
 
     @Transactional
@@ -48,8 +69,25 @@ public class ApartmentService {
         return apartmentRepository.save(apartment);
     }
 
+    /**
+     * Deletes the apartment; once committed, the media references its uploads acquired and its
+     * folders are cleaned up in the background
+     */
     @Transactional
     public void delete(UUID id) {
+        Apartment apartment = apartmentRepository.findById(id).orElse(null);
+        List<String> imageKeys = mediaObjectService.detach("apartment", id).stream()
+                .filter(ref -> imagesBucket.equals(ref.bucket()))
+                .map(MediaObjectService.MediaRef::objectKey)
+                .toList();
+        List<String> videoKeys = secureVideoRepository.findByApartment_Id(id).stream()
+                .map(SecureVideo::getFilePath)
+                .toList();
         apartmentRepository.deleteById(id);
+        if (apartment != null) {
+            adminStatsService.apartmentDeleted(apartment.getCity(), apartment.getStatus());
+        }
+
+        AfterCommit.run(() -> mediaCleanupService.apartmentDeleted(id, imageKeys, videoKeys));
     }
 }
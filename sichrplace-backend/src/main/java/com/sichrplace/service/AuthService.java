@@ -6,11 +6,19 @@ import com.sichrplace.repository.UserRepository;
 import com.sichrplace.security.JwtTokenProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -20,6 +28,16 @@ public class AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
+    private final EmailService emailService;
+    private final AdminStatsService adminStatsService;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Value("${email.password-reset-valid-minutes:60}")
+    private int passwordResetValidMinutes;
+
+    @Value("${email.verification-valid-hours:48}")
+    private int verificationValidHours;
 
     @Transactional
     public AuthDto.AuthResponse login(AuthDto.LoginRequest request) {
@@ -84,8 +102,11 @@ public class AuthService {
                 .phone(request.getPhone())
                 .gdprConsent(request.getGdprConsent() != null ? request.getGdprConsent() : false)
                 .build();
+        String verificationToken = issueVerificationToken(user);
 
         user = userRepository.save(user);
+        adminStatsService.userRegistered();
+        emailService.sendVerification(user, verificationToken);
 
         String token = jwtTokenProvider.generateToken(
                 user.getId(), user.getEmail(), user.getRole(), user.getUsername());
@@ -100,6 +121,102 @@ public class AuthService {
                 .build();
     }
 
+    @Transactional
+    public boolean verifyEmail(String token) {
+        if (token == null || token.isBlank()) return false;
+        return userRepository.findByEmailVerificationTokenHash(sha256(token))
+                .filter(user -> user.getEmailVerificationExpiresAt() != null
+                        && user.getEmailVerificationExpiresAt().isAfter(OffsetDateTime.now()))
+                .map(user -> {
+                    user.setEmailVerified(true);
+                    user.setEmailVerificationTokenHash(null);
+                    user.setEmailVerificationExpiresAt(null);
+                    userRepository.save(user);
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    /**
+     * Always succeeds from the caller's point of view so addresses cannot be probed
+     */
+    @Transactional
+    public void resendVerification(String email) {
+        if (email == null) return;
+        userRepository.findByEmail(email.toLowerCase())
+                .filter(user -> !Boolean.TRUE.equals(user.getEmailVerified()))
+                .ifPresent(user -> {
+                    String token = issueVerificationToken(user);
+                    userRepository.save(user);
+                    emailService.sendVerification(user, token);
+                });
+    }
+
+    /**
+     * Always succeeds from the caller's point of view so addresses cannot be probed
+     */
+    @Transactional
+    public void requestPasswordReset(String email) {
+        if (email == null) return;
+        userRepository.findByEmail(email.toLowerCase())
+                .filter(user -> !user.getBlocked())
+                .ifPresent(user -> {
+                    String token = newToken();
+                    user.setPasswordResetTokenHash(sha256(token));
+                    user.setPasswordResetExpiresAt(OffsetDateTime.now().plusMinutes(passwordResetValidMinutes));
+                    userRepository.save(user);
+                    emailService.sendPasswordReset(user, token, passwordResetValidMinutes);
+                });
+    }
+
+    public boolean isPasswordResetTokenValid(String token) {
+        return findByResetToken(token).isPresent();
+    }
+
+    @Transactional
+    public boolean resetPassword(String token, String newPassword) {
+        return findByResetToken(token)
+                .map(user -> {
+                    user.setPassword(passwordEncoder.encode(newPassword));
+                    user.setPasswordResetTokenHash(null);
+                    user.setPasswordResetExpiresAt(null);
+                    user.setFailedLoginAttempts(0);
+                    userRepository.save(user);
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    private Optional<User> findByResetToken(String token) {
+        if (token == null || token.isBlank()) return Optional.empty();
+        return userRepository.findByPasswordResetTokenHash(sha256(token))
+                .filter(user -> user.getPasswordResetExpiresAt() != null
+                        && user.getPasswordResetExpiresAt().isAfter(OffsetDateTime.now()));
+    }
+
+    /** Stores only the hash and expiry on the user; the returned token goes out in the email */
+    private String issueVerificationToken(User user) {
+        String token = newToken();
+        user.setEmailVerificationTokenHash(sha256(token));
+        user.setEmailVerificationExpiresAt(OffsetDateTime.now().plusHours(verificationValidHours));
+        return token;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private AuthDto.UserInfo toUserInfo(User user) {
         return AuthDto.UserInfo.builder()
                 .id(user.getId().toString())
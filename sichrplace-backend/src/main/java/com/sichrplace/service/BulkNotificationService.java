@@ -0,0 +1,334 @@
+package com.sichrplace.service;
+
+import com.sichrplace.dto.NotificationDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fan-out of one notification to many users (announcements, price drops).
+ * Recipients are read in keyset chunks straight from the DB and each chunk is inserted
+ * with one JDBC batch in its own short transaction, which also moves the job's cursor in
+ * bulk_notification_jobs. A job interrupted by a restart is therefore resumed after its last
+ * committed chunk (by any node, once its heartbeat is stale), without inserting twice.
+ * Jobs run one at a time on a dedicated thread so a large broadcast cannot crowd out
+ * interactive requests. Online recipients are handed to a separate push thread that drains
+ * them at a capped rate; the job thread never waits for pushes.
+ */
+@Service
+@Slf4j
+public class BulkNotificationService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO notifications (id, user_id, type, title, message, data, action_url, priority, is_read, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, '{}', ?, ?, 0, ?)";
+
+    /** recipients_kind -> keyset query: TOP (?) first, then target_id if the kind has one, then "id > ?" last */
+    private static final Map<String, String> RECIPIENTS = Map.of(
+            "broadcast",
+            "SELECT TOP (?) id FROM users WHERE blocked = 0 AND account_status = 'active' AND id > ? ORDER BY id",
+            "favorited_by",
+            "SELECT TOP (?) user_id FROM favorites WHERE apartment_id = ? AND user_id > ? ORDER BY user_id");
+
+    private static final String JOB_COLUMNS =
+            "id, name, status, recipients, inserted, pushed, started_at, finished_at, error";
+
+    // Moves the cursor only from where this run read it, so a job taken over elsewhere stops here
+    private static final String CHECKPOINT_SQL =
+            "UPDATE bulk_notification_jobs SET last_id = ?, recipients = recipients + ?, inserted = inserted + ?, " +
+            "pushed = ?, updated_at = SYSDATETIMEOFFSET() WHERE id = ? AND status = 'running' AND last_id = ?";
+
+    private static final long PUSH_TICK_MS = 100;
+    private static final int MAX_LISTED_JOBS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final NotificationService notificationService;
+    private final UnreadCounterService unreadCounterService;
+    private final PresenceService presenceService;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> daemon(r, "bulk-notifications"));
+    private final ScheduledExecutorService pusher =
+            Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "bulk-notification-push"));
+    private final BlockingQueue<Push> pushes;
+    /** jobs queued or running on this node, with their live push count */
+    private final Map<UUID, AtomicLong> active = new ConcurrentHashMap<>();
+
+    @Value("${notifications.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${notifications.bulk.chunk-pause-ms:20}")
+    private long chunkPauseMs;
+
+    @Value("${notifications.bulk.pushes-per-second:500}")
+    private int pushesPerSecond;
+
+    @Value("${notifications.bulk.stale-minutes:5}")
+    private int staleMinutes;
+
+    @Value("${notifications.bulk.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${notifications.bulk.keep-days:30}")
+    private int keepDays;
+
+    private record Push(AtomicLong pushed, UUID userId, UUID id, String type, String title, String message,
+                        String priority, OffsetDateTime createdAt) {}
+
+    public BulkNotificationService(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   NotificationService notificationService,
+                                   UnreadCounterService unreadCounterService,
+                                   PresenceService presenceService,
+                                   @Value("${notifications.bulk.push-queue-capacity:10000}") int pushQueueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.notificationService = notificationService;
+        this.unreadCounterService = unreadCounterService;
+        this.presenceService = presenceService;
+        this.pushes = new LinkedBlockingQueue<>(pushQueueCapacity);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    @PostConstruct
+    void start() {
+        pusher.scheduleAtFixedRate(this::drainPushes, PUSH_TICK_MS, PUSH_TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+        pusher.shutdownNow();
+    }
+
+    /**
+     * Every active, unblocked user
+     */
+    public NotificationDto.BulkJob broadcast(String title, String message, String actionUrl, String priority) {
+        return submit("broadcast: " + title, "broadcast", null, "announcement", title, message, actionUrl, priority);
+    }
+
+    /**
+     * Every user who favorited the apartment
+     */
+    public NotificationDto.BulkJob favoritedBy(UUID apartmentId, String type, String title, String message,
+                                               String actionUrl, String priority) {
+        return submit(type + ": " + apartmentId, "favorited_by", apartmentId, type, title, message, actionUrl, priority);
+    }
+
+    public Optional<NotificationDto.BulkJob> getJob(UUID jobId) {
+        return jdbcTemplate.query("SELECT " + JOB_COLUMNS + " FROM bulk_notification_jobs WHERE id = ?",
+                this::toDto, jobId.toString()).stream().findFirst();
+    }
+
+    public List<NotificationDto.BulkJob> listJobs() {
+        return jdbcTemplate.query("SELECT TOP (?) " + JOB_COLUMNS + " FROM bulk_notification_jobs ORDER BY created_at DESC",
+                this::toDto, MAX_LISTED_JOBS);
+    }
+
+    // ===== EXECUTION =====
+
+    private NotificationDto.BulkJob submit(String name, String kind, UUID targetId, String type, String title,
+                                           String message, String actionUrl, String priority) {
+        UUID jobId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO bulk_notification_jobs (id, name, recipients_kind, target_id, type, title, " +
+                        "message, action_url, priority) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                jobId.toString(), name, kind, targetId != null ? targetId.toString() : null, type, title, message,
+                actionUrl, priority != null ? priority : "normal");
+        // The row is read back by the worker, so it must be visible first
+        AfterCommit.run(() -> enqueue(jobId));
+        return NotificationDto.BulkJob.builder().id(jobId.toString()).name(name).status("queued").build();
+    }
+
+    private void enqueue(UUID jobId) {
+        active.putIfAbsent(jobId, new AtomicLong());
+        try {
+            worker.execute(() -> {
+                try {
+                    run(jobId);
+                } finally {
+                    active.remove(jobId);
+                }
+            });
+        } catch (RuntimeException e) {
+            active.remove(jobId); // shutting down: the heartbeat of another node picks it up
+            throw e;
+        }
+    }
+
+    void run(UUID jobId) {
+        Map<String, Object> job = jdbcTemplate.queryForMap("SELECT * FROM bulk_notification_jobs WHERE id = ?", jobId.toString());
+        String name = (String) job.get("name");
+        String type = (String) job.get("type");
+        String title = (String) job.get("title");
+        String message = (String) job.get("message");
+        String actionUrl = (String) job.get("action_url");
+        String priority = (String) job.get("priority");
+        String recipientSql = RECIPIENTS.get((String) job.get("recipients_kind"));
+        Object targetId = job.get("target_id");
+        // ids bound as strings; SQL Server converts them to uniqueidentifier and its ordering
+        String lastId = job.get("last_id").toString();
+        AtomicLong pushed = active.computeIfAbsent(jobId, id -> new AtomicLong());
+        pushed.set(((Number) job.get("pushed")).longValue());
+        long inserted = ((Number) job.get("inserted")).longValue();
+
+        if (jdbcTemplate.update("UPDATE bulk_notification_jobs SET status = 'running', " +
+                "started_at = ISNULL(started_at, SYSDATETIMEOFFSET()), updated_at = SYSDATETIMEOFFSET() " +
+                "WHERE id = ? AND status IN ('queued', 'running')", jobId.toString()) == 0) {
+            return; // finished elsewhere in the meantime
+        }
+        try {
+            while (true) {
+                List<Object> args = new ArrayList<>();
+                args.add(chunkSize);
+                if (targetId != null) args.add(targetId.toString());
+                args.add(lastId);
+                List<String> recipients = jdbcTemplate.queryForList(recipientSql, String.class, args.toArray());
+                if (recipients.isEmpty()) break;
+
+                OffsetDateTime createdAt = OffsetDateTime.now(ZoneOffset.UTC);
+                List<Object[]> rows = new ArrayList<>(recipients.size());
+                for (String userId : recipients) {
+                    rows.add(new Object[]{UUID.randomUUID().toString(), userId, type, title, message, actionUrl, priority, createdAt});
+                }
+                String from = lastId;
+                String to = recipients.get(recipients.size() - 1);
+                Boolean owned = transactionTemplate.execute(status -> {
+                    if (jdbcTemplate.update(CHECKPOINT_SQL, to, rows.size(), rows.size(), pushed.get(),
+                            jobId.toString(), from) == 0) {
+                        status.setRollbackOnly();
+                        return false;
+                    }
+                    jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                    return true;
+                });
+                if (!Boolean.TRUE.equals(owned)) {
+                    log.warn("Bulk notification '{}' was taken over elsewhere, stopping here", name);
+                    return;
+                }
+                lastId = to;
+                inserted += rows.size();
+
+                int dropped = 0;
+                for (Object[] row : rows) {
+                    UUID userId = UUID.fromString((String) row[1]);
+                    unreadCounterService.notificationCreated(userId);
+                    if (presenceService.isOnline(userId) && !pushes.offer(new Push(pushed, userId,
+                            UUID.fromString((String) row[0]), type, title, message, priority, createdAt))) {
+                        dropped++;
+                    }
+                }
+                // Pushes are best effort; the rows are saved and read when the client reconnects
+                if (dropped > 0) log.debug("Bulk notification '{}': push backlog full, skipped {} pushes", name, dropped);
+
+                if (recipients.size() < chunkSize) break;
+                if (chunkPauseMs > 0) Thread.sleep(chunkPauseMs);
+            }
+            finish(jobId, "completed", null, pushed.get());
+            log.info("Bulk notification '{}' done: {} inserted, {} pushed so far", name, inserted, pushed.get());
+        } catch (InterruptedException e) {
+            // Shutting down: left running at its last checkpoint, resumed once its heartbeat is stale
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            finish(jobId, "failed", e.getMessage(), pushed.get());
+            log.error("Bulk notification '{}' failed after {} rows", name, inserted, e);
+        }
+    }
+
+    private void finish(UUID jobId, String status, String error, long pushed) {
+        jdbcTemplate.update("UPDATE bulk_notification_jobs SET status = ?, error = ?, pushed = ?, " +
+                        "finished_at = SYSDATETIMEOFFSET(), updated_at = SYSDATETIMEOFFSET() WHERE id = ?",
+                status, error != null && error.length() > 1000 ? error.substring(0, 1000) : error, pushed, jobId.toString());
+    }
+
+    /** Sends up to this tick's share of pushes-per-second */
+    private void drainPushes() {
+        int budget = (int) Math.max(1, pushesPerSecond * PUSH_TICK_MS / 1000);
+        Push push;
+        while (budget-- > 0 && (push = pushes.poll()) != null) {
+            notificationService.push(push.userId(), push.id(), push.type(), push.title(), push.message(),
+                    push.priority(), push.createdAt());
+            push.pushed().incrementAndGet();
+        }
+    }
+
+    /**
+     * Refreshes the heartbeat of jobs held by this node, resumes open jobs whose heartbeat went
+     * stale (their node stopped) from their last checkpoint, fails those that used up max-attempts,
+     * and drops finished jobs older than keep-days.
+     */
+    @Scheduled(fixedDelayString = "${notifications.bulk.heartbeat-ms:60000}", initialDelayString = "${notifications.bulk.heartbeat-ms:60000}")
+    public void heartbeat() {
+        try {
+            for (UUID jobId : active.keySet()) {
+                jdbcTemplate.update("UPDATE bulk_notification_jobs SET updated_at = SYSDATETIMEOFFSET() " +
+                        "WHERE id = ? AND status IN ('queued', 'running')", jobId.toString());
+            }
+
+            List<Map<String, Object>> stale = jdbcTemplate.queryForList("SELECT id, name, attempts FROM bulk_notification_jobs " +
+                    "WHERE status IN ('queued', 'running') AND updated_at < DATEADD(MINUTE, -?, SYSDATETIMEOFFSET())", staleMinutes);
+            for (Map<String, Object> row : stale) {
+                UUID jobId = UUID.fromString(row.get("id").toString());
+                if (active.containsKey(jobId)) continue;
+                int attempts = ((Number) row.get("attempts")).intValue();
+                if (attempts >= maxAttempts) {
+                    jdbcTemplate.update("UPDATE bulk_notification_jobs SET status = 'failed', error = 'interrupted', " +
+                            "finished_at = SYSDATETIMEOFFSET(), updated_at = SYSDATETIMEOFFSET() " +
+                            "WHERE id = ? AND status IN ('queued', 'running') AND attempts = ?", jobId.toString(), attempts);
+                } else if (jdbcTemplate.update("UPDATE bulk_notification_jobs SET attempts = attempts + 1, " +
+                        "updated_at = SYSDATETIMEOFFSET() WHERE id = ? AND status IN ('queued', 'running') AND attempts = ?",
+                        jobId.toString(), attempts) == 1) {
+                    log.info("Resuming interrupted bulk notification '{}' (attempt {})", row.get("name"), attempts + 1);
+                    enqueue(jobId);
+                }
+            }
+
+            jdbcTemplate.update("DELETE TOP (1000) FROM bulk_notification_jobs WHERE status IN ('completed', 'failed') " +
+                    "AND finished_at < DATEADD(DAY, -?, SYSDATETIMEOFFSET())", keepDays);
+        } catch (Exception e) {
+            log.warn("Bulk notification heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    private NotificationDto.BulkJob toDto(ResultSet rs, int rowNum) throws SQLException {
+        OffsetDateTime startedAt = rs.getObject("started_at", OffsetDateTime.class);
+        OffsetDateTime finishedAt = rs.getObject("finished_at", OffsetDateTime.class);
+        UUID id = UUID.fromString(rs.getString("id"));
+        AtomicLong livePushed = active.get(id);
+        return NotificationDto.BulkJob.builder()
+                .id(id.toString())
+                .name(rs.getString("name"))
+                .status(rs.getString("status"))
+                .recipients(rs.getLong("recipients"))
+                .inserted(rs.getLong("inserted"))
+                .pushed(livePushed != null ? Math.max(livePushed.get(), rs.getLong("pushed")) : rs.getLong("pushed"))
+                .startedAt(startedAt != null ? startedAt.toString() : null)
+                .finishedAt(finishedAt != null ? finishedAt.toString() : null)
+                .error(rs.getString("error"))
+                .build();
+    }
+}
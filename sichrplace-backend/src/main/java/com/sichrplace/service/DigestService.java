@@ -0,0 +1,313 @@
+package com.sichrplace.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sichrplace.entity.*;
+import com.sichrplace.repository.*;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Scheduled saved-search / notification digests.
+ * Each run covers one window (daily or weekly) and is split into contiguous id ranges of the
+ * user table, processed by a small fixed pool. A partition walks its users in keyset
+ * batches; each batch writes its digest notifications, advances the saved searches'
+ * last_executed and moves the partition's checkpoint in one transaction, so after a
+ * restart the run resumes at the next user without repeating or skipping anyone.
+ * Mail copies are written to the email outbox inside that same transaction.
+ *
+ * A user is a candidate when they have an alerting saved search with the run's frequency,
+ * or set "digest": "daily"/"weekly" in notification preferences.
+ */
+@Service
+@Slf4j
+public class DigestService {
+
+    private static final String CANDIDATES_SQL =
+            "SELECT TOP (?) u.id FROM users u " +
+            "WHERE u.blocked = 0 AND u.account_status = 'active' " +
+            "AND u.id > ? AND u.id > ? AND u.id <= ? " + // range start, checkpoint, range end
+            "AND (EXISTS (SELECT 1 FROM saved_searches s WHERE s.user_id = u.id " +
+            "             AND s.alerts_enabled = 1 AND s.alert_frequency = ?) " +
+            "  OR CASE WHEN ISJSON(u.notification_preferences) = 1 " +
+            "          THEN JSON_VALUE(u.notification_preferences, '$.digest') END = ?) " +
+            "ORDER BY u.id";
+
+    private static final int MAX_LISTINGS_PER_SEARCH = 5;
+    private static final UUID MIN_ID = new UUID(0, 0);
+    private static final UUID MAX_ID = new UUID(-1L, -1L);
+
+    private final DigestRunRepository digestRunRepository;
+    private final UserRepository userRepository;
+    private final SavedSearchRepository savedSearchRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final NotificationRepository notificationRepository;
+    private final UnreadCounterService unreadCounterService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EmailService emailService;
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService workers;
+    private final Set<UUID> activePartitions = ConcurrentHashMap.newKeySet();
+
+    private final int partitions;
+
+    @Value("${digest.batch-size:200}")
+    private int batchSize;
+
+    @Value("${digest.batch-pause-ms:50}")
+    private long batchPauseMs;
+
+    public DigestService(DigestRunRepository digestRunRepository,
+                         UserRepository userRepository,
+                         SavedSearchRepository savedSearchRepository,
+                         ApartmentRepository apartmentRepository,
+                         NotificationRepository notificationRepository,
+                         UnreadCounterService unreadCounterService,
+                         JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         EmailService emailService,
+                         ObjectMapper objectMapper,
+                         @Value("${digest.partitions:2}") int partitions) {
+        this.digestRunRepository = digestRunRepository;
+        this.userRepository = userRepository;
+        this.savedSearchRepository = savedSearchRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.notificationRepository = notificationRepository;
+        this.unreadCounterService = unreadCounterService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.emailService = emailService;
+        this.objectMapper = objectMapper;
+        this.partitions = Math.max(1, partitions);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.partitions, r -> {
+            Thread t = new Thread(r, "digest-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Scheduled(cron = "${digest.daily-cron:0 0 7 * * *}")
+    public void runDaily() {
+        start("daily", Duration.ofDays(1));
+    }
+
+    @Scheduled(cron = "${digest.weekly-cron:0 0 7 * * MON}")
+    public void runWeekly() {
+        start("weekly", Duration.ofDays(7));
+    }
+
+    /**
+     * Pick up partitions left running by a previous process
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeIncomplete() {
+        List<DigestRun> running = digestRunRepository.findByStatus("running");
+        if (!running.isEmpty()) {
+            log.info("Resuming {} unfinished digest partitions", running.size());
+            running.forEach(this::submit);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupts at a batch boundary; the checkpoint is already committed
+        workers.shutdownNow();
+    }
+
+    /**
+     * Create the window's partition rows (once) and queue any that are not finished
+     */
+    public List<DigestRun> start(String frequency, Duration period) {
+        OffsetDateTime windowEnd = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS);
+        String runKey = frequency + ":" + windowEnd.toLocalDate();
+
+        List<DigestRun> runs = digestRunRepository.findByRunKeyOrderByPartitionNo(runKey);
+        if (runs.isEmpty()) {
+            List<DigestRun> created = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                created.add(DigestRun.builder()
+                        .runKey(runKey)
+                        .frequency(frequency)
+                        .partitionNo(p)
+                        .partitionCount(partitions)
+                        .windowStart(windowEnd.minus(period))
+                        .windowEnd(windowEnd)
+                        .startedAt(OffsetDateTime.now(ZoneOffset.UTC))
+                        .build());
+            }
+            runs = digestRunRepository.saveAll(created);
+            log.info("Digest run {} started with {} partitions", runKey, partitions);
+        }
+        runs.stream().filter(r -> "running".equals(r.getStatus())).forEach(this::submit);
+        return runs;
+    }
+
+    private void submit(DigestRun run) {
+        if (activePartitions.add(run.getId())) {
+            workers.execute(() -> {
+                try {
+                    process(run);
+                } finally {
+                    activePartitions.remove(run.getId());
+                }
+            });
+        }
+    }
+
+    private void process(DigestRun run) {
+        try {
+            UUID lower = rangeStart(run.getPartitionNo(), run.getPartitionCount());
+            UUID upper = run.getPartitionNo() + 1 < run.getPartitionCount()
+                    ? rangeStart(run.getPartitionNo() + 1, run.getPartitionCount()) : MAX_ID;
+            while (!Thread.currentThread().isInterrupted()) {
+                UUID after = run.getLastUserId() != null ? run.getLastUserId() : lower;
+                List<UUID> userIds = jdbcTemplate.queryForList(CANDIDATES_SQL, String.class,
+                                batchSize, lower.toString(), after.toString(), upper.toString(),
+                                run.getFrequency(), run.getFrequency())
+                        .stream().map(UUID::fromString).toList();
+                if (userIds.isEmpty()) break;
+
+                transactionTemplate.executeWithoutResult(status -> processBatch(run, userIds));
+
+                if (userIds.size() < batchSize) break;
+                if (batchPauseMs > 0) Thread.sleep(batchPauseMs);
+            }
+            if (!Thread.currentThread().isInterrupted()) {
+                finish(run, "completed");
+                log.info("Digest {} partition {} done: {} users, {} digests",
+                        run.getRunKey(), run.getPartitionNo(), run.getUsersProcessed(), run.getDigestsCreated());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Digest {} partition {} failed after user {}", run.getRunKey(), run.getPartitionNo(), run.getLastUserId(), e);
+            finish(run, "failed");
+        }
+    }
+
+    private void processBatch(DigestRun run, List<UUID> userIds) {
+        OffsetDateTime windowStart = run.getWindowStart();
+        Map<UUID, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, u -> u));
+        Map<UUID, List<SavedSearch>> searches = savedSearchRepository
+                .findByUser_IdInAndAlertsEnabledTrueAndAlertFrequency(userIds, run.getFrequency())
+                .stream().collect(Collectors.groupingBy(s -> s.getUser().getId()));
+        Map<UUID, Long> unread = notificationRepository.countUnreadSinceByUser(userIds, windowStart).stream()
+                .collect(Collectors.toMap(r -> (UUID) r[0], r -> (Long) r[1]));
+
+        int created = 0;
+        for (UUID userId : userIds) {
+            User user = users.get(userId);
+            if (user == null) continue;
+
+            List<String> sections = new ArrayList<>();
+            for (SavedSearch search : searches.getOrDefault(userId, List.of())) {
+                String section = renderMatches(search, windowStart);
+                if (section != null) sections.add(section);
+                search.setLastExecuted(run.getWindowEnd());
+            }
+            long unreadCount = unread.getOrDefault(userId, 0L);
+            if (unreadCount > 0) {
+                sections.add("You have " + unreadCount + " unread notification" + (unreadCount == 1 ? "" : "s") + ".");
+            }
+            if (sections.isEmpty()) continue;
+
+            String title = "Your " + run.getFrequency() + " SichrPlace digest";
+            String body = String.join("\n\n", sections);
+            notificationRepository.save(Notification.builder()
+                    .user(user)
+                    .type("digest")
+                    .title(title)
+                    .message(body)
+                    .actionUrl("/saved-searches")
+                    .priority("low")
+                    .build());
+            unreadCounterService.notificationCreated(userId);
+            created++;
+
+            // Outbox row commits with the checkpoint: exactly one mail per user per window
+            emailService.sendNotification(user, title, body, "/saved-searches", "digest");
+        }
+
+        run.setLastUserId(userIds.get(userIds.size() - 1));
+        run.setUsersProcessed(run.getUsersProcessed() + userIds.size());
+        run.setDigestsCreated(run.getDigestsCreated() + created);
+        digestRunRepository.save(run);
+    }
+
+    private String renderMatches(SavedSearch search, OffsetDateTime windowStart) {
+        JsonNode criteria;
+        try {
+            criteria = objectMapper.readTree(search.getSearchCriteria());
+        } catch (Exception e) {
+            log.debug("Skipping saved search {} with unreadable criteria", search.getId());
+            return null;
+        }
+        OffsetDateTime since = search.getLastExecuted() != null ? search.getLastExecuted() : windowStart;
+        List<Apartment> matches = apartmentRepository.findNewMatches(since,
+                text(criteria, "city"),
+                criteria.hasNonNull("minPrice") ? criteria.get("minPrice").decimalValue() : null,
+                criteria.hasNonNull("maxPrice") ? criteria.get("maxPrice").decimalValue() : null,
+                criteria.hasNonNull("minRooms") ? criteria.get("minRooms").asInt() : null,
+                criteria.hasNonNull("maxRooms") ? criteria.get("maxRooms").asInt() : null,
+                criteria.hasNonNull("minSize") ? criteria.get("minSize").asDouble() : null,
+                criteria.hasNonNull("maxSize") ? criteria.get("maxSize").asDouble() : null,
+                PageRequest.of(0, MAX_LISTINGS_PER_SEARCH + 1));
+        if (matches.isEmpty()) return null;
+
+        StringBuilder section = new StringBuilder()
+                .append(matches.size() > MAX_LISTINGS_PER_SEARCH ? MAX_LISTINGS_PER_SEARCH + "+" : matches.size())
+                .append(" new listing").append(matches.size() == 1 ? "" : "s")
+                .append(" for \"").append(search.getName()).append("\":");
+        matches.stream().limit(MAX_LISTINGS_PER_SEARCH).forEach(a -> section
+                .append("\n- ").append(a.getTitle())
+                .append(a.getCity() != null ? ", " + a.getCity() : "")
+                .append(a.getPrice() != null ? " - " + a.getPrice().setScale(0, RoundingMode.HALF_UP) + " EUR" : ""));
+        return section.toString();
+    }
+
+    private void finish(DigestRun run, String status) {
+        run.setStatus(status);
+        run.setFinishedAt(OffsetDateTime.now(ZoneOffset.UTC));
+        digestRunRepository.save(run);
+    }
+
+    /**
+     * Exclusive lower bound of partition {@code p}: partition p holds the ids in
+     * (rangeStart(p), rangeStart(p + 1)]. SQL Server orders uniqueidentifiers by their last six
+     * bytes first, so the ranges split that group evenly; ids are random, so partitions are even
+     * and each one is a seek on the primary key.
+     */
+    static UUID rangeStart(int p, int count) {
+        if (p == 0) return MIN_ID;
+        long node = ((long) p << 48) / count;
+        return UUID.fromString(String.format("00000000-0000-0000-0000-%012x", node));
+    }
+
+    private static String text(JsonNode node, String field) {
+        return node.hasNonNull(field) && !node.get(field).asText().isBlank() ? node.get(field).asText() : null;
+    }
+}
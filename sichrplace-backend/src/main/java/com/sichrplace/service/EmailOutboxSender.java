@@ -0,0 +1,258 @@
+package com.sichrplace.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers the email outbox.
+ * Each poll claims due rows with UPDLOCK/READPAST (safe with several app instances),
+ * holds back rows whose recipient domain is over its per-minute budget, and hands the
+ * rest to a small pool where each worker sends its share over one SMTP connection
+ * (JavaMailSender.send(MimeMessage...)). Failures are retried with exponential backoff;
+ * malformed addresses and exhausted retries are marked failed. A claim is a lease, so
+ * rows left in 'sending' by a crashed process are picked up again.
+ * The scheduled poll only hands the drain to its own thread, so a slow SMTP server never
+ * holds up the other scheduled jobs.
+ */
+@Service
+@Slf4j
+public class EmailOutboxSender {
+
+    private static final String CLAIM_SQL =
+            "WITH due AS (" +
+            "  SELECT TOP (?) * FROM email_outbox WITH (UPDLOCK, READPAST, ROWLOCK) " +
+            "  WHERE (status = 'pending' AND next_attempt_at <= SYSDATETIMEOFFSET()) " +
+            "     OR (status = 'sending' AND locked_until < SYSDATETIMEOFFSET()) " +
+            "  ORDER BY next_attempt_at) " +
+            "UPDATE due SET status = 'sending', locked_until = DATEADD(SECOND, ?, SYSDATETIMEOFFSET()) " +
+            "OUTPUT inserted.id, inserted.recipient, inserted.domain, inserted.subject, inserted.body, inserted.attempts";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JavaMailSender mailSender;
+    private final ExecutorService workers;
+    private final ExecutorService drainer;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final int workerCount;
+
+    // domain -> sends in the current minute window
+    private final Map<String, DomainBudget> budgets = new ConcurrentHashMap<>();
+
+    @Value("${email.batch-size:20}")
+    private int batchSize;
+
+    @Value("${email.lease-seconds:120}")
+    private int leaseSeconds;
+
+    @Value("${email.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${email.backoff-base-ms:30000}")
+    private long backoffBaseMs;
+
+    @Value("${email.backoff-max-ms:3600000}")
+    private long backoffMaxMs;
+
+    @Value("${email.per-domain-per-minute:60}")
+    private int perDomainPerMinute;
+
+    @Value("${email.from:noreply@sichrplace.com}")
+    private String from;
+
+    public EmailOutboxSender(JdbcTemplate jdbcTemplate, JavaMailSender mailSender,
+                             @Value("${email.workers:2}") int workerCount) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mailSender = mailSender;
+        this.workerCount = Math.max(1, workerCount);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.workerCount, r -> {
+            Thread t = new Thread(r, "email-sender-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.drainer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "email-outbox");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${email.poll-ms:2000}")
+    public void poll() {
+        // Skipped while the previous drain is still sending
+        if (!draining.compareAndSet(false, true)) return;
+        drainer.execute(() -> {
+            try {
+                drain();
+            } catch (Exception e) {
+                log.error("Email outbox drain failed", e);
+            } finally {
+                draining.set(false);
+            }
+        });
+    }
+
+    private void drain() {
+        List<Outgoing> claimed = jdbcTemplate.query(CLAIM_SQL, (rs, i) -> new Outgoing(
+                        rs.getString("id"), rs.getString("recipient"), rs.getString("domain"),
+                        rs.getString("subject"), rs.getString("body"), rs.getInt("attempts")),
+                batchSize * workerCount, leaseSeconds);
+        if (claimed.isEmpty()) return;
+
+        List<Outgoing> ready = new ArrayList<>();
+        for (Outgoing mail : claimed) {
+            long waitMs = budgets.computeIfAbsent(mail.domain(), d -> new DomainBudget()).tryTake(perDomainPerMinute);
+            if (waitMs == 0) {
+                ready.add(mail);
+            } else {
+                // Over the domain's budget: back to pending without counting an attempt
+                jdbcTemplate.update("UPDATE email_outbox SET status = 'pending', locked_until = NULL, " +
+                        "next_attempt_at = DATEADD(MILLISECOND, ?, SYSDATETIMEOFFSET()) WHERE id = ?", waitMs, mail.id());
+            }
+        }
+
+        // One chunk (= one SMTP session) per worker; wait so the next drain does not overlap
+        List<Future<?>> sessions = new ArrayList<>();
+        int chunk = Math.max(1, (ready.size() + workerCount - 1) / workerCount);
+        for (int i = 0; i < ready.size(); i += chunk) {
+            List<Outgoing> session = ready.subList(i, Math.min(ready.size(), i + chunk));
+            sessions.add(workers.submit(() -> send(session)));
+        }
+        for (Future<?> session : sessions) {
+            try {
+                session.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Email session failed", e.getCause());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void send(List<Outgoing> session) {
+        Map<MimeMessage, Outgoing> messages = new LinkedHashMap<>();
+        for (Outgoing mail : session) {
+            try {
+                messages.put(toMime(mail), mail);
+            } catch (MessagingException | MailException e) {
+                failed(mail, e, true);
+            }
+        }
+        if (messages.isEmpty()) return;
+
+        Map<Object, Exception> failures = Map.of();
+        try {
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            failures = e.getFailedMessages();
+            if (failures.isEmpty()) {
+                // Connection-level failure: nothing was sent
+                messages.values().forEach(mail -> failed(mail, e, false));
+                return;
+            }
+        } catch (MailException e) {
+            messages.values().forEach(mail -> failed(mail, e, false));
+            return;
+        }
+
+        for (Map.Entry<MimeMessage, Outgoing> entry : messages.entrySet()) {
+            Exception failure = failures.get(entry.getKey());
+            if (failure == null) {
+                sent(entry.getValue());
+            } else {
+                failed(entry.getValue(), failure, failure instanceof MailParseException
+                        || failure instanceof MailPreparationException
+                        || failure.getCause() instanceof AddressException);
+            }
+        }
+        log.debug("Email session delivered {} of {}", messages.size() - failures.size(), messages.size());
+    }
+
+    private MimeMessage toMime(Outgoing mail) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+        helper.setFrom(from);
+        helper.setTo(mail.recipient());
+        helper.setSubject(mail.subject());
+        helper.setText(mail.body(), false);
+        return message;
+    }
+
+    private void sent(Outgoing mail) {
+        jdbcTemplate.update("UPDATE email_outbox SET status = 'sent', sent_at = SYSDATETIMEOFFSET(), " +
+                "locked_until = NULL, attempts = attempts + 1, last_error = NULL WHERE id = ?", mail.id());
+    }
+
+    private void failed(Outgoing mail, Exception e, boolean permanent) {
+        int attempts = mail.attempts() + 1;
+        String error = String.valueOf(e.getMessage());
+        if (error.length() > 1000) error = error.substring(0, 1000);
+
+        if (permanent || attempts >= maxAttempts) {
+            jdbcTemplate.update("UPDATE email_outbox SET status = 'failed', attempts = ?, locked_until = NULL, " +
+                    "last_error = ? WHERE id = ?", attempts, error, mail.id());
+            log.warn("Email {} to {} failed permanently after {} attempts: {}", mail.id(), mail.recipient(), attempts, error);
+            return;
+        }
+        // Exponential backoff with jitter: base * 2^(attempts-1), capped
+        long delay = Math.min(backoffMaxMs, backoffBaseMs << Math.min(attempts - 1, 20));
+        delay += ThreadLocalRandom.current().nextLong(Math.max(1, delay / 5));
+        jdbcTemplate.update("UPDATE email_outbox SET status = 'pending', attempts = ?, locked_until = NULL, " +
+                        "last_error = ?, next_attempt_at = ? WHERE id = ?",
+                attempts, error, OffsetDateTime.now(ZoneOffset.UTC).plusNanos(delay * 1_000_000), mail.id());
+        log.info("Email {} retry {} in {}s: {}", mail.id(), attempts, delay / 1000, error);
+    }
+
+    private record Outgoing(String id, String recipient, String domain, String subject, String body, int attempts) {}
+
+    /**
+     * Fixed one-minute window per recipient domain
+     */
+    private static class DomainBudget {
+        private long windowStart = System.currentTimeMillis();
+        private int used;
+
+        /**
+         * @return 0 if a send may go out now, otherwise ms until the window resets
+         */
+        long tryTake(int perMinute) {
+            // Only the drain thread calls this, so plain fields are enough
+            long now = System.currentTimeMillis();
+            if (now - windowStart >= 60_000) {
+                windowStart = now;
+                used = 0;
+            }
+            if (used < perMinute) {
+                used++;
+                return 0;
+            }
+            return 60_000 - (now - windowStart);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.sichrplace.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sichrplace.entity.EmailOutbox;
+import com.sichrplace.entity.User;
+import com.sichrplace.repository.EmailOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Locale;
+
+/**
+ * Composes outgoing mail and writes it to the email_outbox table. Joins the caller's
+ * transaction, so mail exists exactly when the change that caused it commits; delivery
+ * is done later by EmailOutboxSender and never blocks the request thread.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailService {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${email.link-base-url:http://localhost:3000}")
+    private String linkBaseUrl;
+
+    @Transactional
+    public EmailOutbox enqueue(String recipient, String subject, String body, String category) {
+        String address = recipient.trim();
+        int at = address.lastIndexOf('@');
+        return emailOutboxRepository.save(EmailOutbox.builder()
+                .recipient(address)
+                .domain(at >= 0 ? address.substring(at + 1).toLowerCase(Locale.ROOT) : "")
+                .subject(subject)
+                .body(body)
+                .category(category)
+                .nextAttemptAt(OffsetDateTime.now())
+                .build());
+    }
+
+    public void sendVerification(User user, String token) {
+        enqueue(user.getEmail(), "Confirm your SichrPlace email address",
+                greeting(user) + "please confirm your email address by opening this link:\n\n"
+                        + linkBaseUrl + "/verify-email.html?token=" + token + "\n\n"
+                        + "If you did not create a SichrPlace account, you can ignore this email.",
+                "verification");
+    }
+
+    public void sendPasswordReset(User user, String token, int validMinutes) {
+        enqueue(user.getEmail(), "Reset your SichrPlace password",
+                greeting(user) + "someone asked to reset the password for your account.\n\n"
+                        + linkBaseUrl + "/reset-password.html?token=" + token + "\n\n"
+                        + "The link is valid for " + validMinutes + " minutes. "
+                        + "If this wasn't you, no action is needed.",
+                "password_reset");
+    }
+
+    /**
+     * Mail copy of an in-app notification, if the user's preferences allow email
+     */
+    public boolean sendNotification(User user, String title, String message, String actionUrl, String category) {
+        if (!wantsEmail(user)) return false;
+        enqueue(user.getEmail(), title,
+                greeting(user) + message + (actionUrl != null ? "\n\n" + linkBaseUrl + actionUrl : ""),
+                category);
+        return true;
+    }
+
+    public boolean wantsEmail(User user) {
+        try {
+            JsonNode prefs = objectMapper.readTree(user.getNotificationPreferences());
+            return prefs == null || !prefs.has("email") || prefs.get("email").asBoolean();
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    private static String greeting(User user) {
+        return "Hi " + (user.getFirstName() != null ? user.getFirstName() : user.getUsername()) + ",\n\n";
+    }
+}
@@ -9,8 +9,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
-import java.util.UUID;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @RequiredArgsConstructor
@@ -18,23 +23,50 @@ import java.util.concurrent.TimeUnit;
 public class FileStorageService {
 
     private final MinioClient minioClient;
+    private final MediaObjectService mediaObjectService;
+    private final LocalObjectCache localObjectCache;
 
     @Value("${minio.endpoint}")
     private String minioEndpoint;
 
+    /** Signatures are issued for at least this long so one URL serves many requests */
+    @Value("${minio.presign.ttl-minutes:120}")
+    private int signTtlMinutes;
+
+    @Value("${minio.presign.cache-size:20000}")
+    private int presignCacheSize;
+
+    private static final int MAX_PRESIGN_MINUTES = 7 * 24 * 60; // S3 SigV4 limit
+
+    private record PresignKey(String bucket, String object, Method method) {}
+
+    private record Presigned(String url, long expiresAt) {}
+
+    private final Map<PresignKey, Presigned> presignCache = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
     /**
-     * Upload a file to MinIO
+     * Upload a file to MinIO under its content-addressed key. The file is hashed first;
+     * if the same bytes are already stored only the reference count changes.
      */
-    public String uploadFile(MultipartFile file, String bucket, String folder) {
+    public String uploadFile(MultipartFile file, String bucket) {
         try {
-            String fileName = folder + "/" + UUID.randomUUID() + "-" + file.getOriginalFilename();
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), sha256)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
 
-            minioClient.putObject(PutObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(fileName)
-                    .stream(file.getInputStream(), file.getSize(), -1)
-                    .contentType(file.getContentType())
-                    .build());
+            String fileName = mediaObjectService.reference(bucket, MediaObjectService.hex(sha256.digest()),
+                    file.getSize(), file.getContentType(), key -> {
+                        try (InputStream in = file.getInputStream()) {
+                            minioClient.putObject(PutObjectArgs.builder()
+                                    .bucket(bucket)
+                                    .object(key)
+                                    .stream(in, file.getSize(), -1)
+                                    .contentType(file.getContentType())
+                                    .build());
+                        }
+                    });
 
             log.info("File uploaded: {}/{}", bucket, fileName);
             return minioEndpoint + "/" + bucket + "/" + fileName;
@@ -45,31 +77,86 @@ public class FileStorageService {
     }
 
     /**
-     * Generate a pre-signed URL for secure file access
+     * Object key of a URL returned by {@link #uploadFile}
+     */
+    public String objectKey(String bucket, String url) {
+        String prefix = minioEndpoint + "/" + bucket + "/";
+        return url.startsWith(prefix) ? url.substring(prefix.length()) : url;
+    }
+
+    /**
+     * Pre-signed GET URL valid for at least {@code expiryMinutes}. Served from cache while the
+     * cached signature still covers the requested window; re-signed otherwise.
      */
     public String getPresignedUrl(String bucket, String objectName, int expiryMinutes) {
+        return presign(Method.GET, bucket, objectName, expiryMinutes);
+    }
+
+    /**
+     * Signs a whole gallery in one call; keys map to URLs in input order
+     */
+    public Map<String, String> getPresignedUrls(String bucket, Collection<String> objectNames, int expiryMinutes) {
+        Map<String, String> urls = new LinkedHashMap<>(objectNames.size() * 2);
+        for (String objectName : objectNames) {
+            urls.computeIfAbsent(objectName, o -> presign(Method.GET, bucket, o, expiryMinutes));
+        }
+        return urls;
+    }
+
+    private String presign(Method method, String bucket, String objectName, int expiryMinutes) {
+        long now = System.currentTimeMillis();
+        PresignKey key = new PresignKey(bucket, objectName, method);
+        Presigned cached = presignCache.get(key);
+        if (cached != null && cached.expiresAt() >= now + TimeUnit.MINUTES.toMillis(expiryMinutes)) {
+            return cached.url();
+        }
+
+        // Sign past the requested window so the same URL keeps serving later requests
+        // (and stays byte-identical, which lets browsers and proxies cache the image)
+        int ttl = Math.min(MAX_PRESIGN_MINUTES, Math.max(signTtlMinutes, expiryMinutes * 2));
         try {
-            return minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
-                    .method(Method.GET)
+            String url = minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                    .method(method)
                     .bucket(bucket)
                     .object(objectName)
-                    .expiry(expiryMinutes, TimeUnit.MINUTES)
+                    .expiry(ttl, TimeUnit.MINUTES)
                     .build());
+            presignCache.put(key, new Presigned(url, now + TimeUnit.MINUTES.toMillis(ttl)));
+            if (presignCache.size() > presignCacheSize) {
+                evictPresigned(now);
+            }
+            return url;
         } catch (Exception e) {
             log.error("Failed to generate presigned URL", e);
             throw new RuntimeException("Failed to generate presigned URL: " + e.getMessage());
         }
     }
 
+    /** Drops expired signatures, then the ones closest to expiry, down to 90% of capacity */
+    private void evictPresigned(long now) {
+        if (!evicting.compareAndSet(false, true)) return;
+        try {
+            presignCache.values().removeIf(p -> p.expiresAt() <= now);
+            int excess = presignCache.size() - presignCacheSize * 9 / 10;
+            if (excess > 0) {
+                presignCache.entrySet().stream()
+                        .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt()))
+                        .limit(excess)
+                        .map(Map.Entry::getKey)
+                        .toList()
+                        .forEach(presignCache::remove);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
     /**
-     * Download a file from MinIO
+     * Download a file, read through the node-local object cache
      */
     public InputStream downloadFile(String bucket, String objectName) {
         try {
-            return minioClient.getObject(GetObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(objectName)
-                    .build());
+            return localObjectCache.open(bucket, objectName);
         } catch (Exception e) {
             log.error("File download failed", e);
             throw new RuntimeException("File download failed: " + e.getMessage());
@@ -77,9 +164,16 @@ public class FileStorageService {
     }
 
     /**
-     * Delete a file from MinIO
+     * Delete a file from MinIO. Content-addressed files only lose one reference;
+     * the object goes when the last reference does.
      */
     public void deleteFile(String bucket, String objectName) {
+        presignCache.remove(new PresignKey(bucket, objectName, Method.GET));
+        localObjectCache.invalidate(bucket, objectName);
+        if (MediaObjectService.isContentAddressed(objectName)) {
+            mediaObjectService.release(bucket, objectName);
+            return;
+        }
         try {
             minioClient.removeObject(RemoveObjectArgs.builder()
                     .bucket(bucket)
@@ -0,0 +1,398 @@
+package com.sichrplace.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Carries out GDPR erasure requests. Each request runs as an ordered list of steps (dependent
+ * rows first, the users row last); every step is a loop of small auto-committed statements
+ * ({@code DELETE/UPDATE TOP (n)}) so no statement holds more than a batch worth of row locks and
+ * never escalates to a table lock. Rows other people still rely on are anonymized rather than
+ * deleted: the user's messages keep their place in the other side's conversation, reviews and
+ * viewing requests stay attached to the anonymized account. Between batches the worker pauses at
+ * least as long as the batch took and backs off further while batches run slow. The step index is
+ * checkpointed in GdprRequest.responseData and every statement is idempotent, so a restart resumes
+ * where it stopped.
+ */
+@Service
+@Slf4j
+public class GdprDeletionService {
+
+    private static final String DELETED = "[deleted]";
+    private static final int PAGE_SIZE = 20;
+
+    /** Not a BCrypt hash, so no password ever matches it */
+    private static final String NO_PASSWORD = "!deleted";
+
+    private interface StepAction {
+        /** Runs the step to completion; returns the number of rows affected */
+        long run(UUID userId) throws Exception;
+    }
+
+    private record Step(String name, StepAction action) {}
+
+    private record Due(UUID requestId, UUID userId, String responseData, OffsetDateTime requestedAt) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final FileStorageService fileStorageService;
+    private final MediaCleanupService mediaCleanupService;
+    private final MessageSearchService messageSearchService;
+    private final AdminStatsService adminStatsService;
+
+    private final List<Step> steps;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "gdpr-deletion");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile long pauseMs;
+
+    @Value("${minio.bucket.videos:secure-videos}")
+    private String videosBucket;
+
+    @Value("${minio.bucket.profiles:profile-pictures}")
+    private String profilesBucket;
+
+    @Value("${gdpr.deletion.batch-size:500}")
+    private int batchSize;
+
+    @Value("${gdpr.deletion.min-pause-ms:50}")
+    private long minPauseMs;
+
+    @Value("${gdpr.deletion.max-pause-ms:5000}")
+    private long maxPauseMs;
+
+    @Value("${gdpr.deletion.slow-batch-ms:250}")
+    private long slowBatchMs;
+
+    @Value("${gdpr.deletion.grace-hours:0}")
+    private int graceHours;
+
+    @Value("${gdpr.deletion.warn-after-days:21}")
+    private int warnAfterDays;
+
+    @Value("${gdpr.deletion.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${gdpr.deletion.retry-base-minutes:10}")
+    private long retryBaseMinutes;
+
+    public GdprDeletionService(JdbcTemplate jdbcTemplate,
+                               ObjectMapper objectMapper,
+                               FileStorageService fileStorageService,
+                               MediaCleanupService mediaCleanupService,
+                               MessageSearchService messageSearchService,
+                               AdminStatsService adminStatsService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fileStorageService = fileStorageService;
+        this.mediaCleanupService = mediaCleanupService;
+        this.messageSearchService = messageSearchService;
+        this.adminStatsService = adminStatsService;
+        this.steps = List.of(
+                new Step("notifications", batched("DELETE TOP (?) FROM notifications WHERE user_id = ?")),
+                new Step("notifications_archive", batched("DELETE TOP (?) FROM notifications_archive WHERE user_id = ?")),
+                new Step("recently_viewed", batched("DELETE TOP (?) FROM recently_viewed WHERE user_id = ?")),
+                new Step("favorites", batched("DELETE TOP (?) FROM favorites WHERE user_id = ?")),
+                new Step("saved_searches", batched("DELETE TOP (?) FROM saved_searches WHERE user_id = ?")),
+                // Must run while the users row still carries the address
+                new Step("email_outbox", batched("DELETE TOP (?) FROM email_outbox " +
+                        "WHERE recipient = (SELECT email FROM users WHERE id = ?) AND status <> 'sending'")),
+                new Step("upload_sessions", batched("UPDATE TOP (?) upload_sessions SET file_name = NULL, title = NULL, " +
+                        "expires_at = CASE WHEN status = 'uploading' THEN SYSDATETIMEOFFSET() ELSE expires_at END, " +
+                        "updated_at = SYSDATETIMEOFFSET() " +
+                        "WHERE user_id = ? AND (file_name IS NOT NULL OR title IS NOT NULL)")),
+                new Step("messages", this::anonymizeMessages),
+                new Step("conversations", batched("UPDATE TOP (?) conversations SET last_message_preview = N'" + DELETED + "' " +
+                        "WHERE last_message_sender_id = ? AND last_message_preview <> N'" + DELETED + "'")),
+                new Step("viewing_requests", batched("UPDATE TOP (?) viewing_requests SET notes = NULL, updated_at = SYSDATETIMEOFFSET() " +
+                        "WHERE requester_id = ? AND notes IS NOT NULL")),
+                new Step("viewing_requests_pending", batched("UPDATE TOP (?) viewing_requests SET status = 'cancelled', " +
+                        "updated_at = SYSDATETIMEOFFSET() WHERE (requester_id = ? OR landlord_id = ?) AND status = 'pending'")),
+                new Step("secure_videos", this::deleteVideos),
+                new Step("apartments", this::deactivateApartments),
+                new Step("profile_picture", this::releaseProfilePicture),
+                new Step("user", this::anonymizeUser)
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /** Hands due requests to the worker unless it is still busy with the previous round */
+    @Scheduled(fixedDelayString = "${gdpr.deletion.poll-ms:600000}", initialDelayString = "${gdpr.deletion.initial-delay-ms:120000}")
+    public void poll() {
+        if (running.compareAndSet(false, true)) {
+            worker.execute(() -> {
+                try {
+                    drain();
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Walks every due request once (keyset over created_at, id), so a request that keeps
+     * failing only waits for its own backoff and never holds up the ones behind it
+     */
+    private void drain() {
+        OffsetDateTime afterCreated = OffsetDateTime.parse("1970-01-01T00:00Z");
+        String afterId = "00000000-0000-0000-0000-000000000000";
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Due> due = jdbcTemplate.query(
+                    "SELECT TOP (?) id, user_id, response_data, created_at FROM gdpr_requests " +
+                            "WHERE request_type = 'data_deletion' AND status IN ('pending', 'processing') " +
+                            "AND created_at <= DATEADD(HOUR, -?, SYSDATETIMEOFFSET()) " +
+                            "AND (created_at > ? OR (created_at = ? AND id > ?)) ORDER BY created_at, id",
+                    (rs, i) -> new Due(UUID.fromString(rs.getString("id")), UUID.fromString(rs.getString("user_id")),
+                            rs.getString("response_data"), rs.getObject("created_at", OffsetDateTime.class)),
+                    PAGE_SIZE, graceHours, afterCreated, afterCreated, afterId);
+            for (Due next : due) {
+                if (Thread.currentThread().isInterrupted()) return;
+                process(next);
+                afterCreated = next.requestedAt();
+                afterId = next.requestId().toString();
+            }
+            if (due.size() < PAGE_SIZE) return;
+        }
+    }
+
+    private void process(Due request) {
+        UUID requestId = request.requestId();
+        UUID userId = request.userId();
+        OffsetDateTime requestedAt = request.requestedAt();
+        Map<String, Object> checkpoint = readCheckpoint(request.responseData());
+        Number retryAt = (Number) checkpoint.get("retryAt");
+        if (retryAt != null && retryAt.longValue() > System.currentTimeMillis()) return;
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> counts = (Map<String, Object>) checkpoint.computeIfAbsent("rows", k -> new LinkedHashMap<>());
+        int start = ((Number) checkpoint.getOrDefault("step", 0)).intValue();
+        if (start > 0) log.info("Resuming GDPR deletion {} at step {}", requestId, steps.get(Math.min(start, steps.size() - 1)).name());
+        pauseMs = minPauseMs;
+
+        for (int i = start; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            checkpoint.put("step", i);
+            checkpoint.put("stage", step.name());
+            save(requestId, "processing", checkpoint);
+            try {
+                long affected = step.action().run(userId);
+                counts.merge(step.name(), affected, (a, b) -> ((Number) a).longValue() + ((Number) b).longValue());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                failed(requestId, requestedAt, step.name(), checkpoint, e);
+                return;
+            }
+        }
+
+        checkpoint.put("step", steps.size());
+        checkpoint.put("stage", "done");
+        checkpoint.remove("lastError");
+        checkpoint.remove("retryAt");
+        save(requestId, "completed", checkpoint);
+        log.info("GDPR deletion {} completed for user {}: {}", requestId, userId, counts);
+    }
+
+    /**
+     * Schedules a retry with exponential backoff; after max-attempts the request is marked
+     * failed so it stops consuming rounds and shows up for an operator
+     */
+    private void failed(UUID requestId, OffsetDateTime requestedAt, String step, Map<String, Object> checkpoint, Exception e) {
+        int attempts = ((Number) checkpoint.getOrDefault("attempts", 0)).intValue() + 1;
+        checkpoint.put("attempts", attempts);
+        checkpoint.put("lastError", step + ": " + e.getMessage());
+        if (attempts >= maxAttempts) {
+            checkpoint.remove("retryAt");
+            save(requestId, "failed", checkpoint);
+            log.error("GDPR deletion {} failed {} times at step {}, giving up; needs manual attention",
+                    requestId, attempts, step, e);
+            return;
+        }
+        long backoff = Math.min(TimeUnit.HOURS.toMillis(24), TimeUnit.MINUTES.toMillis(retryBaseMinutes) << (attempts - 1));
+        checkpoint.put("retryAt", System.currentTimeMillis() + backoff);
+        save(requestId, "processing", checkpoint);
+        if (requestedAt != null && requestedAt.isBefore(OffsetDateTime.now().minusDays(warnAfterDays))) {
+            log.error("GDPR deletion {} is {} days old and still failing at step {}",
+                    requestId, Duration.between(requestedAt, OffsetDateTime.now()).toDays(), step, e);
+        } else {
+            log.warn("GDPR deletion {} failed at step {} (attempt {}, retry in {} min): {}",
+                    requestId, step, attempts, TimeUnit.MILLISECONDS.toMinutes(backoff), e.getMessage());
+        }
+    }
+
+    /** Repeats {@code sql} (first parameter TOP, the rest the user id) until a batch comes back short */
+    private StepAction batched(String sql) {
+        int userParams = (int) sql.chars().filter(c -> c == '?').count() - 1;
+        return userId -> {
+            Object[] args = new Object[userParams + 1];
+            args[0] = batchSize;
+            Arrays.fill(args, 1, args.length, userId.toString());
+            long total = 0;
+            int affected;
+            do {
+                long started = System.currentTimeMillis();
+                affected = jdbcTemplate.update(sql, args);
+                total += affected;
+                throttle(System.currentTimeMillis() - started);
+            } while (affected >= batchSize);
+            return total;
+        };
+    }
+
+    /**
+     * Sleeps at least as long as the last batch took (the job never takes more than half the
+     * time of one connection) and doubles the pause while batches are slow, i.e. the database is busy
+     */
+    private void throttle(long batchMs) throws InterruptedException {
+        pauseMs = batchMs > slowBatchMs
+                ? Math.min(maxPauseMs, pauseMs * 2)
+                : Math.max(minPauseMs, pauseMs / 2);
+        Thread.sleep(Math.max(pauseMs, batchMs));
+    }
+
+    /** Blanks the user's own messages; the conversations stay intact for the other participant */
+    private long anonymizeMessages(UUID userId) throws Exception {
+        long total = batched("UPDATE TOP (?) messages SET content = N'" + DELETED + "' " +
+                "WHERE sender_id = ? AND content <> N'" + DELETED + "'").run(userId);
+        jdbcTemplate.query("SELECT id FROM conversations WHERE participant_1_id = ? OR participant_2_id = ?",
+                (ResultSet rs) -> {
+                    messageSearchService.evict(UUID.fromString(rs.getString(1)));
+                },
+                userId.toString(), userId.toString());
+        return total;
+    }
+
+    /** Removes the user's videos (and any video on their listings) with their media */
+    private long deleteVideos(UUID userId) throws Exception {
+        long total = 0;
+        List<String> keys;
+        do {
+            long started = System.currentTimeMillis();
+            keys = jdbcTemplate.queryForList("DELETE TOP (?) FROM secure_videos OUTPUT deleted.file_path " +
+                            "WHERE uploaded_by = ? OR apartment_id IN (SELECT id FROM apartments WHERE owner_id = ?)",
+                    String.class, batchSize, userId.toString(), userId.toString());
+            for (String key : keys) {
+                try {
+                    fileStorageService.deleteFile(videosBucket, key);
+                } catch (Exception e) {
+                    log.warn("Could not remove video {}/{} (orphan sweep will retry): {}", videosBucket, key, e.getMessage());
+                }
+            }
+            total += keys.size();
+            throttle(System.currentTimeMillis() - started);
+        } while (keys.size() >= batchSize);
+        return total;
+    }
+
+    /**
+     * Takes the user's listings offline and drops their photos. The rows stay: other users'
+     * viewing requests and reviews point at them. Photos are released through the listings'
+     * recorded media references (detached first, so a resumed run cannot miss them).
+     */
+    private long deactivateApartments(UUID userId) throws Exception {
+        List<MediaObjectService.MediaRef> refs;
+        do {
+            long started = System.currentTimeMillis();
+            refs = jdbcTemplate.query("DELETE TOP (?) FROM media_references OUTPUT deleted.bucket, deleted.object_key " +
+                            "WHERE owner_type = 'apartment' AND owner_id IN (SELECT id FROM apartments WHERE owner_id = ?)",
+                    (rs, i) -> new MediaObjectService.MediaRef(rs.getString(1), rs.getString(2)),
+                    batchSize, userId.toString());
+            mediaCleanupService.release(refs);
+            throttle(System.currentTimeMillis() - started);
+        } while (refs.size() >= batchSize);
+
+        long total = 0;
+        List<Map<String, Object>> rows;
+        do {
+            long started = System.currentTimeMillis();
+            rows = jdbcTemplate.queryForList("UPDATE TOP (?) apartments SET status = 'inactive', images = NULL, " +
+                            "updated_at = SYSDATETIMEOFFSET() OUTPUT deleted.id, deleted.city, deleted.status " +
+                            "WHERE owner_id = ? AND (status <> 'inactive' OR images IS NOT NULL)",
+                    batchSize, userId.toString());
+            for (Map<String, Object> row : rows) {
+                // Legacy per-listing folders
+                mediaCleanupService.apartmentDeleted(UUID.fromString(row.get("id").toString()), List.of(), List.of());
+                adminStatsService.listingChanged((String) row.get("city"), (String) row.get("status"),
+                        (String) row.get("city"), "inactive");
+            }
+            total += rows.size();
+            throttle(System.currentTimeMillis() - started);
+        } while (rows.size() >= batchSize);
+        return total;
+    }
+
+    private long releaseProfilePicture(UUID userId) {
+        List<String> pictures = jdbcTemplate.queryForList(
+                "SELECT profile_picture FROM users WHERE id = ? AND profile_picture IS NOT NULL", String.class, userId.toString());
+        for (String url : pictures) {
+            String key = fileStorageService.objectKey(profilesBucket, url);
+            if (key.equals(url)) continue; // external URL, nothing stored here
+            try {
+                fileStorageService.deleteFile(profilesBucket, key);
+            } catch (Exception e) {
+                log.warn("Could not remove profile picture {}/{}: {}", profilesBucket, key, e.getMessage());
+            }
+        }
+        return pictures.size();
+    }
+
+    /**
+     * Strips the account down to a tombstone: unique fields get placeholder values, everything
+     * personal is cleared and the account can no longer log in (blocked, no usable password)
+     */
+    private long anonymizeUser(UUID userId) {
+        String placeholder = "deleted-" + userId;
+        return jdbcTemplate.update("UPDATE users SET username = ?, email = ?, password = ?, first_name = NULL, last_name = NULL, " +
+                        "phone = NULL, bio = NULL, profile_picture = NULL, notification_preferences = NULL, email_verified = 0, " +
+                        "email_verification_token_hash = NULL, email_verification_expires_at = NULL, " +
+                        "password_reset_token_hash = NULL, password_reset_expires_at = NULL, " +
+                        "account_status = 'deleted', blocked = 1, gdpr_consent = 0, last_login = NULL, " +
+                        "updated_at = SYSDATETIMEOFFSET() WHERE id = ?",
+                placeholder, placeholder + "@deleted.invalid", NO_PASSWORD, userId.toString());
+    }
+
+    private Map<String, Object> readCheckpoint(String responseData) {
+        if (responseData != null && !responseData.isBlank()) {
+            try {
+                return objectMapper.readValue(responseData, new TypeReference<LinkedHashMap<String, Object>>() {});
+            } catch (Exception e) {
+                log.warn("Unreadable GDPR deletion checkpoint, starting over: {}", e.getMessage());
+            }
+        }
+        return new LinkedHashMap<>();
+    }
+
+    private void save(UUID requestId, String status, Map<String, Object> checkpoint) {
+        try {
+            jdbcTemplate.update("UPDATE gdpr_requests SET status = ?, response_data = ?, completed_at = " +
+                            "CASE WHEN ? IN ('completed', 'failed') THEN SYSDATETIMEOFFSET() ELSE completed_at END WHERE id = ?",
+                    status, objectMapper.writeValueAsString(checkpoint), status, requestId.toString());
+        } catch (Exception e) {
+            log.warn("Could not checkpoint GDPR deletion {}: {}", requestId, e.getMessage());
+        }
+    }
+}
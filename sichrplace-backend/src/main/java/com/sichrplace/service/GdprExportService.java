@@ -0,0 +1,553 @@
+package com.sichrplace.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sichrplace.entity.GdprRequest;
+import com.sichrplace.repository.GdprRequestRepository;
+import io.minio.*;
+import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds GDPR data exports in the background. Each table related to the user is streamed row by
+ * row (JDBC fetch size, JSON generator) into a zip entry, followed by the user's media objects;
+ * the zip is piped straight into a MinIO multipart upload. Memory stays at one upload part plus
+ * the pipe buffer whatever the size of the account. Progress and the resulting object live in
+ * GdprRequest.responseData; the download link is a presigned URL valid for link-minutes.
+ * If writing the zip fails, the upload is failed too, so no truncated archive is stored.
+ * Queued and running exports carry a heartbeat in responseData; open exports whose heartbeat
+ * went stale (the node restarted) are resubmitted up to max-attempts times, then failed.
+ */
+@Service
+@Slf4j
+public class GdprExportService {
+
+    private static final int PIPE_BUFFER = 256 * 1024;
+    private static final long UPLOAD_PART_SIZE = 10L * 1024 * 1024;
+    private static final String HEARTBEAT = "ISNULL(CASE WHEN ISJSON(response_data) = 1 " +
+            "THEN TRY_CAST(JSON_VALUE(response_data, '$.heartbeatAt') AS BIGINT) END, 0)";
+
+    /** file in the zip -> query with the user id bound to every '?' (secrets and tokens excluded) */
+    private static final Map<String, String> TABLES = new LinkedHashMap<>();
+
+    static {
+        TABLES.put("profile.json", "SELECT id, username, email, role, first_name, last_name, phone, bio, profile_picture, " +
+                "notification_preferences, email_verified, account_status, gdpr_consent, last_login, created_at, updated_at " +
+                "FROM users WHERE id = ?");
+        TABLES.put("apartments.json", "SELECT * FROM apartments WHERE owner_id = ? ORDER BY created_at");
+        TABLES.put("conversations.json", "SELECT * FROM conversations WHERE participant_1_id = ? OR participant_2_id = ? ORDER BY created_at");
+        TABLES.put("messages.json", "SELECT m.* FROM messages m JOIN conversations c ON c.id = m.conversation_id " +
+                "WHERE c.participant_1_id = ? OR c.participant_2_id = ? ORDER BY m.conversation_id, m.created_at");
+        TABLES.put("viewing_requests.json", "SELECT * FROM viewing_requests WHERE requester_id = ? OR landlord_id = ? ORDER BY created_at");
+        TABLES.put("reviews.json", "SELECT * FROM reviews WHERE user_id = ? ORDER BY created_at");
+        TABLES.put("favorites.json", "SELECT * FROM favorites WHERE user_id = ? ORDER BY created_at");
+        TABLES.put("recently_viewed.json", "SELECT * FROM recently_viewed WHERE user_id = ?");
+        TABLES.put("saved_searches.json", "SELECT * FROM saved_searches WHERE user_id = ? ORDER BY created_at");
+        TABLES.put("notifications.json", "SELECT * FROM notifications WHERE user_id = ? ORDER BY created_at");
+        TABLES.put("notifications_archive.json", "SELECT * FROM notifications_archive WHERE user_id = ? ORDER BY created_at");
+        TABLES.put("emails.json", "SELECT e.id, e.subject, e.category, e.status, e.created_at, e.sent_at " +
+                "FROM email_outbox e JOIN users u ON u.email = e.recipient WHERE u.id = ? ORDER BY e.created_at");
+        TABLES.put("videos.json", "SELECT * FROM secure_videos WHERE uploaded_by = ? ORDER BY created_at");
+        TABLES.put("gdpr_requests.json", "SELECT id, request_type, status, completed_at, created_at FROM gdpr_requests WHERE user_id = ? ORDER BY created_at");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GdprRequestRepository gdprRequestRepository;
+    private final MinioClient minioClient;
+    private final FileStorageService fileStorageService;
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService exporter;
+    private final ExecutorService uploader;
+    private final ExecutorService pruner = Executors.newSingleThreadExecutor(r -> daemon(r, "gdpr-export-prune"));
+    /** exports queued or running on this node */
+    private final Set<UUID> active = ConcurrentHashMap.newKeySet();
+
+    @Value("${minio.bucket.exports:gdpr-exports}")
+    private String exportsBucket;
+
+    @Value("${minio.bucket.apartments:apartment-images}")
+    private String imagesBucket;
+
+    @Value("${minio.bucket.videos:secure-videos}")
+    private String videosBucket;
+
+    @Value("${minio.bucket.profiles:profile-pictures}")
+    private String profilesBucket;
+
+    @Value("${gdpr.export.include-videos:true}")
+    private boolean includeVideos;
+
+    @Value("${gdpr.export.link-minutes:15}")
+    private int linkMinutes;
+
+    @Value("${gdpr.export.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${gdpr.export.prune-batch-size:1000}")
+    private int pruneBatchSize;
+
+    @Value("${gdpr.export.fetch-size:500}")
+    private int fetchSize;
+
+    @Value("${gdpr.export.stale-minutes:5}")
+    private int staleMinutes;
+
+    @Value("${gdpr.export.max-attempts:3}")
+    private int maxAttempts;
+
+    public GdprExportService(JdbcTemplate jdbcTemplate,
+                             GdprRequestRepository gdprRequestRepository,
+                             MinioClient minioClient,
+                             FileStorageService fileStorageService,
+                             ObjectMapper objectMapper,
+                             @Value("${gdpr.export.threads:1}") int threads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.gdprRequestRepository = gdprRequestRepository;
+        this.minioClient = minioClient;
+        this.fileStorageService = fileStorageService;
+        this.objectMapper = objectMapper;
+        AtomicInteger count = new AtomicInteger();
+        this.exporter = Executors.newFixedThreadPool(threads, r -> daemon(r, "gdpr-export-" + count.incrementAndGet()));
+        this.uploader = Executors.newFixedThreadPool(threads, r -> daemon(r, "gdpr-export-upload-" + count.incrementAndGet()));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        exporter.shutdownNow();
+        uploader.shutdownNow();
+        pruner.shutdownNow();
+    }
+
+    /**
+     * Queues the export (call after the request row is committed)
+     */
+    public void submit(UUID requestId, UUID userId) {
+        submit(requestId, userId, 1);
+    }
+
+    private void submit(UUID requestId, UUID userId, int attempt) {
+        active.add(requestId);
+        try {
+            exporter.execute(() -> {
+                try {
+                    export(requestId, userId, attempt);
+                } finally {
+                    active.remove(requestId);
+                }
+            });
+        } catch (RuntimeException e) {
+            active.remove(requestId);
+            throw e;
+        }
+    }
+
+    /**
+     * Whether an open export is still queued or running on some node: submitted here, or its
+     * heartbeat (or, before the first one, its creation) is within stale-minutes
+     */
+    public boolean isAlive(GdprRequest request) {
+        if (active.contains(request.getId())) return true;
+        long cutoff = System.currentTimeMillis() - staleMinutes * 60_000L;
+        long heartbeat = 0;
+        try {
+            if (request.getResponseData() != null) {
+                heartbeat = objectMapper.readTree(request.getResponseData()).path("heartbeatAt").asLong(0);
+            }
+        } catch (Exception ignored) {
+            // unreadable progress counts as no heartbeat
+        }
+        if (heartbeat > 0) return heartbeat >= cutoff;
+        return request.getCreatedAt() != null && request.getCreatedAt().toInstant().toEpochMilli() >= cutoff;
+    }
+
+    /**
+     * Fails an open export whose worker is gone, unless it came back to life in the meantime
+     */
+    public void abandon(UUID requestId) {
+        int failed = jdbcTemplate.update("UPDATE gdpr_requests SET status = 'failed', completed_at = SYSDATETIMEOFFSET(), " +
+                        "response_data = JSON_MODIFY(ISNULL(response_data, '{}'), '$.error', 'interrupted') " +
+                        "WHERE id = ? AND status IN ('pending', 'processing') AND " + HEARTBEAT + " < ? " +
+                        "AND created_at < DATEADD(MINUTE, -?, SYSDATETIMEOFFSET())",
+                requestId.toString(), System.currentTimeMillis() - staleMinutes * 60_000L, staleMinutes);
+        if (failed > 0) log.warn("GDPR export {} was interrupted and has been failed", requestId);
+    }
+
+    /**
+     * Refreshes the heartbeat of the exports queued or running here, then picks up open exports
+     * whose node stopped: each is claimed by a conditional update (so only one node resubmits it)
+     * and queued again, or failed once it has used up max-attempts.
+     */
+    @Scheduled(fixedDelayString = "${gdpr.export.heartbeat-ms:60000}", initialDelayString = "${gdpr.export.heartbeat-ms:60000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        try {
+            for (UUID requestId : active) {
+                jdbcTemplate.update("UPDATE gdpr_requests SET response_data = JSON_MODIFY(ISNULL(response_data, '{}'), " +
+                        "'$.heartbeatAt', ?) WHERE id = ? AND status IN ('pending', 'processing')", now, requestId.toString());
+            }
+
+            long cutoff = now - staleMinutes * 60_000L;
+            List<Map<String, Object>> stale = jdbcTemplate.queryForList("SELECT id, user_id, response_data FROM gdpr_requests " +
+                    "WHERE request_type = 'data_export' AND status IN ('pending', 'processing') AND " + HEARTBEAT + " < ? " +
+                    "AND created_at < DATEADD(MINUTE, -?, SYSDATETIMEOFFSET())", cutoff, staleMinutes);
+            for (Map<String, Object> row : stale) {
+                UUID requestId = UUID.fromString(row.get("id").toString());
+                if (active.contains(requestId)) continue;
+                int attempts = readAttempts((String) row.get("response_data"));
+                if (attempts >= maxAttempts) {
+                    abandon(requestId);
+                } else if (claim(requestId, attempts + 1, cutoff)) {
+                    log.info("Resubmitting interrupted GDPR export {} (attempt {})", requestId, attempts + 1);
+                    submit(requestId, UUID.fromString(row.get("user_id").toString()), attempts + 1);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("GDPR export heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    private int readAttempts(String responseData) {
+        try {
+            return responseData == null ? 1 : objectMapper.readTree(responseData).path("attempts").asInt(1);
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+
+    private boolean claim(UUID requestId, int attempt, long cutoff) {
+        try {
+            Map<String, Object> progress = new LinkedHashMap<>();
+            progress.put("stage", "queued");
+            progress.put("attempts", attempt);
+            progress.put("heartbeatAt", System.currentTimeMillis());
+            return jdbcTemplate.update("UPDATE gdpr_requests SET status = 'pending', response_data = ? " +
+                            "WHERE id = ? AND status IN ('pending', 'processing') AND " + HEARTBEAT + " < ?",
+                    objectMapper.writeValueAsString(progress), requestId.toString(), cutoff) == 1;
+        } catch (Exception e) {
+            log.warn("Could not claim GDPR export {}: {}", requestId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Presigned download link for a completed export, or null
+     */
+    public String downloadUrl(GdprRequest request) {
+        if (!"completed".equals(request.getStatus()) || request.getResponseData() == null) return null;
+        try {
+            String key = objectMapper.readTree(request.getResponseData()).path("objectKey").asText(null);
+            if (key == null) return null;
+            // Signed here for exactly link-minutes: the shared presign cache signs for longer so it can reuse URLs
+            return minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                    .method(Method.GET)
+                    .bucket(exportsBucket)
+                    .object(key)
+                    .expiry(linkMinutes, TimeUnit.MINUTES)
+                    .build());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void export(UUID requestId, UUID userId, int attempt) {
+        String objectKey = userId + "/" + requestId + ".zip";
+        Map<String, Object> progress = new LinkedHashMap<>();
+        Map<String, Long> rows = new LinkedHashMap<>();
+        progress.put("stage", "starting");
+        progress.put("attempts", attempt);
+        progress.put("rows", rows);
+        progress.put("mediaFiles", 0);
+        saveProgress(requestId, "processing", progress);
+
+        Future<ObjectWriteResponse> upload = null;
+        try {
+            PipedInputStream zipIn = new PipedInputStream(PIPE_BUFFER);
+            PipedOutputStream pipe = new PipedOutputStream(zipIn);
+            AbortableInputStream source = new AbortableInputStream(zipIn);
+            upload = uploader.submit(() -> {
+                try (source) {
+                    return minioClient.putObject(PutObjectArgs.builder()
+                            .bucket(exportsBucket)
+                            .object(objectKey)
+                            .stream(source, -1, UPLOAD_PART_SIZE)
+                            .contentType("application/zip")
+                            .build());
+                }
+            });
+
+            try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(pipe, 64 * 1024))) {
+                try {
+                    for (Map.Entry<String, String> table : TABLES.entrySet()) {
+                        progress.put("stage", table.getKey());
+                        saveProgress(requestId, "processing", progress);
+                        zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+                        zip.putNextEntry(new ZipEntry("data/" + table.getKey()));
+                        rows.put(table.getKey(), writeTable(zip, table.getValue(), userId));
+                        zip.closeEntry();
+                    }
+
+                    progress.put("stage", "media");
+                    saveProgress(requestId, "processing", progress);
+                    zip.setLevel(Deflater.NO_COMPRESSION); // images and video are already compressed
+                    for (String[] media : mediaObjects(userId)) {
+                        if (writeMedia(zip, media[0], media[1])) {
+                            progress.put("mediaFiles", (Integer) progress.get("mediaFiles") + 1);
+                        }
+                    }
+                    zip.finish();
+                } catch (Exception e) {
+                    // Fail the upload before closing the pipe, so it aborts instead of storing a truncated zip
+                    source.abort(e);
+                    throw e;
+                }
+            }
+            ObjectWriteResponse written = upload.get();
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(exportsBucket).object(written.object()).build());
+            long bytes = stat.size();
+
+            progress.put("stage", "done");
+            progress.put("objectKey", objectKey);
+            progress.put("size", bytes);
+            progress.put("expiresAt", OffsetDateTime.now().plusDays(retentionDays).toString());
+            saveProgress(requestId, "completed", progress);
+            log.info("GDPR export {} for user {} completed ({} bytes)", requestId, userId, bytes);
+        } catch (Exception e) {
+            log.error("GDPR export {} for user {} failed", requestId, userId, e);
+            if (upload != null) awaitQuietly(upload);
+            removeQuietly(objectKey);
+            progress.put("error", e.getMessage());
+            saveProgress(requestId, "failed", progress);
+        }
+    }
+
+    /** Streams the result set as a JSON array into the current zip entry; returns the row count */
+    private long writeTable(OutputStream zip, String sql, UUID userId) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(new NonClosingOutputStream(zip));
+        json.writeStartArray();
+        Object[] args = new Object[(int) sql.chars().filter(c -> c == '?').count()];
+        Arrays.fill(args, userId.toString());
+        long[] count = {0};
+        jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement(sql);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.length; i++) ps.setObject(i + 1, args[i]);
+            return ps;
+        }, (ResultSet rs) -> {
+            try {
+                writeRow(json, rs);
+                count[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        json.writeEndArray();
+        json.close();
+        return count[0];
+    }
+
+    private static void writeRow(JsonGenerator json, ResultSet rs) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        json.writeStartObject();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            Object value = rs.getObject(i);
+            json.writeFieldName(meta.getColumnLabel(i));
+            if (value == null) json.writeNull();
+            else if (value instanceof Boolean b) json.writeBoolean(b);
+            else if (value instanceof Integer || value instanceof Long || value instanceof Short) json.writeNumber(((Number) value).longValue());
+            else if (value instanceof java.math.BigDecimal d) json.writeNumber(d);
+            else if (value instanceof Double || value instanceof Float) json.writeNumber(((Number) value).doubleValue());
+            else if (value instanceof byte[] bytes) json.writeString(Base64.getEncoder().encodeToString(bytes));
+            else json.writeString(value.toString()); // strings, GUIDs, DATETIMEOFFSET
+        }
+        json.writeEndObject();
+    }
+
+    /** [bucket, key] pairs for the user's profile picture, apartment photos and uploaded videos */
+    private List<String[]> mediaObjects(UUID userId) {
+        List<String[]> media = new ArrayList<>();
+        jdbcTemplate.query("SELECT profile_picture FROM users WHERE id = ?", (ResultSet rs) -> {
+            String url = rs.getString(1);
+            if (url != null) {
+                String key = fileStorageService.objectKey(profilesBucket, url);
+                if (!key.equals(url)) media.add(new String[]{profilesBucket, key});
+            }
+        }, userId.toString());
+        jdbcTemplate.query("SELECT DISTINCT r.object_key FROM media_references r JOIN apartments a ON a.id = r.owner_id " +
+                "WHERE r.owner_type = 'apartment' AND r.bucket = ? AND a.owner_id = ?", (ResultSet rs) -> {
+            media.add(new String[]{imagesBucket, rs.getString(1)});
+        }, imagesBucket, userId.toString());
+        if (includeVideos) {
+            jdbcTemplate.query("SELECT file_path FROM secure_videos WHERE uploaded_by = ?", (ResultSet rs) -> {
+                media.add(new String[]{videosBucket, rs.getString(1)});
+            }, userId.toString());
+        }
+        return media;
+    }
+
+    private boolean writeMedia(ZipOutputStream zip, String bucket, String key) throws IOException {
+        InputStream in;
+        try {
+            in = minioClient.getObject(GetObjectArgs.builder().bucket(bucket).object(key).build());
+        } catch (Exception e) {
+            log.debug("Skipping missing media {}/{}: {}", bucket, key, e.getMessage());
+            return false;
+        }
+        try (in) {
+            zip.putNextEntry(new ZipEntry("media/" + bucket + "/" + key));
+            in.transferTo(zip);
+            zip.closeEntry();
+            return true;
+        }
+    }
+
+    private void saveProgress(UUID requestId, String status, Map<String, Object> progress) {
+        try {
+            progress.put("heartbeatAt", System.currentTimeMillis());
+            String json = objectMapper.writeValueAsString(progress);
+            jdbcTemplate.update("UPDATE gdpr_requests SET status = ?, response_data = ?, completed_at = " +
+                            "CASE WHEN ? IN ('completed', 'failed') THEN SYSDATETIMEOFFSET() ELSE completed_at END WHERE id = ?",
+                    status, json, status, requestId.toString());
+        } catch (Exception e) {
+            log.warn("Could not record progress of GDPR export {}: {}", requestId, e.getMessage());
+        }
+    }
+
+    /** Lets a failing upload finish aborting before its object is removed */
+    private static void awaitQuietly(Future<?> upload) {
+        try {
+            upload.get(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            upload.cancel(true);
+        }
+    }
+
+    private void removeQuietly(String objectKey) {
+        try {
+            minioClient.removeObject(RemoveObjectArgs.builder().bucket(exportsBucket).object(objectKey).build());
+        } catch (Exception e) {
+            log.debug("No partial export to remove at {}: {}", objectKey, e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${gdpr.export.prune-cron:0 15 4 * * *}")
+    public void scheduledPrune() {
+        pruner.execute(this::pruneExpired);
+    }
+
+    /** Removes export archives past their retention, in bulk removeObjects calls */
+    public void pruneExpired() {
+        ZonedDateTime cutoff = ZonedDateTime.now().minusDays(retentionDays);
+        List<DeleteObject> batch = new ArrayList<>(pruneBatchSize);
+        long removed = 0;
+        try {
+            for (Result<Item> result : minioClient.listObjects(ListObjectsArgs.builder()
+                    .bucket(exportsBucket).recursive(true).build())) {
+                Item item = result.get();
+                if (item.lastModified() != null && item.lastModified().isBefore(cutoff)) {
+                    batch.add(new DeleteObject(item.objectName()));
+                    if (batch.size() >= pruneBatchSize) removed += removeBatch(batch);
+                }
+            }
+            removed += removeBatch(batch);
+        } catch (Exception e) {
+            log.warn("Pruning GDPR exports failed: {}", e.getMessage());
+        }
+        if (removed > 0) log.info("Removed {} expired GDPR exports", removed);
+    }
+
+    /** Removes and clears the batch; returns how many were deleted */
+    private long removeBatch(List<DeleteObject> batch) throws Exception {
+        if (batch.isEmpty()) return 0;
+        int failed = 0;
+        // Lazy: the request is only sent while iterating the results
+        for (Result<DeleteError> result : minioClient.removeObjects(
+                RemoveObjectsArgs.builder().bucket(exportsBucket).objects(new ArrayList<>(batch)).build())) {
+            DeleteError error = result.get();
+            log.warn("Could not remove expired export {}: {}", error.objectName(), error.message());
+            failed++;
+        }
+        long removed = batch.size() - failed;
+        batch.clear();
+        return removed;
+    }
+
+    /** Upload side of the pipe; once aborted, reaching the end fails instead of looking like a complete zip */
+    private static class AbortableInputStream extends FilterInputStream {
+        private volatile Exception failure;
+
+        AbortableInputStream(InputStream in) {
+            super(in);
+        }
+
+        void abort(Exception cause) {
+            failure = cause;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return checked(super.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return checked(super.read(b, off, len));
+        }
+
+        private int checked(int n) throws IOException {
+            if (n < 0 && failure != null) throw new IOException("Export aborted: " + failure.getMessage(), failure);
+            return n;
+        }
+    }
+
+    /** Lets the JSON generator close without closing the zip entry stream */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.sichrplace.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sichrplace.repository.ApartmentRepository;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates resized, EXIF-free variants of apartment photos in the background and records them
+ * in Apartment.images (JSON array of {original, width, height, variants: {"320": url, ...}}).
+ * Variants are stored next to the original ({key}_w320.jpg). Listings use {@link #coverImage}
+ * to pick the smallest variant that is still wide enough.
+ */
+@Service
+@Slf4j
+public class ImageVariantService {
+
+    private final MinioClient minioClient;
+    private final ApartmentRepository apartmentRepository;
+    private final FileStorageService fileStorageService;
+    private final MediaObjectService mediaObjectService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor workers;
+
+    /** Apartment.images is read-modify-written; serialize writers per apartment (striped) */
+    private final ReentrantLock[] stripes = new ReentrantLock[32];
+
+    @Value("${images.variants.widths:320,640,1280}")
+    private int[] widths;
+
+    @Value("${images.variants.quality:0.82}")
+    private float quality;
+
+    @Value("${images.variants.max-pixels:60000000}")
+    private long maxPixels;
+
+    @Value("${images.listing-width:320}")
+    private int listingWidth;
+
+    @Value("${images.gallery-url-minutes:30}")
+    private int galleryUrlMinutes;
+
+    @Value("${minio.endpoint}")
+    private String minioEndpoint;
+
+    public ImageVariantService(MinioClient minioClient,
+                               ApartmentRepository apartmentRepository,
+                               FileStorageService fileStorageService,
+                               MediaObjectService mediaObjectService,
+                               TransactionTemplate transactionTemplate,
+                               ObjectMapper objectMapper,
+                               @Value("${images.variants.threads:2}") int threads,
+                               @Value("${images.variants.queue-capacity:500}") int queueCapacity) {
+        this.minioClient = minioClient;
+        this.apartmentRepository = apartmentRepository;
+        this.fileStorageService = fileStorageService;
+        this.mediaObjectService = mediaObjectService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "image-variants-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Records the original (and the listing's media reference) on the apartment right away and
+     * queues variant generation. If the queue is full the image simply stays original-only.
+     */
+    public void imageUploaded(UUID apartmentId, String bucket, String objectKey) {
+        String originalUrl = url(bucket, objectKey);
+        updateImages(apartmentId, images -> {
+            if (MediaObjectService.isContentAddressed(objectKey)) {
+                mediaObjectService.attach("apartment", apartmentId, bucket, objectKey);
+            }
+            ObjectNode entry = images.addObject();
+            entry.put("original", originalUrl);
+        });
+        try {
+            workers.execute(() -> generate(apartmentId, bucket, objectKey, originalUrl));
+        } catch (RejectedExecutionException e) {
+            log.warn("Image variant queue full, skipping variants for {}/{}", bucket, objectKey);
+        }
+    }
+
+    private void generate(UUID apartmentId, String bucket, String objectKey, String originalUrl) {
+        try {
+            byte[] original;
+            try (InputStream in = minioClient.getObject(GetObjectArgs.builder().bucket(bucket).object(objectKey).build())) {
+                original = in.readAllBytes();
+            }
+
+            int largest = Arrays.stream(widths).max().orElse(1280);
+            BufferedImage image = decode(original, largest);
+            if (image == null) {
+                log.info("No decoder for {}/{}, keeping original only", bucket, objectKey);
+                return;
+            }
+            image = orient(image, exifOrientation(original));
+
+            Map<String, String> variants = new LinkedHashMap<>();
+            for (int width : Arrays.stream(widths).sorted().toArray()) {
+                if (width > image.getWidth() && !variants.isEmpty()) break;
+                BufferedImage scaled = scale(image, Math.min(width, image.getWidth()));
+                String key = variantKey(objectKey, width, "jpg");
+                put(bucket, key, encodeJpeg(scaled), "image/jpeg");
+                variants.put(String.valueOf(width), url(bucket, key));
+
+                ImageWriter webp = writer("image/webp");
+                if (webp != null) {
+                    String webpKey = variantKey(objectKey, width, "webp");
+                    put(bucket, webpKey, encode(webp, scaled, null), "image/webp");
+                    variants.put(width + "w", url(bucket, webpKey));
+                }
+            }
+
+            int width = image.getWidth();
+            int height = image.getHeight();
+            updateImages(apartmentId, images -> {
+                for (JsonNode node : images) {
+                    if (node.isObject() && originalUrl.equals(node.path("original").asText())) {
+                        ObjectNode entry = (ObjectNode) node;
+                        entry.put("width", width);
+                        entry.put("height", height);
+                        ObjectNode v = entry.putObject("variants");
+                        variants.forEach(v::put);
+                    }
+                }
+            });
+            log.debug("Generated {} variants for {}/{}", variants.size(), bucket, objectKey);
+        } catch (Exception e) {
+            log.warn("Variant generation failed for {}/{}: {}", bucket, objectKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Picks the smallest JPEG variant at least {@code images.listing-width} wide from the first image,
+     * falling back to the largest variant, then the original, as a /api/media proxy path.
+     * Legacy string entries are returned as-is.
+     */
+    public String coverImage(String imagesJson) {
+        if (imagesJson == null || imagesJson.isBlank()) return null;
+        try {
+            JsonNode images = objectMapper.readTree(imagesJson);
+            if (!images.isArray() || images.isEmpty()) return null;
+            JsonNode first = images.get(0);
+            if (first.isTextual()) return first.asText();
+
+            String best = null;
+            int bestWidth = Integer.MAX_VALUE;
+            String largest = null;
+            int largestWidth = 0;
+            for (Iterator<Map.Entry<String, JsonNode>> it = first.path("variants").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> variant = it.next();
+                if (!variant.getKey().chars().allMatch(Character::isDigit)) continue;
+                int w = Integer.parseInt(variant.getKey());
+                if (w >= listingWidth && w < bestWidth) {
+                    best = variant.getValue().asText();
+                    bestWidth = w;
+                }
+                if (w > largestWidth) {
+                    largest = variant.getValue().asText();
+                    largestWidth = w;
+                }
+            }
+            if (best != null) return proxied(best);
+            if (largest != null) return proxied(largest);
+            return proxied(first.path("original").asText(null));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Apartment images with every original and variant URL pre-signed (one bulk signing pass,
+     * served from the presign cache on repeat views). Foreign URLs are passed through unchanged.
+     */
+    public List<Map<String, Object>> gallery(String imagesJson, String bucket) {
+        ArrayNode images = parse(imagesJson);
+        String prefix = minioEndpoint + "/" + bucket + "/";
+
+        Set<String> keys = new LinkedHashSet<>();
+        for (JsonNode image : images) {
+            String original = image.isTextual() ? image.asText() : image.path("original").asText("");
+            if (original.startsWith(prefix)) keys.add(original.substring(prefix.length()));
+            image.path("variants").forEach(v -> {
+                if (v.asText().startsWith(prefix)) keys.add(v.asText().substring(prefix.length()));
+            });
+        }
+        Map<String, String> signed = fileStorageService.getPresignedUrls(bucket, keys, galleryUrlMinutes);
+
+        List<Map<String, Object>> gallery = new ArrayList<>(images.size());
+        for (JsonNode image : images) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            if (image.isTextual()) {
+                entry.put("original", signedUrl(image.asText(), prefix, signed));
+            } else {
+                entry.put("original", signedUrl(image.path("original").asText(null), prefix, signed));
+                if (image.has("width")) {
+                    entry.put("width", image.get("width").asInt());
+                    entry.put("height", image.get("height").asInt());
+                }
+                Map<String, String> variants = new LinkedHashMap<>();
+                image.path("variants").fields().forEachRemaining(v ->
+                        variants.put(v.getKey(), signedUrl(v.getValue().asText(), prefix, signed)));
+                entry.put("variants", variants);
+            }
+            gallery.add(entry);
+        }
+        return gallery;
+    }
+
+    /**
+     * Client-supplied images JSON without entries pointing into {@code bucket}: stored images are
+     * only added by the upload endpoints, which also record the listing's media reference
+     */
+    public String withoutStoredImages(String imagesJson, String bucket) {
+        if (imagesJson == null || imagesJson.isBlank()) return imagesJson;
+        ArrayNode kept = objectMapper.createArrayNode();
+        for (JsonNode image : parse(imagesJson)) {
+            if (!image.toString().contains("/" + bucket + "/")) kept.add(image);
+        }
+        return kept.toString();
+    }
+
+    /** Hot listing images go through the cached /api/media proxy instead of straight to MinIO */
+    private String proxied(String url) {
+        String prefix = minioEndpoint + "/apartment-images/";
+        return url != null && url.startsWith(prefix)
+                ? "/api/media/apartment-images/" + url.substring(prefix.length())
+                : url;
+    }
+
+    private static String signedUrl(String url, String prefix, Map<String, String> signed) {
+        if (url == null || !url.startsWith(prefix)) return url;
+        return signed.getOrDefault(url.substring(prefix.length()), url);
+    }
+
+    private interface ImagesUpdate {
+        void apply(ArrayNode images);
+    }
+
+    private void updateImages(UUID apartmentId, ImagesUpdate update) {
+        ReentrantLock lock = stripes[Math.floorMod(apartmentId.hashCode(), stripes.length)];
+        lock.lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> apartmentRepository.findById(apartmentId).ifPresent(apartment -> {
+                ArrayNode images = parse(apartment.getImages());
+                update.apply(images);
+                apartment.setImages(images.toString());
+            }));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ArrayNode parse(String json) {
+        try {
+            if (json != null && !json.isBlank()) {
+                JsonNode node = objectMapper.readTree(json);
+                if (node.isArray()) return (ArrayNode) node;
+            }
+        } catch (Exception e) {
+            log.warn("Replacing unparseable images JSON: {}", e.getMessage());
+        }
+        return objectMapper.createArrayNode();
+    }
+
+    /**
+     * Decodes with source subsampling so a 6000px photo is never fully materialized
+     * when the largest variant is 1280px; refuses decompression bombs by header dimensions.
+     */
+    private BufferedImage decode(byte[] data, int largestWidth) throws Exception {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                if ((long) w * h > maxPixels) {
+                    throw new IllegalArgumentException("Image too large: " + w + "x" + h);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = Math.max(1, w / (largestWidth * 2));
+                param.setSourceSubsampling(factor, factor, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Halves until within 2x of the target, then one bilinear pass: fast and free of aliasing */
+    private static BufferedImage scale(BufferedImage src, int targetWidth) {
+        int targetHeight = Math.max(1, (int) Math.round((double) src.getHeight() * targetWidth / src.getWidth()));
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        do {
+            w = Math.max(targetWidth, w / 2);
+            h = Math.max(targetHeight, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setColor(Color.WHITE); // flatten transparency for JPEG
+            g.fillRect(0, 0, w, h);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        } while (w != targetWidth || h != targetHeight);
+        return current;
+    }
+
+    /** Re-encoding without metadata drops EXIF (GPS, camera serials) */
+    private byte[] encodeJpeg(BufferedImage image) throws Exception {
+        ImageWriter writer = writer("image/jpeg");
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        if (param.canWriteProgressive()) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        }
+        return encode(writer, image, param);
+    }
+
+    private static byte[] encode(ImageWriter writer, BufferedImage image, ImageWriteParam param) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static ImageWriter writer(String mimeType) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(mimeType);
+        return writers.hasNext() ? writers.next() : null;
+    }
+
+    private void put(String bucket, String key, byte[] data, String contentType) throws Exception {
+        minioClient.putObject(PutObjectArgs.builder()
+                .bucket(bucket)
+                .object(key)
+                .stream(new ByteArrayInputStream(data), data.length, -1)
+                .contentType(contentType)
+                .headers(Map.of("Cache-Control", "public, max-age=31536000, immutable"))
+                .build());
+    }
+
+    static String variantKey(String objectKey, int width, String extension) {
+        int dot = objectKey.lastIndexOf('.');
+        String base = dot > objectKey.lastIndexOf('/') ? objectKey.substring(0, dot) : objectKey;
+        return base + "_w" + width + "." + extension;
+    }
+
+    private String url(String bucket, String key) {
+        return minioEndpoint + "/" + bucket + "/" + key;
+    }
+
+    /** Reads the EXIF orientation tag (0x0112) from a JPEG's APP1 segment; 1 when absent */
+    static int exifOrientation(byte[] jpeg) {
+        if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8) return 1;
+        int pos = 2;
+        while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+            int marker = jpeg[pos + 1] & 0xFF;
+            int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+            if (marker == 0xE1 && pos + 10 < jpeg.length
+                    && jpeg[pos + 4] == 'E' && jpeg[pos + 5] == 'x' && jpeg[pos + 6] == 'i' && jpeg[pos + 7] == 'f') {
+                int tiff = pos + 10;
+                boolean little = jpeg[tiff] == 'I';
+                int ifd = tiff + readInt(jpeg, tiff + 4, little);
+                if (ifd + 2 > jpeg.length) return 1;
+                int entries = readShort(jpeg, ifd, little);
+                for (int i = 0; i < entries; i++) {
+                    int entry = ifd + 2 + i * 12;
+                    if (entry + 12 > jpeg.length) return 1;
+                    if (readShort(jpeg, entry, little) == 0x0112) {
+                        int value = readShort(jpeg, entry + 8, little);
+                        return value >= 1 && value <= 8 ? value : 1;
+                    }
+                }
+                return 1;
+            }
+            if (marker == 0xDA) break; // start of scan: no more metadata
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] b, int i, boolean little) {
+        return little ? (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8)
+                : ((b[i] & 0xFF) << 8) | (b[i + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] b, int i, boolean little) {
+        return little ? readShort(b, i, true) | (readShort(b, i + 2, true) << 16)
+                : (readShort(b, i, false) << 16) | readShort(b, i + 2, false);
+    }
+
+    /** Applies the EXIF orientation so stripping the tag doesn't leave phone photos sideways */
+    private static BufferedImage orient(BufferedImage src, int orientation) {
+        if (orientation == 1) return src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        boolean swap = orientation >= 5;
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.scale(-1, 1); t.translate(-h, 0); t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            case 8 -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            default -> { return src; }
+        }
+        BufferedImage out = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.drawImage(src, t, null);
+        g.dispose();
+        return out;
+    }
+}
@@ -0,0 +1,305 @@
+package com.sichrplace.service;
+
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Read-through on-disk LRU cache of MinIO objects on this node. Hits are served straight from
+ * local files: via Tomcat sendfile when the connector supports it (kernel zero-copy), otherwise
+ * with FileChannel.transferTo. Total size is capped by storage.cache.max-size; the cache is
+ * rebuilt from scratch on start. Files are kept in an "objects" subdirectory of storage.cache.dir,
+ * and only files named the way this cache names them are removed there, so pointing the setting
+ * at a shared directory never deletes anything else. Evicted files are deleted after a grace period because a
+ * sendfile response may still be reading them.
+ */
+@Service
+@Slf4j
+public class LocalObjectCache {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final long DELETE_GRACE_MS = 60_000;
+    private static final String SUBDIRECTORY = "objects";
+
+    private final MinioClient minioClient;
+
+    @Value("${storage.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.cache.dir:${java.io.tmpdir}/sichrplace-media-cache}")
+    private Path dir;
+
+    /** Where the cached files live; see init() */
+    private Path files;
+
+    @Value("${storage.cache.max-size:2GB}")
+    private DataSize maxSize;
+
+    @Value("${storage.cache.max-object-size:20MB}")
+    private DataSize maxObjectSize;
+
+    record CachedObject(Path file, long size, String contentType, String etag) {}
+
+    private record Doomed(Path file, long deleteAfter) {}
+
+    /** Access-ordered: iteration starts at the least recently used entry */
+    private final LinkedHashMap<String, CachedObject> index = new LinkedHashMap<>(256, 0.75f, true);
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private long totalBytes;
+
+    /** One MinIO fetch per key at a time; concurrent misses wait on the same load */
+    private final Map<String, CompletableFuture<CachedObject>> loading = new ConcurrentHashMap<>();
+    private final Queue<Doomed> doomed = new ConcurrentLinkedQueue<>();
+
+    public LocalObjectCache(MinioClient minioClient) {
+        this.minioClient = minioClient;
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) return;
+        files = dir.resolve(SUBDIRECTORY);
+        Files.createDirectories(files);
+        int removed = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(files)) {
+            for (Path file : stream) {
+                if (isCacheFile(file.getFileName().toString()) && Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.deleteIfExists(file);
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) log.info("Cleared {} files left in the media cache at {}", removed, files);
+    }
+
+    /** Cache files are named {@code <uuid>} (complete) or {@code <uuid>.part} (being written) */
+    static boolean isCacheFile(String name) {
+        String id = name.endsWith(".part") ? name.substring(0, name.length() - ".part".length()) : name;
+        if (id.length() != 36) return false;
+        try {
+            return UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the object to the response (200 or 304), serving from local disk when cached
+     */
+    public void serve(String bucket, String objectKey, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CachedObject cached = get(bucket, objectKey);
+        if (cached == null) {
+            serveUncached(bucket, objectKey, request, response);
+            return;
+        }
+
+        String etag = "\"" + cached.etag() + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(objectKey));
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(cached.contentType());
+        response.setContentLengthLong(cached.size());
+        if ("HEAD".equals(request.getMethod())) return;
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat sends the file after we return, from the kernel page cache
+            request.setAttribute("org.apache.tomcat.sendfile.filename", cached.file().toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+            request.setAttribute("org.apache.tomcat.sendfile.end", cached.size());
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(cached.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < cached.size()) {
+                position += channel.transferTo(position, cached.size() - position, out);
+            }
+        }
+    }
+
+    /**
+     * Opens the object, from local disk when cached (filling the cache on a miss)
+     */
+    public InputStream open(String bucket, String objectKey) throws Exception {
+        CachedObject cached = get(bucket, objectKey);
+        if (cached != null) {
+            try {
+                return Files.newInputStream(cached.file());
+            } catch (NoSuchFileException e) {
+                // Evicted and purged between lookup and open: fall through to MinIO
+            }
+        }
+        return minioClient.getObject(GetObjectArgs.builder().bucket(bucket).object(objectKey).build());
+    }
+
+    /** Drops the object and anything under its key prefix (derived variants) */
+    public void invalidate(String bucket, String objectKey) {
+        if (!enabled) return;
+        String prefix = bucket + "/" + objectKey;
+        indexLock.lock();
+        try {
+            Iterator<Map.Entry<String, CachedObject>> it = index.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, CachedObject> entry = it.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    it.remove();
+                    totalBytes -= entry.getValue().size();
+                    discard(entry.getValue());
+                }
+            }
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /** Returns the cached object, loading it on a miss; null when caching is off or the object is too big */
+    private CachedObject get(String bucket, String objectKey) {
+        if (!enabled) return null;
+        String key = bucket + "/" + objectKey;
+        indexLock.lock();
+        try {
+            CachedObject hit = index.get(key);
+            if (hit != null) return hit;
+        } finally {
+            indexLock.unlock();
+        }
+
+        CompletableFuture<CachedObject> load = new CompletableFuture<>();
+        CompletableFuture<CachedObject> existing = loading.putIfAbsent(key, load);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            CachedObject loaded = fetch(bucket, objectKey);
+            if (loaded != null) admit(key, loaded);
+            load.complete(loaded);
+            return loaded;
+        } catch (Exception e) {
+            log.warn("Cache fill failed for {}: {}", key, e.getMessage());
+            load.complete(null);
+            return null;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    private CachedObject fetch(String bucket, String objectKey) throws Exception {
+        StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(objectKey).build());
+        if (stat.size() > maxObjectSize.toBytes()) return null;
+
+        Path target = files.resolve(UUID.randomUUID().toString());
+        Path temp = files.resolve(target.getFileName() + ".part");
+        try (InputStream in = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(bucket).object(objectKey).matchETag(stat.etag()).build())) {
+            Files.copy(in, temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        String contentType = stat.contentType() != null ? stat.contentType() : "application/octet-stream";
+        return new CachedObject(target, stat.size(), contentType, stat.etag());
+    }
+
+    private void admit(String key, CachedObject object) {
+        indexLock.lock();
+        try {
+            CachedObject previous = index.put(key, object);
+            if (previous != null) {
+                totalBytes -= previous.size();
+                discard(previous);
+            }
+            totalBytes += object.size();
+            Iterator<CachedObject> lru = index.values().iterator();
+            while (totalBytes > maxSize.toBytes() && lru.hasNext()) {
+                CachedObject eldest = lru.next();
+                if (eldest == object) break;
+                lru.remove();
+                totalBytes -= eldest.size();
+                discard(eldest);
+            }
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    private void discard(CachedObject object) {
+        doomed.add(new Doomed(object.file(), System.currentTimeMillis() + DELETE_GRACE_MS));
+    }
+
+    @Scheduled(fixedDelayString = "${storage.cache.purge-interval-ms:30000}")
+    public void purgeEvicted() {
+        long now = System.currentTimeMillis();
+        Doomed next;
+        while ((next = doomed.peek()) != null && next.deleteAfter() <= now) {
+            doomed.poll();
+            try {
+                Files.deleteIfExists(next.file());
+            } catch (IOException e) {
+                log.debug("Could not delete cached file {}: {}", next.file(), e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        indexLock.lock();
+        try {
+            return Map.of("enabled", enabled, "entries", index.size(), "bytes", totalBytes,
+                    "maxBytes", maxSize.toBytes(), "pendingDeletes", doomed.size());
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    private void serveUncached(String bucket, String objectKey, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(objectKey).build());
+            response.setHeader(HttpHeaders.ETAG, "\"" + stat.etag() + "\"");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(objectKey));
+            response.setContentType(stat.contentType());
+            response.setContentLengthLong(stat.size());
+            if ("HEAD".equals(request.getMethod())) return;
+            try (InputStream in = minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(bucket).object(objectKey).matchETag(stat.etag()).build())) {
+                in.transferTo(response.getOutputStream());
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    /** Content-addressed keys never change, so they can be cached by browsers forever */
+    private static String cacheControl(String objectKey) {
+        return MediaObjectService.isContentAddressed(objectKey)
+                ? "public, max-age=31536000, immutable"
+                : "public, max-age=3600";
+    }
+}
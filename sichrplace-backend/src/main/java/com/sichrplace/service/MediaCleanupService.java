@@ -0,0 +1,226 @@
+package com.sichrplace.service;
+
+import com.sichrplace.dto.StorageDto;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Background removal of media that no row points at any more. Apartment deletes release
+ * content-addressed references and clear the apartment's legacy {id}/ prefixes; the periodic
+ * orphan sweep reconciles whole buckets against the DB. All removals stream the listing and
+ * go out as bulk removeObjects calls of up to storage.cleanup.batch-size keys.
+ */
+@Service
+@Slf4j
+public class MediaCleanupService {
+
+    private final MinioClient minioClient;
+    private final FileStorageService fileStorageService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "media-cleanup");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<StorageDto.SweepReport> lastSweep = new AtomicReference<>();
+
+    @Value("${minio.bucket.apartments:apartment-images}")
+    private String imagesBucket;
+
+    @Value("${minio.bucket.videos:secure-videos}")
+    private String videosBucket;
+
+    @Value("${storage.cleanup.batch-size:1000}")
+    private int batchSize;
+
+    /** Objects younger than this are never swept: their DB row may not be committed yet */
+    @Value("${storage.cleanup.orphan-min-age-hours:24}")
+    private int orphanMinAgeHours;
+
+    @Value("${storage.cleanup.sweep-dry-run:false}")
+    private boolean sweepDryRun;
+
+    public MediaCleanupService(MinioClient minioClient, FileStorageService fileStorageService, JdbcTemplate jdbcTemplate) {
+        this.minioClient = minioClient;
+        this.fileStorageService = fileStorageService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Queues cleanup for a deleted apartment (call after commit)
+     */
+    public void apartmentDeleted(UUID apartmentId, List<String> imageKeys, List<String> videoKeys) {
+        worker.execute(() -> {
+            try {
+                imageKeys.forEach(key -> release(imagesBucket, key));
+                videoKeys.forEach(key -> release(videosBucket, key));
+                long removed = removePrefix(imagesBucket, apartmentId + "/")
+                        + removePrefix(videosBucket, apartmentId + "/");
+                log.info("Cleaned up media for apartment {}: {} references released, {} objects removed",
+                        apartmentId, imageKeys.size() + videoKeys.size(), removed);
+            } catch (Exception e) {
+                log.warn("Media cleanup for apartment {} failed (orphan sweep will retry): {}", apartmentId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Queues the release of references already detached from their owner (call after commit)
+     */
+    public void release(List<MediaObjectService.MediaRef> references) {
+        if (references.isEmpty()) return;
+        worker.execute(() -> references.forEach(ref -> release(ref.bucket(), ref.objectKey())));
+    }
+
+    private void release(String bucket, String key) {
+        if (!MediaObjectService.isContentAddressed(key)) return;
+        try {
+            fileStorageService.deleteFile(bucket, key);
+        } catch (Exception e) {
+            log.warn("Could not release media {}/{}: {}", bucket, key, e.getMessage());
+        }
+    }
+
+    /** Streams the listing under {@code prefix} and removes it in batches; returns the count removed */
+    public long removePrefix(String bucket, String prefix) throws Exception {
+        List<DeleteObject> batch = new ArrayList<>(batchSize);
+        long removed = 0;
+        for (Result<Item> result : minioClient.listObjects(ListObjectsArgs.builder()
+                .bucket(bucket).prefix(prefix).recursive(true).build())) {
+            batch.add(new DeleteObject(result.get().objectName()));
+            if (batch.size() >= batchSize) {
+                removed += removeBatch(bucket, batch);
+            }
+        }
+        return removed + removeBatch(bucket, batch);
+    }
+
+    /** Removes and clears the batch; returns how many were deleted */
+    private long removeBatch(String bucket, List<DeleteObject> batch) throws Exception {
+        if (batch.isEmpty()) return 0;
+        int failed = 0;
+        // Lazy: the request is only sent while iterating the results
+        for (Result<DeleteError> result : minioClient.removeObjects(
+                RemoveObjectsArgs.builder().bucket(bucket).objects(new ArrayList<>(batch)).build())) {
+            DeleteError error = result.get();
+            log.warn("Could not remove {}/{}: {}", bucket, error.objectName(), error.message());
+            failed++;
+        }
+        long removed = batch.size() - failed;
+        batch.clear();
+        return removed;
+    }
+
+    @Scheduled(cron = "${storage.cleanup.sweep-cron:0 30 3 * * SUN}")
+    public void scheduledSweep() {
+        sweep(sweepDryRun);
+    }
+
+    /**
+     * Queues an orphan sweep of the image and video buckets; returns its (live) report
+     */
+    public StorageDto.SweepReport sweep(boolean dryRun) {
+        StorageDto.SweepReport report = StorageDto.SweepReport.builder()
+                .status("running")
+                .dryRun(dryRun)
+                .startedAt(OffsetDateTime.now().toString())
+                .build();
+        lastSweep.set(report);
+        worker.execute(() -> {
+            try {
+                sweepBucket(imagesBucket, report, jdbcTemplate.queryForList(
+                        "SELECT id FROM apartments", String.class));
+                sweepBucket(videosBucket, report, jdbcTemplate.queryForList(
+                        "SELECT DISTINCT apartment_id FROM secure_videos", String.class));
+                report.setStatus("completed");
+                log.info("Orphan sweep{}: {} scanned, {} orphaned, {} removed ({} bytes)", dryRun ? " (dry run)" : "",
+                        report.getScanned(), report.getOrphaned(), report.getRemoved(), report.getBytesFreed());
+            } catch (Exception e) {
+                report.setStatus("failed");
+                report.setError(e.getMessage());
+                log.error("Orphan sweep failed", e);
+            } finally {
+                report.setFinishedAt(OffsetDateTime.now().toString());
+            }
+        });
+        return report;
+    }
+
+    public StorageDto.SweepReport lastSweep() {
+        return lastSweep.get();
+    }
+
+    /**
+     * An object is kept if it is content-addressed and its hash is in media_objects, or it sits
+     * under a live owner folder ({apartmentId}/...). Unknown layouts are left alone.
+     */
+    private void sweepBucket(String bucket, StorageDto.SweepReport report, List<String> liveOwners) throws Exception {
+        Set<UUID> owners = new HashSet<>(liveOwners.size() * 2);
+        liveOwners.forEach(id -> owners.add(UUID.fromString(id)));
+        Set<String> hashes = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT content_hash FROM media_objects WHERE bucket = ?", String.class, bucket));
+        ZonedDateTime cutoff = ZonedDateTime.now().minusHours(orphanMinAgeHours);
+
+        List<DeleteObject> batch = new ArrayList<>(batchSize);
+        for (Result<Item> result : minioClient.listObjects(ListObjectsArgs.builder()
+                .bucket(bucket).recursive(true).build())) {
+            Item item = result.get();
+            report.setScanned(report.getScanned() + 1);
+            if (item.lastModified() == null || item.lastModified().isAfter(cutoff)) continue;
+            if (!isOrphan(item.objectName(), owners, hashes)) continue;
+
+            report.setOrphaned(report.getOrphaned() + 1);
+            report.setBytesFreed(report.getBytesFreed() + item.size());
+            if (report.isDryRun()) continue;
+            batch.add(new DeleteObject(item.objectName()));
+            if (batch.size() >= batchSize) {
+                report.setRemoved(report.getRemoved() + removeBatch(bucket, batch));
+            }
+        }
+        report.setRemoved(report.getRemoved() + removeBatch(bucket, batch));
+    }
+
+    static boolean isOrphan(String objectKey, Set<UUID> owners, Set<String> hashes) {
+        if (objectKey.startsWith("tmp/")) {
+            // temporary objects only outlive a failed upload (or are chunks of pre-multipart sessions)
+            return true;
+        }
+        int slash = objectKey.lastIndexOf('/');
+        if (MediaObjectService.isContentAddressed(objectKey)) {
+            String name = objectKey.substring(slash + 1);
+            int variant = name.indexOf('_');
+            return !hashes.contains(variant < 0 ? name : name.substring(0, variant));
+        }
+        int firstSlash = objectKey.indexOf('/');
+        if (firstSlash <= 0) return false;
+        try {
+            return !owners.contains(UUID.fromString(objectKey.substring(0, firstSlash)));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
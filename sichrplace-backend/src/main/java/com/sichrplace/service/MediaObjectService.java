@@ -0,0 +1,200 @@
+package com.sichrplace.service;
+
+import io.minio.*;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reference-counted, content-addressed objects (media_objects). Uploads are stored under
+ * cas/<aa>/<sha256>; a second upload of the same bytes only increments ref_count and never
+ * writes to MinIO. Releasing the last reference removes the object (and derived objects
+ * such as image variants sharing its key prefix).
+ *
+ * Which owner holds which reference is recorded server-side in media_references by the upload
+ * path ({@link #attach}); owners release exactly those rows ({@link #detach}), never keys taken
+ * from client-supplied JSON.
+ *
+ * Removal is two-phase so no row lock is held across MinIO I/O: the last release marks the row
+ * (deleting_since) and commits, then the objects are removed and the row deleted. Uploaders only
+ * reuse unmarked rows; one that meets a marked row waits until it is gone and writes a fresh copy.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MediaObjectService {
+
+    public static final String CAS_PREFIX = "cas/";
+
+    private static final int REMOVAL_WAIT_ATTEMPTS = 50;
+    private static final long REMOVAL_WAIT_MS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MinioClient minioClient;
+
+    /** Writes the bytes under the given key; only called when the content is new */
+    @FunctionalInterface
+    public interface ObjectWriter {
+        void write(String objectKey) throws Exception;
+    }
+
+    /** A reference held by an owner */
+    public record MediaRef(String bucket, String objectKey) {}
+
+    public static String keyFor(String sha256) {
+        return CAS_PREFIX + sha256.substring(0, 2) + "/" + sha256;
+    }
+
+    public static String hex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    public static boolean isContentAddressed(String objectKey) {
+        return objectKey != null && objectKey.startsWith(CAS_PREFIX);
+    }
+
+    /**
+     * Adds a reference to the content, writing it through {@code writer} only if it is not stored yet.
+     *
+     * @return the content-addressed object key
+     */
+    public String reference(String bucket, String sha256, long size, String contentType, ObjectWriter writer) throws Exception {
+        String key = keyFor(sha256);
+        for (int attempt = 0; attempt < REMOVAL_WAIT_ATTEMPTS; attempt++) {
+            if (increment(bucket, sha256)) {
+                log.debug("Deduplicated upload {}/{}", bucket, key);
+                return key;
+            }
+            if (!exists(bucket, sha256)) {
+                writer.write(key);
+                try {
+                    jdbcTemplate.update("""
+                            INSERT INTO media_objects (bucket, content_hash, object_key, size_bytes, content_type, ref_count)
+                            VALUES (?, ?, ?, ?, ?, 1)
+                            """, bucket, sha256, key, size, contentType);
+                    return key;
+                } catch (DuplicateKeyException e) {
+                    // A concurrent upload of the same bytes registered first; our write was identical
+                    continue;
+                }
+            }
+            // Last reference was just released and the objects are being removed
+            Thread.sleep(REMOVAL_WAIT_MS);
+        }
+        throw new IllegalStateException("Media object " + bucket + "/" + key + " is still being removed");
+    }
+
+    private boolean increment(String bucket, String sha256) {
+        return jdbcTemplate.update("""
+                UPDATE media_objects SET ref_count = ref_count + 1, last_referenced_at = SYSDATETIMEOFFSET()
+                WHERE bucket = ? AND content_hash = ? AND deleting_since IS NULL
+                """, bucket, sha256) > 0;
+    }
+
+    private boolean exists(String bucket, String sha256) {
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM media_objects WHERE bucket = ? AND content_hash = ?",
+                Integer.class, bucket, sha256);
+        return rows != null && rows > 0;
+    }
+
+    /**
+     * Records that {@code ownerType/ownerId} holds a reference taken by an upload
+     * (joins the caller's transaction)
+     */
+    public void attach(String ownerType, UUID ownerId, String bucket, String objectKey) {
+        jdbcTemplate.update("INSERT INTO media_references (owner_type, owner_id, bucket, object_key) VALUES (?, ?, ?, ?)",
+                ownerType, ownerId.toString(), bucket, objectKey);
+    }
+
+    /**
+     * Removes and returns the references held by the owner (joins the caller's transaction);
+     * release them with {@link #release} after commit
+     */
+    public List<MediaRef> detach(String ownerType, UUID ownerId) {
+        return jdbcTemplate.query(
+                "DELETE FROM media_references OUTPUT deleted.bucket, deleted.object_key WHERE owner_type = ? AND owner_id = ?",
+                (rs, i) -> new MediaRef(rs.getString(1), rs.getString(2)),
+                ownerType, ownerId.toString());
+    }
+
+    /**
+     * Drops one reference; removes the object and its derived objects when it was the last one.
+     * Must not be called inside a transaction that is still open (the removal happens right away).
+     *
+     * @return true if the stored object was removed
+     */
+    public boolean release(String bucket, String objectKey) {
+        String sha256 = objectKey.substring(objectKey.lastIndexOf('/') + 1);
+        List<Integer> remaining = jdbcTemplate.queryForList("""
+                UPDATE media_objects SET ref_count = ref_count - 1,
+                    deleting_since = CASE WHEN ref_count = 1 THEN SYSDATETIMEOFFSET() ELSE deleting_since END
+                OUTPUT inserted.ref_count
+                WHERE bucket = ? AND content_hash = ? AND ref_count > 0 AND deleting_since IS NULL
+                """, Integer.class, bucket, sha256);
+        if (remaining.isEmpty()) {
+            log.warn("Release of unknown media object {}/{}", bucket, objectKey);
+            return false;
+        }
+        if (remaining.get(0) > 0) {
+            return false;
+        }
+        // Marked and committed: no uploader reuses the row from here on
+        remove(bucket, sha256, objectKey);
+        return true;
+    }
+
+    /** Finishes removals interrupted by a crash or a MinIO error */
+    @Scheduled(fixedDelayString = "${storage.cleanup.removal-retry-ms:600000}", initialDelayString = "${storage.cleanup.removal-retry-ms:600000}")
+    public void retryRemovals() {
+        List<MediaRef> stuck = jdbcTemplate.query("""
+                SELECT TOP 100 bucket, object_key FROM media_objects
+                WHERE deleting_since IS NOT NULL AND deleting_since < DATEADD(MINUTE, -5, SYSDATETIMEOFFSET())
+                """, (rs, i) -> new MediaRef(rs.getString(1), rs.getString(2)));
+        for (MediaRef ref : stuck) {
+            try {
+                remove(ref.bucket(), ref.objectKey().substring(ref.objectKey().lastIndexOf('/') + 1), ref.objectKey());
+            } catch (Exception e) {
+                log.warn("Retrying removal of {}/{} failed: {}", ref.bucket(), ref.objectKey(), e.getMessage());
+            }
+        }
+    }
+
+    private void remove(String bucket, String sha256, String objectKey) {
+        removePrefix(bucket, objectKey);
+        jdbcTemplate.update("DELETE FROM media_objects WHERE bucket = ? AND content_hash = ? AND deleting_since IS NOT NULL",
+                bucket, sha256);
+    }
+
+    /** Removes the object and anything sharing its key prefix (e.g. <key>_w320.jpg variants) */
+    private void removePrefix(String bucket, String objectKey) {
+        try {
+            List<DeleteObject> objects = new ArrayList<>();
+            for (Result<Item> item : minioClient.listObjects(ListObjectsArgs.builder()
+                    .bucket(bucket).prefix(objectKey).recursive(true).build())) {
+                objects.add(new DeleteObject(item.get().objectName()));
+            }
+            for (Result<DeleteError> error : minioClient.removeObjects(
+                    RemoveObjectsArgs.builder().bucket(bucket).objects(objects).build())) {
+                DeleteError e = error.get();
+                throw new IllegalStateException("Could not remove " + e.objectName() + ": " + e.message());
+            }
+            log.info("Removed media object {}/{} ({} objects)", bucket, objectKey, objects.size());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Media object removal failed: " + e.getMessage());
+        }
+    }
+}
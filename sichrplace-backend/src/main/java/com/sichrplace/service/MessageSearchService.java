@@ -0,0 +1,462 @@
+package com.sichrplace.service;
+
+import com.sichrplace.dto.ChatDto;
+import com.sichrplace.entity.Message;
+import com.sichrplace.repository.ConversationRepository;
+import com.sichrplace.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index over message content. Each conversation is split into segments of at
+ * most search.segment-messages messages, keyset ranges over (created_at, id). The newest segment is
+ * open and takes new messages; once it fills up it is sealed and a new one is started. Segments are
+ * built the first time one of the conversation's participants searches, kept current by
+ * MessageService.send (after commit), and unloaded when idle. Queries only ever touch the caller's
+ * own conversations.
+ *
+ * The loaded segments of all conversations share search.max-index-memory (estimated); past it the
+ * least recently used segments are unloaded and read again when searched. A large conversation is
+ * therefore searched one bounded segment at a time instead of being held whole. Small cold
+ * conversations are loaded several per query. Messages committed while a segment was being loaded
+ * are picked up by a catch-up read after it is published.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageSearchService {
+
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_QUERY_TERMS = 8;
+    private static final int SNIPPET_LENGTH = 120;
+    private static final int SNIPPET_LEAD = 40;
+    // SQL Server allows 2100 parameters per statement
+    private static final int MAX_IDS_PER_QUERY = 500;
+    private static final int LOAD_ATTEMPTS = 3;
+    // Covers transactions still open when the build read ran; re-adding a message is a no-op
+    private static final Duration CATCH_UP_GRACE = Duration.ofMinutes(1);
+    private static final Cursor START = new Cursor(OffsetDateTime.parse("1970-01-01T00:00Z"), new UUID(0, 0));
+    // Rough heap cost of the index structures, for the memory budget
+    private static final int DOC_BYTES = 120;
+    private static final int TERM_BYTES = 96;
+    private static final int POSTING_BYTES = 56;
+
+    private final MessageRepository messageRepository;
+    private final ConversationRepository conversationRepository;
+
+    private final Map<UUID, ConversationIndex> indexes = new ConcurrentHashMap<>();
+    private final AtomicLong indexedBytes = new AtomicLong();
+
+    @Value("${search.segment-idle-ms:1800000}")
+    private long segmentIdleMs;
+
+    @Value("${search.segment-messages:5000}")
+    private int segmentMessages;
+
+    @Value("${search.max-index-memory:256MB}")
+    private DataSize maxIndexMemory;
+
+    /**
+     * Ranked hits for the caller. All terms must match; the last term also matches as a
+     * prefix so results update while typing. Scored by tf-idf within each segment,
+     * newest first on ties.
+     */
+    public List<ChatDto.SearchHit> search(UUID userId, String query, int limit) {
+        List<String> terms = tokenize(query).stream().distinct().limit(MAX_QUERY_TERMS).toList();
+        if (terms.isEmpty()) return List.of();
+
+        long now = System.currentTimeMillis();
+        List<ConversationIndex> targets = conversationRepository.findIdsByParticipant(userId).stream()
+                .map(id -> indexes.compute(id, (k, index) -> {
+                    ConversationIndex used = index != null ? index : new ConversationIndex(k);
+                    used.lastUsed = now;
+                    return used;
+                }))
+                .toList();
+        loadCold(targets.stream().filter(ConversationIndex::isCold).toList());
+
+        // A message on a segment boundary may be indexed twice; keep one hit per message
+        Map<UUID, Hit> found = new HashMap<>();
+        for (ConversationIndex index : targets) {
+            for (int i = 0; ; i++) {
+                Segment segment = index.segment(i);
+                if (segment == null) break;
+                for (int attempt = 0; attempt < LOAD_ATTEMPTS && !segment.search(terms, found); attempt++) {
+                    load(index, segment);
+                }
+                trim();
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(found.values());
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed()
+                .thenComparing(Hit::createdAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        if (hits.size() > limit) {
+            hits = hits.subList(0, limit);
+        }
+
+        Map<UUID, String> contents = messageRepository.findAllById(hits.stream().map(Hit::messageId).toList())
+                .stream().collect(Collectors.toMap(Message::getId, Message::getContent));
+
+        return hits.stream()
+                .filter(h -> contents.containsKey(h.messageId()))
+                .map(h -> ChatDto.SearchHit.builder()
+                        .messageId(h.messageId().toString())
+                        .conversationId(h.conversationId().toString())
+                        .senderId(h.senderId().toString())
+                        .snippet(snippet(contents.get(h.messageId()), terms))
+                        .timestamp(h.createdAt() != null ? h.createdAt().toString() : null)
+                        .score(h.score())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Add a newly persisted message once its transaction commits. Segments that are not
+     * loaded are skipped; they pick the message up when loaded.
+     */
+    public void messageSaved(Message message) {
+        UUID conversationId = message.getConversation().getId();
+        UUID messageId = message.getId();
+        UUID senderId = message.getSender().getId();
+        String content = message.getContent();
+        OffsetDateTime createdAt = message.getCreatedAt();
+        AfterCommit.run(() -> {
+            ConversationIndex index = indexes.get(conversationId);
+            if (index != null) {
+                index.segmentFor(createdAt).add(messageId, senderId, content, createdAt);
+            }
+        });
+    }
+
+    /**
+     * Drop a conversation's segments (e.g. after messages were deleted outside send)
+     */
+    public void evict(UUID conversationId) {
+        ConversationIndex removed = indexes.remove(conversationId);
+        if (removed != null) {
+            removed.removed = true;
+            removed.segments().forEach(Segment::unload);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${search.sweep-ms:300000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - segmentIdleMs;
+        int unloaded = 0;
+        for (ConversationIndex index : indexes.values()) {
+            for (Segment segment : index.segments()) {
+                if (segment.loaded && segment.lastUsed < cutoff && segment.unload()) unloaded++;
+            }
+        }
+        // Conversations nobody searched for a while lose their segment boundaries too
+        for (UUID conversationId : indexes.keySet()) {
+            indexes.computeIfPresent(conversationId, (k, index) ->
+                    index.lastUsed < cutoff && index.segments().stream().noneMatch(s -> s.loaded) ? null : index);
+        }
+        if (unloaded > 0) {
+            log.debug("Unloaded {} idle search segments, {} KB indexed", unloaded, indexedBytes.get() / 1024);
+        }
+    }
+
+    /**
+     * Loads one segment. A sealed segment re-reads its range. The open segment reads up to
+     * segment-messages + 1 rows past its lower bound: if there are more, it is sealed at the
+     * last one it keeps and a new open segment follows it.
+     */
+    private void load(ConversationIndex index, Segment segment) {
+        segment.lock.writeLock().lock();
+        try {
+            if (segment.loaded || index.removed) return;
+            Cursor lower = segment.lower;
+            Cursor upper = segment.upper;
+            if (upper != null) {
+                segment.fill(messageRepository.findForIndexBetween(index.conversationId,
+                        lower.createdAt(), lower.id(), upper.createdAt(), upper.id()));
+                return;
+            }
+
+            OffsetDateTime highWater = OffsetDateTime.now().minus(CATCH_UP_GRACE);
+            List<ChatDto.IndexedMessage> rows = messageRepository.findForIndexAfter(index.conversationId,
+                    lower.createdAt(), lower.id(), PageRequest.of(0, segmentMessages + 1));
+            if (rows.size() > segmentMessages) {
+                rows = rows.subList(0, segmentMessages);
+                ChatDto.IndexedMessage last = rows.get(rows.size() - 1);
+                index.seal(segment, new Cursor(last.getCreatedAt(), last.getId()));
+                segment.fill(rows);
+                return;
+            }
+            segment.fill(rows);
+            // A message that committed after the read but before the segment was published
+            // found it unloaded in messageSaved; read everything since the mark again
+            for (ChatDto.IndexedMessage m : messageRepository.findForIndexSince(List.of(index.conversationId), highWater)) {
+                if (!m.getCreatedAt().isBefore(lower.createdAt())) segment.addLoaded(m);
+            }
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * First search of conversations that were never loaded: one count query, then conversations
+     * small enough for a single segment are read several per query. Larger ones are left to
+     * load() segment by segment.
+     */
+    private void loadCold(List<ConversationIndex> cold) {
+        for (int from = 0; from < cold.size(); from += MAX_IDS_PER_QUERY) {
+            List<ConversationIndex> chunk = cold.subList(from, Math.min(cold.size(), from + MAX_IDS_PER_QUERY));
+            Map<UUID, Long> counts = new HashMap<>();
+            for (Object[] row : messageRepository.countByConversations(chunk.stream().map(c -> c.conversationId).toList())) {
+                counts.put((UUID) row[0], ((Number) row[1]).longValue());
+            }
+            List<ConversationIndex> batch = new ArrayList<>();
+            long batchMessages = 0;
+            for (ConversationIndex index : chunk) {
+                long count = counts.getOrDefault(index.conversationId, 0L);
+                if (count > segmentMessages) continue;
+                if (batchMessages + count > segmentMessages) {
+                    loadBatch(batch);
+                    batch = new ArrayList<>();
+                    batchMessages = 0;
+                }
+                batch.add(index);
+                batchMessages += count;
+            }
+            loadBatch(batch);
+        }
+    }
+
+    private void loadBatch(List<ConversationIndex> batch) {
+        if (batch.isEmpty()) return;
+        List<UUID> ids = batch.stream().map(c -> c.conversationId).toList();
+        OffsetDateTime highWater = OffsetDateTime.now().minus(CATCH_UP_GRACE);
+        Map<UUID, List<ChatDto.IndexedMessage>> rows = messageRepository.findForIndexIn(ids).stream()
+                .collect(Collectors.groupingBy(ChatDto.IndexedMessage::getConversationId));
+        for (ConversationIndex index : batch) {
+            Segment segment = index.segment(0);
+            segment.lock.writeLock().lock();
+            try {
+                // Still the only, open segment: nothing loaded or sealed it meanwhile
+                if (!segment.loaded && !index.removed && segment.upper == null) {
+                    segment.fill(rows.getOrDefault(index.conversationId, List.of()));
+                }
+            } finally {
+                segment.lock.writeLock().unlock();
+            }
+        }
+        for (ChatDto.IndexedMessage m : messageRepository.findForIndexSince(ids, highWater)) {
+            ConversationIndex index = indexes.get(m.getConversationId());
+            if (index != null) index.segmentFor(m.getCreatedAt()).add(m.getId(), m.getSenderId(), m.getContent(), m.getCreatedAt());
+        }
+        trim();
+    }
+
+    /** Unloads the least recently searched segments until the index fits search.max-index-memory */
+    private void trim() {
+        long budget = maxIndexMemory.toBytes();
+        while (indexedBytes.get() > budget) {
+            Segment oldest = null;
+            for (ConversationIndex index : indexes.values()) {
+                for (Segment segment : index.segments()) {
+                    if (segment.loaded && (oldest == null || segment.lastUsed < oldest.lastUsed)) oldest = segment;
+                }
+            }
+            if (oldest == null || !oldest.unload()) return;
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) return List.of();
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+")) {
+            if (token.length() >= MIN_TERM_LENGTH) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static String snippet(String content, List<String> terms) {
+        if (content == null) return null;
+        String lower = content.toLowerCase(Locale.ROOT);
+        int at = -1;
+        for (String term : terms) {
+            int i = lower.indexOf(term);
+            if (i >= 0 && (at < 0 || i < at)) at = i;
+        }
+        int start = Math.max(0, Math.min(at < 0 ? 0 : at - SNIPPET_LEAD, content.length()));
+        int end = Math.min(content.length(), start + SNIPPET_LENGTH);
+        return (start > 0 ? "..." : "") + content.substring(start, end) + (end < content.length() ? "..." : "");
+    }
+
+    private record Doc(UUID senderId, OffsetDateTime createdAt, int length) {}
+
+    private record Hit(UUID messageId, UUID conversationId, UUID senderId, OffsetDateTime createdAt, double score) {}
+
+    /** Position in a conversation's (created_at, id) order */
+    private record Cursor(OffsetDateTime createdAt, UUID id) {}
+
+    /** A conversation's segments, oldest first; the last one is open */
+    private class ConversationIndex {
+
+        private final UUID conversationId;
+        private final List<Segment> segments = new ArrayList<>();
+        private volatile long lastUsed = System.currentTimeMillis();
+        // Set by evict(); a search still holding the index must not load into it
+        private volatile boolean removed;
+
+        ConversationIndex(UUID conversationId) {
+            this.conversationId = conversationId;
+            segments.add(new Segment(conversationId, START));
+        }
+
+        synchronized Segment segment(int i) {
+            return i < segments.size() ? segments.get(i) : null;
+        }
+
+        synchronized List<Segment> segments() {
+            return List.copyOf(segments);
+        }
+
+        synchronized boolean isCold() {
+            return segments.size() == 1 && !segments.get(0).loaded;
+        }
+
+        /** Closes the open segment at {@code upper} and starts the next one after it */
+        synchronized void seal(Segment open, Cursor upper) {
+            open.upper = upper;
+            segments.add(new Segment(conversationId, upper));
+        }
+
+        /** The segment a message belongs to; ties on a boundary may pick either neighbour */
+        synchronized Segment segmentFor(OffsetDateTime createdAt) {
+            for (int i = segments.size() - 1; i > 0; i--) {
+                if (createdAt == null || !createdAt.isBefore(segments.get(i).lower.createdAt())) return segments.get(i);
+            }
+            return segments.get(0);
+        }
+    }
+
+    private class Segment {
+
+        private final UUID conversationId;
+        private final Cursor lower; // exclusive
+        private volatile Cursor upper; // inclusive; null while open
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // term -> (messageId -> term frequency); sorted for prefix lookups
+        private NavigableMap<String, Map<UUID, Integer>> postings = new TreeMap<>();
+        private Map<UUID, Doc> docs = new HashMap<>();
+        private long bytes;
+        private volatile boolean loaded;
+        private volatile long lastUsed;
+
+        Segment(UUID conversationId, Cursor lower) {
+            this.conversationId = conversationId;
+            this.lower = lower;
+        }
+
+        /** Publishes the segment with the given rows (write lock held) */
+        void fill(List<ChatDto.IndexedMessage> rows) {
+            rows.forEach(this::addLoaded);
+            loaded = true;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        void add(UUID messageId, UUID senderId, String content, OffsetDateTime createdAt) {
+            lock.writeLock().lock();
+            try {
+                if (loaded) addLocked(messageId, senderId, content, createdAt);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void addLoaded(ChatDto.IndexedMessage m) {
+            addLocked(m.getId(), m.getSenderId(), m.getContent(), m.getCreatedAt());
+        }
+
+        private void addLocked(UUID messageId, UUID senderId, String content, OffsetDateTime createdAt) {
+            List<String> tokens = tokenize(content);
+            if (docs.putIfAbsent(messageId, new Doc(senderId, createdAt, tokens.size())) != null) return;
+            long added = DOC_BYTES;
+            for (String token : tokens) {
+                Map<UUID, Integer> list = postings.get(token);
+                if (list == null) {
+                    list = new HashMap<>();
+                    postings.put(token, list);
+                    added += TERM_BYTES + 2L * token.length();
+                }
+                if (list.merge(messageId, 1, Integer::sum) == 1) added += POSTING_BYTES;
+            }
+            bytes += added;
+            indexedBytes.addAndGet(added);
+        }
+
+        /** Drops the index data, keeping the range; false if it was not loaded */
+        boolean unload() {
+            lock.writeLock().lock();
+            try {
+                if (!loaded) return false;
+                loaded = false;
+                postings = new TreeMap<>();
+                docs = new HashMap<>();
+                indexedBytes.addAndGet(-bytes);
+                bytes = 0;
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /** Adds this segment's hits; false if it is not loaded */
+        boolean search(List<String> terms, Map<UUID, Hit> out) {
+            lock.readLock().lock();
+            try {
+                if (!loaded) return false;
+                lastUsed = System.currentTimeMillis();
+                if (docs.isEmpty()) return true;
+                Map<UUID, Double> scores = null;
+                for (int i = 0; i < terms.size(); i++) {
+                    String term = terms.get(i);
+                    Collection<Map<UUID, Integer>> matches = i == terms.size() - 1
+                            ? postings.subMap(term, true, term + Character.MAX_VALUE, false).values()
+                            : Optional.ofNullable(postings.get(term)).map(List::of).orElse(List.of());
+
+                    Map<UUID, Double> termScores = new HashMap<>();
+                    for (Map<UUID, Integer> list : matches) {
+                        double idf = Math.log(1 + (double) docs.size() / list.size());
+                        list.forEach((id, tf) -> termScores.merge(id, tf * idf, Double::sum));
+                    }
+                    if (scores == null) {
+                        scores = termScores;
+                    } else {
+                        scores.keySet().retainAll(termScores.keySet());
+                        scores.replaceAll((id, s) -> s + termScores.get(id));
+                    }
+                    if (scores.isEmpty()) return true;
+                }
+                scores.forEach((id, score) -> {
+                    Doc doc = docs.get(id);
+                    // Dampen long messages so a single mention in a wall of text ranks lower
+                    Hit hit = new Hit(id, conversationId, doc.senderId(), doc.createdAt(),
+                            score / Math.sqrt(Math.max(1, doc.length())));
+                    out.merge(id, hit, (a, b) -> a.score() >= b.score() ? a : b);
+                });
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
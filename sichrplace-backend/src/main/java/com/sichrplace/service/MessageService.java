@@ -0,0 +1,92 @@
+package com.sichrplace.service;
+
+import com.sichrplace.config.CompactFrameEncoder;
+import com.sichrplace.dto.ChatDto;
+import com.sichrplace.entity.Conversation;
+import com.sichrplace.entity.Message;
+import com.sichrplace.entity.User;
+import com.sichrplace.repository.ConversationRepository;
+import com.sichrplace.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageService {
+
+    private static final int PREVIEW_LENGTH = 200;
+
+    private final MessageRepository messageRepository;
+    private final ConversationRepository conversationRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TypingIndicatorService typingIndicatorService;
+    private final UnreadCounterService unreadCounterService;
+    private final PresenceService presenceService;
+    private final MessageSearchService messageSearchService;
+    private final CompactFrameEncoder compactFrameEncoder;
+
+    /**
+     * Persist a message, refresh the conversation's inbox columns and broadcast it
+     * (shared by the REST and STOMP send paths)
+     */
+    @Transactional
+    public Message send(Conversation conversation, User sender, String content) {
+        Message message = messageRepository.save(Message.builder()
+                .conversation(conversation)
+                .sender(sender)
+                .content(content)
+                .build());
+
+        // Update last message timestamp and inbox preview
+        conversation.setLastMessageAt(OffsetDateTime.now());
+        conversation.setLastMessagePreview(preview(content));
+        conversation.setLastMessageSenderId(sender.getId());
+        conversationRepository.save(conversation);
+
+        typingIndicatorService.stopped(conversation.getId(), sender.getId());
+        unreadCounterService.messageSent(conversation, sender.getId());
+        messageSearchService.messageSaved(message);
+
+        // Nobody subscribed when both participants are offline; they load history on open
+        if (!presenceService.isOnline(conversation.getParticipant1().getId())
+                && !presenceService.isOnline(conversation.getParticipant2().getId())) {
+            return message;
+        }
+
+        // Notify via WebSocket (compact variant attached for opted-in sessions)
+        ChatDto.ChatNotification notification = ChatDto.ChatNotification.builder()
+                .id(message.getId().toString())
+                .conversationId(conversation.getId().toString())
+                .senderId(sender.getId().toString())
+                .senderName(sender.getFirstName() + " " + sender.getLastName())
+                .content(content)
+                .timestamp(message.getCreatedAt().toString())
+                .build();
+        messagingTemplate.convertAndSend(
+                "/topic/conversation/" + conversation.getId(),
+                notification,
+                compactFrameEncoder.chat(notification, message.getCreatedAt())
+        );
+
+        return message;
+    }
+
+    @Transactional
+    public int markAsRead(UUID conversationId, UUID userId) {
+        int updated = messageRepository.markAsRead(conversationId, userId);
+        unreadCounterService.messagesRead(conversationId, userId, updated);
+        return updated;
+    }
+
+    private static String preview(String content) {
+        if (content == null || content.length() <= PREVIEW_LENGTH) return content;
+        return content.substring(0, PREVIEW_LENGTH);
+    }
+}
@@ -0,0 +1,269 @@
+package com.sichrplace.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the notifications table bounded.
+ * 1. Compaction: a user's read notifications of one type older than collapse-after-days
+ *    are folded into a single summary row (count kept in data.collapsed).
+ * 2. Retention: read notifications older than read-max-age-days are archived
+ *    (DELETE ... OUTPUT INTO notifications_archive) or deleted, and the archive itself
+ *    is pruned after archive-max-age-days.
+ * Every statement touches at most batch-size rows (well under SQL Server's ~5000 lock
+ * escalation threshold) in its own short transaction, with a pause in between, and a run
+ * stops after max-batches so it never monopolizes the table. A group whose collapse is cut
+ * short keeps an exact partial summary and is finished by a later run.
+ * The nightly run executes on its own thread, not the shared scheduler thread.
+ */
+@Service
+@Slf4j
+public class NotificationRetentionService {
+
+    private static final String COLLAPSE_GROUPS_SQL =
+            "SELECT TOP (?) user_id, type FROM notifications " +
+            "WHERE is_read = 1 AND created_at < ? " +
+            "GROUP BY user_id, type HAVING COUNT(*) >= ?";
+
+    // Summary row, dated at the newest source (so it sorts where they did); its count and start
+    // are filled in by the delete batches
+    private static final String COLLAPSE_INSERT_SQL =
+            "INSERT INTO notifications (id, user_id, type, title, message, data, action_url, priority, is_read, read_at, created_at) " +
+            "OUTPUT inserted.title " +
+            "SELECT ?, ?, ?, latest.title, latest.message, N'{\"collapsed\":0}', " +
+            "  latest.action_url, latest.priority, 1, latest.read_at, s.last_at " +
+            "FROM (SELECT MAX(n.created_at) AS last_at " +
+            "      FROM notifications n WHERE n.user_id = ? AND n.type = ? AND n.is_read = 1 AND n.created_at < ?) s " +
+            "CROSS APPLY (SELECT TOP 1 title, message, action_url, priority, read_at FROM notifications " +
+            "             WHERE user_id = ? AND type = ? AND is_read = 1 AND created_at < ? " +
+            "             ORDER BY CASE WHEN data LIKE N'{\"collapsed\":%' THEN 1 ELSE 0 END, created_at DESC) latest";
+
+    // Returns what each removed row stood for (earlier summaries included) and its date
+    private static final String COLLAPSE_DELETE_SQL =
+            "DELETE TOP (?) FROM notifications " +
+            "OUTPUT CASE WHEN ISJSON(deleted.data) = 1 " +
+            "            THEN COALESCE(TRY_CAST(JSON_VALUE(deleted.data, '$.collapsed') AS INT), 1) ELSE 1 END, " +
+            "       deleted.created_at " +
+            "WHERE user_id = ? AND type = ? AND is_read = 1 AND created_at < ? AND id <> ?";
+
+    private static final String COLLAPSE_UPDATE_SQL =
+            "UPDATE notifications SET title = ?, " +
+            "  data = N'{\"collapsed\":' + CAST(? AS NVARCHAR(20)) + N',\"from\":\"' + CONVERT(NVARCHAR(40), ?, 127) + N'\"}' " +
+            "WHERE id = ?";
+
+    private static final String ARCHIVE_SQL =
+            "DELETE TOP (?) FROM notifications " +
+            "OUTPUT deleted.id, deleted.user_id, deleted.type, deleted.title, deleted.message, deleted.data, " +
+            "       deleted.action_url, deleted.priority, deleted.read_at, deleted.created_at " +
+            "INTO notifications_archive (id, user_id, type, title, message, data, action_url, priority, read_at, created_at) " +
+            "WHERE is_read = 1 AND created_at < ?";
+
+    private static final String DELETE_SQL =
+            "DELETE TOP (?) FROM notifications WHERE is_read = 1 AND created_at < ?";
+
+    private static final String PRUNE_ARCHIVE_SQL =
+            "DELETE TOP (?) FROM notifications_archive WHERE archived_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantLock running = new ReentrantLock();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "notification-retention");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${notifications.retention.read-max-age-days:90}")
+    private int readMaxAgeDays;
+
+    @Value("${notifications.retention.archive:true}")
+    private boolean archive;
+
+    @Value("${notifications.retention.archive-max-age-days:730}")
+    private int archiveMaxAgeDays;
+
+    @Value("${notifications.retention.collapse-after-days:7}")
+    private int collapseAfterDays;
+
+    @Value("${notifications.retention.collapse-min-count:5}")
+    private int collapseMinCount;
+
+    @Value("${notifications.retention.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${notifications.retention.batch-pause-ms:100}")
+    private long batchPauseMs;
+
+    @Value("${notifications.retention.max-batches:2000}")
+    private int maxBatches;
+
+    public NotificationRetentionService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Scheduled(cron = "${notifications.retention.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        worker.execute(this::run);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * One compaction + retention pass; returns what it did (also used by the admin trigger)
+     */
+    public Map<String, Object> run() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (!running.tryLock()) {
+            result.put("skipped", "already running");
+            return result;
+        }
+        long started = System.currentTimeMillis();
+        try {
+            Budget budget = new Budget(maxBatches);
+            OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+
+            result.put("collapsedGroups", collapse(now.minusDays(collapseAfterDays), budget));
+            String sql = archive ? ARCHIVE_SQL : DELETE_SQL;
+            result.put(archive ? "archived" : "deleted", drain(sql, now.minusDays(readMaxAgeDays), budget));
+            if (archive) {
+                result.put("archivePruned", drain(PRUNE_ARCHIVE_SQL, now.minusDays(archiveMaxAgeDays), budget));
+            }
+            result.put("budgetExhausted", budget.exhausted());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("interrupted", true);
+        } finally {
+            result.put("tookMs", System.currentTimeMillis() - started);
+            running.unlock();
+        }
+        log.info("Notification retention: {}", result);
+        return result;
+    }
+
+    private int collapse(OffsetDateTime cutoff, Budget budget) throws InterruptedException {
+        int groups = 0;
+        while (budget.take()) {
+            List<Map<String, Object>> batch = jdbcTemplate.queryForList(COLLAPSE_GROUPS_SQL,
+                    Math.max(1, batchSize / 10), cutoff, collapseMinCount);
+            if (batch.isEmpty()) break;
+
+            for (Map<String, Object> group : batch) {
+                if (!collapseGroup(String.valueOf(group.get("user_id")), (String) group.get("type"), cutoff, budget)) {
+                    return groups;
+                }
+                groups++;
+            }
+            pause();
+        }
+        return groups;
+    }
+
+    /**
+     * Folds a user's old read rows of one type into a new summary. The summary is inserted with
+     * the first delete batch; every batch commits on its own together with the summary's count of
+     * what it removed, so the count is exact whenever the run stops.
+     *
+     * @return false if the budget ran out before the group was done
+     */
+    private boolean collapseGroup(String userId, String type, OffsetDateTime cutoff, Budget budget) throws InterruptedException {
+        Summary summary = new Summary(UUID.randomUUID().toString());
+        while (budget.take()) {
+            Integer removed = transactionTemplate.execute(status -> {
+                if (summary.title == null) {
+                    List<String> inserted = jdbcTemplate.queryForList(COLLAPSE_INSERT_SQL, String.class,
+                            summary.id, userId, type, userId, type, cutoff, userId, type, cutoff);
+                    if (inserted.isEmpty()) return 0; // already collapsed or marked unread meanwhile
+                    summary.title = inserted.get(0);
+                }
+                int[] rows = {0};
+                jdbcTemplate.query(COLLAPSE_DELETE_SQL, (ResultSet rs) -> {
+                    rows[0]++;
+                    summary.add(rs.getInt(1), rs.getObject(2, OffsetDateTime.class));
+                }, batchSize, userId, type, cutoff, summary.id);
+                if (rows[0] == 0) {
+                    status.setRollbackOnly(); // nothing left; never keep an empty summary
+                    return 0;
+                }
+                jdbcTemplate.update(COLLAPSE_UPDATE_SQL, summary.displayTitle(), summary.total, summary.from, summary.id);
+                return rows[0];
+            });
+            if (removed == null || removed < batchSize) return true;
+            pause();
+        }
+        return false;
+    }
+
+    private long drain(String sql, OffsetDateTime cutoff, Budget budget) throws InterruptedException {
+        long total = 0;
+        while (budget.take()) {
+            int affected = jdbcTemplate.update(sql, batchSize, cutoff);
+            total += affected;
+            if (affected < batchSize) break;
+            pause();
+        }
+        return total;
+    }
+
+    private void pause() throws InterruptedException {
+        if (batchPauseMs > 0) TimeUnit.MILLISECONDS.sleep(batchPauseMs);
+    }
+
+    /** Running totals of a summary being built; only the run's thread touches it */
+    private static class Summary {
+        final String id;
+        String title;
+        long total;
+        OffsetDateTime from;
+
+        Summary(String id) {
+            this.id = id;
+        }
+
+        void add(int count, OffsetDateTime createdAt) {
+            total += count;
+            if (from == null || createdAt.isBefore(from)) from = createdAt;
+        }
+
+        String displayTitle() {
+            String display = total + " x " + title;
+            return display.length() > 200 ? display.substring(0, 200) : display;
+        }
+    }
+
+    private static class Budget {
+        private int remaining;
+
+        Budget(int batches) {
+            this.remaining = batches;
+        }
+
+        boolean take() {
+            return remaining-- > 0;
+        }
+
+        boolean exhausted() {
+            return remaining < 0;
+        }
+    }
+}
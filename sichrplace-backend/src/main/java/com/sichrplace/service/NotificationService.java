@@ -1,62 +1,227 @@
 package com.sichrplace.service;
 
+import com.sichrplace.config.CompactFrameEncoder;
+import com.sichrplace.dto.NotificationDto;
 import com.sichrplace.entity.Notification;
-import com.sichrplace.entity.User;
 import com.sichrplace.repository.NotificationRepository;
 import com.sichrplace.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import java.util.Map;
-import java.util.UUID;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Notifications are written by the caller's transaction (one plain INSERT, plus the email
+ * outbox row for high/urgent ones), so a notification exists exactly when the work that
+ * caused it commits. Everything else happens off the caller's path: the event is queued
+ * only after that commit, and a flush on its own thread updates unread badges and pushes
+ * to online users, one frame per user and type per flush window.
+ * <p>
+ * The flush does no DB writes. Pushes are best effort: a push lost on restart is not
+ * repeated, clients read the saved rows when they reconnect.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class NotificationService {
 
+    private static final String INSERT_SQL =
+            "INSERT INTO notifications (id, user_id, type, title, message, data, action_url, priority, is_read, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, '{}', ?, ?, 0, ?)";
+
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final UnreadCounterService unreadCounterService;
+    private final PresenceService presenceService;
+    private final CompactFrameEncoder compactFrameEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EmailService emailService;
+    private final JdbcTemplate jdbcTemplate;
 
-    @Transactional
-    public Notification create(UUID userId, String type, String title, String message,
-                                String actionUrl, String priority) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    private final BlockingQueue<NotificationDto.Requested> queue;
+    private final ExecutorService pushWorkers;
+
+    // Own thread: the 250 ms flush must not queue behind (or delay) the other @Scheduled jobs
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "notification-flush");
+        t.setDaemon(true);
+        return t;
+    });
 
-        Notification notification = Notification.builder()
-                .user(user)
+    @Value("${notifications.batch-size:500}")
+    private int batchSize;
+
+    @Value("${notifications.flush-ms:250}")
+    private long flushMs;
+
+    public NotificationService(NotificationRepository notificationRepository,
+                               UserRepository userRepository,
+                               SimpMessagingTemplate messagingTemplate,
+                               UnreadCounterService unreadCounterService,
+                               PresenceService presenceService,
+                               CompactFrameEncoder compactFrameEncoder,
+                               ApplicationEventPublisher eventPublisher,
+                               EmailService emailService,
+                               JdbcTemplate jdbcTemplate,
+                               @Value("${notifications.queue-capacity:10000}") int queueCapacity,
+                               @Value("${notifications.push-threads:4}") int pushThreads) {
+        this.notificationRepository = notificationRepository;
+        this.userRepository = userRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.unreadCounterService = unreadCounterService;
+        this.presenceService = presenceService;
+        this.compactFrameEncoder = compactFrameEncoder;
+        this.eventPublisher = eventPublisher;
+        this.emailService = emailService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pushWorkers = Executors.newFixedThreadPool(pushThreads, r -> {
+            Thread t = new Thread(r, "notification-push-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    void start() {
+        flusher.scheduleWithFixedDelay(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a notification in the caller's transaction (if any); badge and push follow its commit
+     */
+    public void create(UUID userId, String type, String title, String message,
+                       String actionUrl, String priority) {
+        NotificationDto.Requested request = NotificationDto.Requested.builder()
+                .id(UUID.randomUUID())
+                .userId(userId)
                 .type(type)
                 .title(title)
                 .message(message)
                 .actionUrl(actionUrl)
                 .priority(priority != null ? priority : "normal")
+                .createdAt(OffsetDateTime.now(ZoneOffset.UTC))
                 .build();
+        jdbcTemplate.update(INSERT_SQL, request.getId().toString(), userId.toString(), request.getType(),
+                request.getTitle(), request.getMessage(), request.getActionUrl(), request.getPriority(),
+                request.getCreatedAt());
+        emailIfImportant(request);
+        eventPublisher.publishEvent(request);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRequested(NotificationDto.Requested request) {
+        if (!queue.offer(request)) {
+            // Queue full: the row is saved already, only the badge and push are done inline
+            log.warn("Notification queue full, delivering inline for user {}", request.getUserId());
+            deliver(List.of(request));
+        }
+    }
+
+    void flush() {
+        try {
+            List<NotificationDto.Requested> batch = new ArrayList<>();
+            while (queue.drainTo(batch, batchSize) > 0) {
+                deliver(batch);
+                batch.clear();
+            }
+        } catch (RuntimeException e) {
+            // an escaping exception would cancel the schedule
+            log.warn("Notification flush failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdownNow();
+        flush();
+        pushWorkers.shutdown();
+        pushWorkers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void deliver(List<NotificationDto.Requested> requests) {
+        for (NotificationDto.Requested request : requests) {
+            unreadCounterService.notificationCreated(request.getUserId());
+        }
+        int pushed = 0;
+        for (List<NotificationDto.Requested> group : group(requests)) {
+            NotificationDto.Requested latest = group.get(group.size() - 1);
+            // Offline users pick it up via polling / digest; no broker work for absent sessions
+            if (!presenceService.isOnline(latest.getUserId())) continue;
+            int more = group.size() - 1;
+            String message = more > 0 ? latest.getMessage() + " (+" + more + " more)" : latest.getMessage();
+            pushWorkers.execute(() -> push(latest.getUserId(), latest.getId(), latest.getType(), latest.getTitle(),
+                    message, latest.getPriority(), latest.getCreatedAt()));
+            pushed++;
+        }
+        log.debug("Delivered {} notifications in {} pushes", requests.size(), pushed);
+    }
+
+    /**
+     * High/urgent notifications also go to the email outbox (same transaction as the row)
+     */
+    private void emailIfImportant(NotificationDto.Requested request) {
+        if (!"high".equals(request.getPriority()) && !"urgent".equals(request.getPriority())) return;
+        userRepository.findById(request.getUserId()).ifPresent(user ->
+                emailService.sendNotification(user, request.getTitle(), request.getMessage(),
+                        request.getActionUrl(), "notification"));
+    }
+
+    /**
+     * Several notifications of one type for one user in a flush window share one push
+     */
+    private static Collection<List<NotificationDto.Requested>> group(List<NotificationDto.Requested> requests) {
+        Map<String, List<NotificationDto.Requested>> groups = new LinkedHashMap<>();
+        for (NotificationDto.Requested request : requests) {
+            groups.computeIfAbsent(request.getUserId() + ":" + request.getType(), k -> new ArrayList<>()).add(request);
+        }
+        return groups.values();
+    }
 
-        notification = notificationRepository.save(notification);
-
-        // Push via WebSocket
-        messagingTemplate.convertAndSendToUser(
-                userId.toString(),
-                "/queue/notifications",
-                Map.of(
-                        "id", notification.getId().toString(),
-                        "type", type,
-                        "title", title,
-                        "message", message,
-                        "priority", notification.getPriority(),
-                        "createdAt", notification.getCreatedAt().toString()
-                )
-        );
-
-        log.info("Notification sent to user {}: {}", userId, title);
-        return notification;
+    /**
+     * Push an already persisted notification to the user's queue (also used by bulk fan-out)
+     */
+    public void push(UUID userId, UUID id, String type, String title, String message,
+                     String priority, OffsetDateTime createdAt) {
+        try {
+            messagingTemplate.convertAndSendToUser(
+                    userId.toString(),
+                    "/queue/notifications",
+                    Map.of(
+                            "id", id.toString(),
+                            "type", type,
+                            "title", title,
+                            "message", message,
+                            "priority", priority,
+                            "createdAt", createdAt.toString()
+                    ),
+                    compactFrameEncoder.notification(id, type, title, message, priority, createdAt)
+            );
+            log.debug("Notification sent to user {}: {}", userId, title);
+        } catch (RuntimeException e) {
+            log.warn("Notification push to user {} failed: {}", userId, e.getMessage());
+        }
     }
 
     public Page<Notification> getUserNotifications(UUID userId, int page, int size) {
@@ -64,11 +229,13 @@ public class NotificationService {
     }
 
     public long getUnreadCount(UUID userId) {
-        return notificationRepository.countUnreadByUserId(userId);
+        return unreadCounterService.unreadNotifications(userId);
     }
 
     @Transactional
     public int markAllAsRead(UUID userId) {
-        return notificationRepository.markAllAsRead(userId);
+        int updated = notificationRepository.markAllAsRead(userId);
+        unreadCounterService.notificationsRead(userId);
+        return updated;
     }
 }
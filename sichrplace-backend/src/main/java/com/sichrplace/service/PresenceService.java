@@ -0,0 +1,95 @@
+package com.sichrplace.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Online/offline registry for STOMP sessions.
+ * Fed by authenticated CONNECT frames and heartbeats (StompAuthChannelInterceptor) and by
+ * session disconnects. Lookups and heartbeats never lock; only the per-user session
+ * count changes go through an atomic compute.
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    @Value("${presence.retention-ms:86400000}")
+    private long retentionMs;
+
+    private final Map<String, UUID> sessions = new ConcurrentHashMap<>();
+    private final Map<UUID, Presence> users = new ConcurrentHashMap<>();
+
+    public void connected(String sessionId, UUID userId) {
+        if (sessionId == null || sessions.putIfAbsent(sessionId, userId) != null) return;
+        long now = System.currentTimeMillis();
+        users.compute(userId, (id, presence) -> {
+            Presence p = presence != null ? presence : new Presence();
+            p.sessions.incrementAndGet();
+            p.lastSeen = now;
+            return p;
+        });
+    }
+
+    /**
+     * Any inbound frame (including heartbeats) from an authenticated session
+     */
+    public void touch(String sessionId) {
+        if (sessionId == null) return;
+        UUID userId = sessions.get(sessionId);
+        if (userId == null) return;
+        Presence presence = users.get(userId);
+        if (presence != null) {
+            presence.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        UUID userId = sessions.remove(event.getSessionId());
+        if (userId == null) return;
+        long now = System.currentTimeMillis();
+        users.computeIfPresent(userId, (id, p) -> {
+            p.sessions.updateAndGet(n -> Math.max(0, n - 1));
+            p.lastSeen = now;
+            return p;
+        });
+    }
+
+    public boolean isOnline(UUID userId) {
+        Presence presence = users.get(userId);
+        return presence != null && presence.sessions.get() > 0;
+    }
+
+    /**
+     * @return last activity of the user, or null if not seen within the retention window
+     */
+    public Instant lastSeen(UUID userId) {
+        Presence presence = users.get(userId);
+        return presence != null ? Instant.ofEpochMilli(presence.lastSeen) : null;
+    }
+
+    /**
+     * Forget users that have been offline longer than the retention window
+     */
+    @Scheduled(fixedDelayString = "${presence.sweep-ms:3600000}")
+    public void sweep() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        users.keySet().forEach(userId -> users.computeIfPresent(userId,
+                (id, p) -> p.sessions.get() == 0 && p.lastSeen < cutoff ? null : p));
+    }
+
+    private static final class Presence {
+        final AtomicInteger sessions = new AtomicInteger();
+        volatile long lastSeen;
+    }
+}
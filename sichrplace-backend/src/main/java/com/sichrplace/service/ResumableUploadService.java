@@ -0,0 +1,447 @@
+package com.sichrplace.service;
+
+import com.sichrplace.dto.StorageDto;
+import com.sichrplace.entity.SecureVideo;
+import com.sichrplace.entity.UploadPart;
+import com.sichrplace.entity.UploadSession;
+import com.sichrplace.entity.User;
+import com.sichrplace.repository.ApartmentRepository;
+import com.sichrplace.repository.SecureVideoRepository;
+import com.sichrplace.repository.UploadPartRepository;
+import com.sichrplace.repository.UploadSessionRepository;
+import com.sichrplace.repository.UserRepository;
+import com.google.common.collect.ImmutableMultimap;
+import io.minio.MinioAsyncClient;
+import io.minio.RemoveObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.Part;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resumable chunked uploads for SecureVideo: init, PUT chunk at offset, complete.
+ * A session is one S3 multipart upload of the final object: every chunk is uploaded as a part and
+ * recorded in upload_parts, so a client that lost its connection asks for the status and re-sends
+ * only the missing chunks. Complete assembles the parts server-side, so the app never holds more
+ * than the chunk in flight. Sessions expire after storage.resumable.ttl-hours without progress;
+ * abort and expiry abort the multipart upload, which discards the stored parts. A session left in
+ * completing (crash, or a failed save after the object was assembled) is recovered once it is older
+ * than storage.resumable.completing-timeout-minutes: by the expiry check, or by the client retrying
+ * complete.
+ */
+@Service
+@Slf4j
+public class ResumableUploadService {
+
+    private static final Set<String> VIDEO_TYPES = Set.of("video/mp4", "video/webm", "video/quicktime");
+    private static final long MIN_CHUNK = 5L * 1024 * 1024; // S3 minimum for all but the last part
+    private static final int MAX_PARTS = 10_000;
+
+    private final MinioAsyncClient minioAsyncClient;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadPartRepository uploadPartRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final SecureVideoRepository secureVideoRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${minio.bucket.videos:secure-videos}")
+    private String videoBucket;
+
+    @Value("${storage.resumable.chunk-size:16MB}")
+    private DataSize defaultChunk;
+
+    @Value("${storage.resumable.max-chunk-size:64MB}")
+    private DataSize maxChunk;
+
+    @Value("${storage.resumable.max-size:10GB}")
+    private DataSize maxSize;
+
+    @Value("${storage.resumable.ttl-hours:24}")
+    private int ttlHours;
+
+    @Value("${storage.resumable.completing-timeout-minutes:30}")
+    private int completingTimeoutMinutes;
+
+    public ResumableUploadService(MinioAsyncClient minioAsyncClient,
+                                  UploadSessionRepository uploadSessionRepository,
+                                  UploadPartRepository uploadPartRepository,
+                                  ApartmentRepository apartmentRepository,
+                                  SecureVideoRepository secureVideoRepository,
+                                  UserRepository userRepository,
+                                  TransactionTemplate transactionTemplate) {
+        this.minioAsyncClient = minioAsyncClient;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadPartRepository = uploadPartRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.secureVideoRepository = secureVideoRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public StorageDto.ResumableUpload init(User user, StorageDto.InitUploadRequest request) {
+        apartmentRepository.findById(request.getApartmentId())
+                .filter(a -> a.getOwner().getId().equals(user.getId()))
+                .orElseThrow(() -> new StreamingUploadService.UploadRejectedException(404, "Apartment not found"));
+        String contentType = request.getContentType().split(";")[0].trim().toLowerCase();
+        if (!VIDEO_TYPES.contains(contentType)) {
+            throw new StreamingUploadService.UploadRejectedException(415, "Unsupported file type");
+        }
+        if (request.getSize() > maxSize.toBytes()) {
+            throw new StreamingUploadService.UploadRejectedException(413, "File exceeds " + maxSize.toGigabytes() + "GB limit");
+        }
+
+        long chunk = request.getChunkSize() != null ? request.getChunkSize() : defaultChunk.toBytes();
+        chunk = Math.max(chunk, (request.getSize() + MAX_PARTS - 1) / MAX_PARTS);
+        chunk = Math.max(MIN_CHUNK, Math.min(maxChunk.toBytes(), chunk));
+
+        String objectKey = request.getApartmentId() + "/" + UUID.randomUUID();
+        String multipartId;
+        try {
+            multipartId = minioAsyncClient.createMultipartUploadAsync(videoBucket, null, objectKey,
+                    ImmutableMultimap.of("Content-Type", contentType), null).get().result().uploadId();
+        } catch (Exception e) {
+            log.error("Starting upload to {}/{} failed", videoBucket, objectKey, e);
+            throw new RuntimeException("Starting upload failed: " + e.getMessage());
+        }
+
+        UploadSession session;
+        try {
+            session = uploadSessionRepository.save(UploadSession.builder()
+                    .userId(user.getId())
+                    .apartmentId(request.getApartmentId())
+                    .bucket(videoBucket)
+                    .objectKey(objectKey)
+                    .multipartUploadId(multipartId)
+                    .fileName(request.getFileName())
+                    .title(request.getTitle())
+                    .contentType(contentType)
+                    .totalSize(request.getSize())
+                    .chunkSize((int) chunk)
+                    .expiresAt(OffsetDateTime.now().plusHours(ttlHours))
+                    .build());
+        } catch (RuntimeException e) {
+            abortMultipart(videoBucket, objectKey, multipartId);
+            throw e;
+        }
+        log.info("Resumable upload {} started: {} bytes in {} chunks", session.getId(), session.getTotalSize(), session.partCount());
+        return status(session, List.of());
+    }
+
+    /**
+     * Stores one chunk. {@code offset} must be chunk-aligned and the body exactly the chunk
+     * length (shorter only for the final chunk). Re-sending a chunk replaces its part.
+     */
+    public StorageDto.ResumableUpload putChunk(UUID uploadId, User user, long offset, long contentLength, InputStream body) {
+        UploadSession session = activeSession(uploadId, user);
+        if (offset < 0 || offset >= session.getTotalSize() || offset % session.getChunkSize() != 0) {
+            throw new StreamingUploadService.UploadRejectedException(400, "Offset must be a chunk boundary within the file");
+        }
+        long expected = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+        if (contentLength != expected) {
+            throw new StreamingUploadService.UploadRejectedException(contentLength < 0 ? 411 : 400,
+                    "Chunk at offset " + offset + " must be " + expected + " bytes");
+        }
+        int partNumber = (int) (offset / session.getChunkSize()) + 1;
+
+        String etag;
+        try {
+            InputStream in = body;
+            if (partNumber == 1) {
+                // Type check on the first bytes before anything is stored
+                BufferedInputStream buffered = new BufferedInputStream(body, 64);
+                buffered.mark(16);
+                byte[] head = buffered.readNBytes(16);
+                buffered.reset();
+                StreamingUploadService.validateType(head, head.length, session.getContentType(), VIDEO_TYPES);
+                in = buffered;
+            }
+            etag = minioAsyncClient.uploadPartAsync(session.getBucket(), null, session.getObjectKey(), in, expected,
+                    session.getMultipartUploadId(), partNumber, null, null).get().etag();
+        } catch (StreamingUploadService.UploadRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Chunk {} of upload {} failed: {}", partNumber, uploadId, e.getMessage());
+            throw new RuntimeException("Chunk upload failed: " + e.getMessage());
+        }
+
+        // Conditional on the session still uploading: a complete, abort or expiry that landed while
+        // the chunk was in flight wins, and this chunk is dropped instead of reviving the session
+        // (its part went with the aborted upload, or fails the running complete's ETag check)
+        OffsetDateTime expiresAt = OffsetDateTime.now().plusHours(ttlHours);
+        if (uploadSessionRepository.extend(uploadId, expiresAt) == 0) {
+            throw conflict(uploadId);
+        }
+        recordPart(uploadId, partNumber, expected, etag);
+        session.setExpiresAt(expiresAt);
+        return status(session, uploadPartRepository.findByUploadIdOrderByPartNumber(uploadId));
+    }
+
+    private void recordPart(UUID uploadId, int partNumber, long size, String etag) {
+        try {
+            UploadPart part = uploadPartRepository.findByUploadIdAndPartNumber(uploadId, partNumber)
+                    .orElseGet(() -> UploadPart.builder().uploadId(uploadId).partNumber(partNumber).build());
+            part.setSizeBytes(size);
+            part.setEtag(etag);
+            uploadPartRepository.save(part);
+        } catch (DataIntegrityViolationException e) {
+            // The same chunk arrived twice concurrently; the other request recorded it
+            log.debug("Chunk {} of upload {} recorded concurrently", partNumber, uploadId);
+        }
+    }
+
+    public StorageDto.ResumableUpload status(UUID uploadId, User user) {
+        UploadSession session = ownedSession(uploadId, user);
+        return status(session, uploadPartRepository.findByUploadIdOrderByPartNumber(uploadId));
+    }
+
+    /**
+     * Completes the multipart upload into the final object and creates the SecureVideo.
+     * Idempotent once completed; a retry on a session stuck in completing recovers it first.
+     */
+    public StorageDto.ResumableUpload complete(UUID uploadId, User user) {
+        UploadSession session = ownedSession(uploadId, user);
+        if (isStuckCompleting(session)) {
+            recoverCompleting(session);
+            session = ownedSession(uploadId, user);
+        }
+        if ("completed".equals(session.getStatus())) {
+            return status(session, List.of());
+        }
+        if (!"uploading".equals(session.getStatus())) {
+            throw new StreamingUploadService.UploadRejectedException(409, "Upload is " + session.getStatus());
+        }
+        List<UploadPart> parts = uploadPartRepository.findByUploadIdOrderByPartNumber(uploadId);
+        long received = parts.stream().mapToLong(UploadPart::getSizeBytes).sum();
+        if (parts.size() != session.partCount() || received != session.getTotalSize()) {
+            throw new StreamingUploadService.UploadRejectedException(409, "Upload incomplete: "
+                    + parts.size() + " of " + session.partCount() + " chunks received");
+        }
+
+        // Only one caller moves the session out of uploading; a concurrent complete sees
+        // "completing" (409) or "completed" (the stored result) instead of creating a second video
+        if (uploadSessionRepository.transition(uploadId, "uploading", "completing") == 0) {
+            UploadSession current = ownedSession(uploadId, user);
+            if ("completed".equals(current.getStatus())) {
+                return status(current, List.of());
+            }
+            throw conflict(uploadId);
+        }
+        session.setStatus("completing");
+        try {
+            Part[] uploaded = parts.stream()
+                    .map(p -> new Part(p.getPartNumber(), p.getEtag()))
+                    .toArray(Part[]::new);
+            minioAsyncClient.completeMultipartUploadAsync(session.getBucket(), null, session.getObjectKey(),
+                    session.getMultipartUploadId(), uploaded, null, null).get();
+        } catch (Exception e) {
+            uploadSessionRepository.transition(uploadId, "completing", "uploading");
+            log.error("Completing upload {} failed", uploadId, e);
+            throw new RuntimeException("Completing upload failed: " + e.getMessage());
+        }
+
+        SecureVideo video = createVideo(session, user);
+        session.setStatus("completed");
+        session.setResultId(video.getId());
+        log.info("Resumable upload {} completed as video {}", uploadId, video.getId());
+        return status(session, List.of());
+    }
+
+    /** Saves the SecureVideo for an assembled object and marks the session completed, atomically */
+    private SecureVideo createVideo(UploadSession session, User uploader) {
+        return transactionTemplate.execute(status -> {
+            SecureVideo saved = secureVideoRepository.save(SecureVideo.builder()
+                    .apartment(apartmentRepository.getReferenceById(session.getApartmentId()))
+                    .uploadedBy(uploader)
+                    .filePath(session.getObjectKey())
+                    .title(session.getTitle())
+                    .build());
+            if (uploadSessionRepository.markCompleted(session.getId(), saved.getId()) == 0) {
+                throw conflict(session.getId()); // rolls the video back
+            }
+            return saved;
+        });
+    }
+
+    public void abort(UUID uploadId, User user) {
+        UploadSession session = ownedSession(uploadId, user);
+        if ("completed".equals(session.getStatus())) {
+            throw new StreamingUploadService.UploadRejectedException(409, "Upload already completed");
+        }
+        if (!finish(session, "aborted")) {
+            String current = ownedSession(uploadId, user).getStatus();
+            if (!"aborted".equals(current) && !"expired".equals(current)) {
+                throw conflict(uploadId);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${storage.resumable.expiry-check-ms:900000}")
+    public void expireAbandoned() {
+        List<UploadSession> expired;
+        do {
+            expired = uploadSessionRepository.findTop100ByStatusAndExpiresAtBefore("uploading", OffsetDateTime.now());
+            expired.forEach(session -> finish(session, "expired"));
+            if (!expired.isEmpty()) {
+                log.info("Expired {} abandoned uploads", expired.size());
+            }
+        } while (expired.size() == 100);
+
+        // One batch per round: a session that cannot be recovered yet is retried next time
+        uploadSessionRepository.findTop100ByStatusAndUpdatedAtBefore("completing", completingCutoff())
+                .forEach(this::recoverCompleting);
+    }
+
+    private OffsetDateTime completingCutoff() {
+        return OffsetDateTime.now().minusMinutes(completingTimeoutMinutes);
+    }
+
+    private boolean isStuckCompleting(UploadSession session) {
+        return "completing".equals(session.getStatus())
+                && session.getUpdatedAt() != null && session.getUpdatedAt().isBefore(completingCutoff());
+    }
+
+    /**
+     * Finishes a session left in completing. If the object exists, the multipart upload was
+     * completed and only the SecureVideo is missing, so it is created now (or the object removed
+     * when the apartment is gone). If not, complete never reached MinIO: the parts are still in the
+     * multipart upload and the session goes back to uploading so the client can complete again.
+     * Every step is conditional on the session still being in completing.
+     */
+    private void recoverCompleting(UploadSession session) {
+        UUID uploadId = session.getId();
+        boolean assembled;
+        try {
+            minioAsyncClient.statObject(StatObjectArgs.builder()
+                    .bucket(session.getBucket()).object(session.getObjectKey()).build()).get();
+            assembled = true;
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof ErrorResponseException missing) || !"NoSuchKey".equals(missing.errorResponse().code())) {
+                log.warn("Could not check upload {} stuck in completing: {}", uploadId, e.getMessage());
+                return;
+            }
+            assembled = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            log.warn("Could not check upload {} stuck in completing: {}", uploadId, e.getMessage());
+            return;
+        }
+
+        if (!assembled) {
+            if (uploadSessionRepository.transition(uploadId, "completing", "uploading") > 0) {
+                log.info("Upload {} was interrupted before assembly; back to uploading", uploadId);
+            }
+            return;
+        }
+        if (!apartmentRepository.existsById(session.getApartmentId())) {
+            if (uploadSessionRepository.transition(uploadId, "completing", "aborted") > 0) {
+                removeObject(session.getBucket(), session.getObjectKey());
+                log.info("Upload {} was assembled for a deleted apartment; object removed", uploadId);
+            }
+            return;
+        }
+        try {
+            SecureVideo video = createVideo(session, userRepository.getReferenceById(session.getUserId()));
+            log.info("Recovered upload {} stuck in completing as video {}", uploadId, video.getId());
+        } catch (RuntimeException e) {
+            log.warn("Could not recover upload {} stuck in completing: {}", uploadId, e.getMessage());
+        }
+    }
+
+    /** Ends a session that is still uploading; false when it already moved on */
+    private boolean finish(UploadSession session, String status) {
+        Boolean finished = transactionTemplate.execute(tx -> {
+            if (uploadSessionRepository.transition(session.getId(), "uploading", status) == 0) return false;
+            uploadPartRepository.deleteAll(uploadPartRepository.findByUploadIdOrderByPartNumber(session.getId()));
+            return true;
+        });
+        if (!Boolean.TRUE.equals(finished)) return false;
+        abortMultipart(session.getBucket(), session.getObjectKey(), session.getMultipartUploadId());
+        return true;
+    }
+
+    private void abortMultipart(String bucket, String objectKey, String multipartId) {
+        if (multipartId == null) return;
+        try {
+            minioAsyncClient.abortMultipartUploadAsync(bucket, null, objectKey, multipartId, null, null).get();
+        } catch (Exception e) {
+            // MinIO drops stale incomplete uploads on its own (24h by default)
+            log.warn("Could not abort multipart upload {} of {}/{}: {}", multipartId, bucket, objectKey, e.getMessage());
+        }
+    }
+
+    private void removeObject(String bucket, String objectKey) {
+        try {
+            minioAsyncClient.removeObject(RemoveObjectArgs.builder().bucket(bucket).object(objectKey).build()).get();
+        } catch (Exception e) {
+            // The weekly orphan sweep removes it otherwise
+            log.warn("Could not remove {}/{}: {}", bucket, objectKey, e.getMessage());
+        }
+    }
+
+    private String currentStatus(UUID uploadId) {
+        return uploadSessionRepository.findById(uploadId).map(UploadSession::getStatus).orElse("gone");
+    }
+
+    private StreamingUploadService.UploadRejectedException conflict(UUID uploadId) {
+        return new StreamingUploadService.UploadRejectedException(409, "Upload is " + currentStatus(uploadId));
+    }
+
+    private UploadSession ownedSession(UUID uploadId, User user) {
+        return uploadSessionRepository.findById(uploadId)
+                .filter(s -> s.getUserId().equals(user.getId()))
+                .orElseThrow(() -> new StreamingUploadService.UploadRejectedException(404, "Upload not found"));
+    }
+
+    private UploadSession activeSession(UUID uploadId, User user) {
+        UploadSession session = ownedSession(uploadId, user);
+        if (!"uploading".equals(session.getStatus())) {
+            throw new StreamingUploadService.UploadRejectedException(409, "Upload is " + session.getStatus());
+        }
+        if (session.getExpiresAt().isBefore(OffsetDateTime.now())) {
+            throw new StreamingUploadService.UploadRejectedException(410, "Upload expired");
+        }
+        return session;
+    }
+
+    private StorageDto.ResumableUpload status(UploadSession session, List<UploadPart> parts) {
+        boolean done = "completed".equals(session.getStatus());
+        Set<Integer> received = new HashSet<>();
+        long receivedBytes = 0;
+        for (UploadPart part : parts) {
+            received.add(part.getPartNumber());
+            receivedBytes += part.getSizeBytes();
+        }
+        List<Integer> missing = new ArrayList<>();
+        if (!done) {
+            for (int n = 1; n <= session.partCount() && missing.size() < 50; n++) {
+                if (!received.contains(n)) missing.add(n);
+            }
+        }
+        return StorageDto.ResumableUpload.builder()
+                .uploadId(session.getId())
+                .status(session.getStatus())
+                .totalSize(session.getTotalSize())
+                .chunkSize(session.getChunkSize())
+                .receivedBytes(done ? session.getTotalSize() : receivedBytes)
+                .nextOffset(missing.isEmpty() ? null : (long) (missing.get(0) - 1) * session.getChunkSize())
+                .missingParts(missing)
+                .expiresAt(session.getExpiresAt())
+                .videoId(session.getResultId())
+                .build();
+    }
+}
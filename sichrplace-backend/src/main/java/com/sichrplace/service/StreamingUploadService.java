@@ -0,0 +1,275 @@
+package com.sichrplace.service;
+
+import com.sichrplace.dto.StorageDto;
+import io.minio.*;
+import io.minio.messages.Part;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams an upload from the request body into MinIO without spooling it to disk.
+ * The body is cut into fixed-size parts of one S3 multipart upload; each part is sent
+ * while the next one is being read (bounded parallelism, so memory stays at
+ * part-size x (parallel-parts + 1)). Size and type are checked while reading: the type from the
+ * first bytes (magic numbers), the size as the bytes arrive, so a bad upload is rejected
+ * without reading the rest, and the multipart upload is aborted so no part outlives it.
+ * The body is SHA-256 hashed as it is read and stored content-addressed through
+ * {@link MediaObjectService}: a duplicate aborts the multipart upload instead of completing it;
+ * new content is completed under a temporary key and copied server-side to its content address.
+ */
+@Service
+@Slf4j
+public class StreamingUploadService {
+
+    private static final long MIN_PART = 5L * 1024 * 1024; // S3 minimum for all but the last part
+    private static final String TEMP_PREFIX = "tmp/uploads/";
+
+    private final MinioClient minioClient;
+    private final MinioAsyncClient minioAsyncClient;
+    private final MediaObjectService mediaObjectService;
+    private final long partSize;
+
+    @Value("${storage.upload.parallel-parts:4}")
+    private int parallelParts;
+
+    @Value("${minio.endpoint}")
+    private String minioEndpoint;
+
+    public StreamingUploadService(MinioClient minioClient,
+                                  MinioAsyncClient minioAsyncClient,
+                                  MediaObjectService mediaObjectService,
+                                  @Value("${storage.upload.part-size:8MB}") DataSize partSize) {
+        this.minioClient = minioClient;
+        this.minioAsyncClient = minioAsyncClient;
+        this.mediaObjectService = mediaObjectService;
+        this.partSize = Math.max(MIN_PART, partSize.toBytes());
+    }
+
+    /**
+     * @param declaredType Content-Type sent by the client; must agree with the sniffed type
+     * @param allowedTypes accepted content types (e.g. image/jpeg, video/mp4)
+     */
+    public StorageDto.UploadResult upload(InputStream body, String bucket,
+                                          String declaredType, Set<String> allowedTypes, long maxBytes) {
+        String tempKey = TEMP_PREFIX + UUID.randomUUID();
+        MessageDigest sha256 = newSha256();
+        List<CompletableFuture<Part>> pending = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(Math.max(1, parallelParts));
+        AtomicReference<Throwable> partFailure = new AtomicReference<>();
+        AtomicBoolean assembled = new AtomicBoolean();
+        String multipartId = null;
+        long total = 0;
+        String contentType = null;
+
+        try {
+            while (true) {
+                if (partFailure.get() != null) {
+                    throw new ExecutionException(partFailure.get());
+                }
+                byte[] buffer = new byte[(int) partSize];
+                int length = readFully(body, buffer);
+                if (length == 0 && total > 0) break;
+
+                total += length;
+                sha256.update(buffer, 0, length);
+                if (total > maxBytes) {
+                    throw new UploadRejectedException(413, "File exceeds " + DataSize.ofBytes(maxBytes).toMegabytes() + "MB limit");
+                }
+                if (contentType == null) {
+                    contentType = validateType(buffer, length, declaredType, allowedTypes);
+                }
+
+                boolean last = length < buffer.length;
+                if (last && pending.isEmpty()) {
+                    // Fits in a single part: write the final object directly (unless already stored)
+                    String type = contentType;
+                    String key = mediaObjectService.reference(bucket, MediaObjectService.hex(sha256.digest()), total, type,
+                            k -> put(bucket, k, buffer, length, type));
+                    return result(bucket, key, total, contentType, 1);
+                }
+
+                if (multipartId == null) {
+                    multipartId = minioAsyncClient.createMultipartUploadAsync(bucket, null, tempKey, null, null)
+                            .get().result().uploadId();
+                }
+                inFlight.acquire();
+                int partNumber = pending.size() + 1;
+                pending.add(minioAsyncClient.uploadPartAsync(bucket, null, tempKey, buffer, length, multipartId, partNumber, null, null)
+                        .whenComplete((response, e) -> {
+                            if (e != null) partFailure.compareAndSet(null, e);
+                            inFlight.release();
+                        })
+                        .thenApply(response -> new Part(partNumber, response.etag())));
+                if (last) break;
+            }
+
+            Part[] parts = new Part[pending.size()];
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = pending.get(i).get();
+            }
+            String type = contentType;
+            String uploadId = multipartId;
+            String objectKey = mediaObjectService.reference(bucket, MediaObjectService.hex(sha256.digest()), total, type, k -> {
+                if (!assembled.get()) {
+                    minioAsyncClient.completeMultipartUploadAsync(bucket, null, tempKey, uploadId, parts, null, null).get();
+                    assembled.set(true);
+                }
+                minioClient.composeObject(ComposeObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(k)
+                        .sources(List.of(ComposeSource.builder().bucket(bucket).object(tempKey).build()))
+                        .headers(Map.of("Content-Type", type))
+                        .build());
+            });
+
+            log.info("Streamed upload {}/{} ({} bytes, {} parts)", bucket, objectKey, total, parts.length);
+            return result(bucket, objectKey, total, contentType, parts.length);
+        } catch (UploadRejectedException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Upload interrupted");
+        } catch (ExecutionException e) {
+            log.error("Part upload failed for {}", bucket, e.getCause());
+            throw new RuntimeException("File upload failed: " + e.getCause().getMessage());
+        } catch (Exception e) {
+            log.error("Streaming upload failed for {}", bucket, e);
+            throw new RuntimeException("File upload failed: " + e.getMessage());
+        } finally {
+            if (assembled.get()) {
+                removeTemp(bucket, tempKey);
+            } else if (multipartId != null) {
+                abort(bucket, tempKey, multipartId, pending);
+            }
+        }
+    }
+
+    /**
+     * Discards the multipart upload (rejected, failed or duplicate content). Parts still in
+     * flight are awaited first: one finishing after the abort would otherwise be kept.
+     */
+    private void abort(String bucket, String key, String multipartId, List<CompletableFuture<Part>> pending) {
+        for (CompletableFuture<Part> part : pending) {
+            try {
+                part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // already failed; nothing stored for this part
+            }
+        }
+        try {
+            minioAsyncClient.abortMultipartUploadAsync(bucket, null, key, multipartId, null, null).get();
+        } catch (Exception e) {
+            // MinIO drops stale incomplete uploads on its own (24h by default)
+            log.warn("Could not abort multipart upload {} of {}/{}: {}", multipartId, bucket, key, e.getMessage());
+        }
+    }
+
+    private void put(String bucket, String key, byte[] data, int length, String contentType) throws Exception {
+        minioClient.putObject(PutObjectArgs.builder()
+                .bucket(bucket)
+                .object(key)
+                .stream(new ByteArrayInputStream(data, 0, length), length, -1)
+                .contentType(contentType)
+                .build());
+    }
+
+    private void removeTemp(String bucket, String key) {
+        try {
+            minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucket).object(key).build());
+        } catch (Exception e) {
+            // left to the orphan sweep (tmp/uploads/)
+            log.warn("Could not remove temp object {}/{}: {}", bucket, key, e.getMessage());
+        }
+    }
+
+    private StorageDto.UploadResult result(String bucket, String key, long size, String contentType, int parts) {
+        return StorageDto.UploadResult.builder()
+                .bucket(bucket)
+                .objectKey(key)
+                .contentHash(key.substring(key.lastIndexOf('/') + 1))
+                .url(minioEndpoint + "/" + bucket + "/" + key)
+                .size(size)
+                .contentType(contentType)
+                .parts(parts)
+                .build();
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int n = in.read(buffer, offset, buffer.length - offset);
+            if (n < 0) break;
+            offset += n;
+        }
+        return offset;
+    }
+
+    /**
+     * Sniffs the type from magic bytes; rejects empty, unknown, disallowed or mislabelled content
+     */
+    static String validateType(byte[] head, int length, String declaredType, Set<String> allowedTypes) {
+        if (length == 0) {
+            throw new UploadRejectedException(400, "Empty upload");
+        }
+        String sniffed = sniff(head, length);
+        if (sniffed == null || !allowedTypes.contains(sniffed)) {
+            throw new UploadRejectedException(415, "Unsupported file type");
+        }
+        if (declaredType != null && !declaredType.isBlank()
+                && !declaredType.split(";")[0].trim().equalsIgnoreCase(sniffed)) {
+            throw new UploadRejectedException(415, "Content-Type does not match file contents");
+        }
+        return sniffed;
+    }
+
+    static String sniff(byte[] b, int n) {
+        if (n >= 3 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8 && (b[2] & 0xFF) == 0xFF) return "image/jpeg";
+        if (n >= 8 && (b[0] & 0xFF) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G') return "image/png";
+        if (n >= 6 && b[0] == 'G' && b[1] == 'I' && b[2] == 'F' && b[3] == '8') return "image/gif";
+        if (n >= 12 && b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F'
+                && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P') return "image/webp";
+        if (n >= 12 && b[4] == 'f' && b[5] == 't' && b[6] == 'y' && b[7] == 'p') {
+            return b[8] == 'q' && b[9] == 't' ? "video/quicktime" : "video/mp4";
+        }
+        if (n >= 4 && (b[0] & 0xFF) == 0x1A && (b[1] & 0xFF) == 0x45 && (b[2] & 0xFF) == 0xDF && (b[3] & 0xFF) == 0xA3) {
+            return "video/webm";
+        }
+        return null;
+    }
+
+    @Getter
+    public static class UploadRejectedException extends RuntimeException {
+        private final int status;
+
+        public UploadRejectedException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
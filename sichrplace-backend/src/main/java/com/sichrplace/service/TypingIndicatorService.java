@@ -0,0 +1,103 @@
+package com.sichrplace.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server-side typing state per (conversation, user).
+ * Keystroke events only refresh the expiry; the topic sees a start frame, a periodic
+ * refresh while typing continues, and a stop frame on explicit stop, send or expiry.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TypingIndicatorService {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${chat.typing.expiry-ms:6000}")
+    private long expiryMs;
+
+    @Value("${chat.typing.refresh-ms:4000}")
+    private long refreshMs;
+
+    private final Map<Key, TypingState> active = new ConcurrentHashMap<>();
+
+    /**
+     * Record a typing event; broadcasts only on the idle -> typing transition or when
+     * the last announcement is about to expire on clients
+     */
+    public void typing(UUID conversationId, UUID userId) {
+        long now = System.currentTimeMillis();
+        Key key = new Key(conversationId, userId);
+
+        TypingState state = active.get(key);
+        if (state == null) {
+            TypingState created = new TypingState(conversationId, userId, expiryMs);
+            state = active.putIfAbsent(key, created);
+            if (state == null) {
+                state = created;
+                state.expiresAt = now + expiryMs;
+                state.announcedAt = now;
+                messagingTemplate.convertAndSend(state.destination, state.startFrame);
+                return;
+            }
+        }
+
+        state.expiresAt = now + expiryMs;
+        if (now - state.announcedAt >= refreshMs) {
+            state.announcedAt = now;
+            messagingTemplate.convertAndSend(state.destination, state.startFrame);
+        }
+    }
+
+    /**
+     * Explicit stop (client stop event or message sent); no-op if the user was not typing
+     */
+    public void stopped(UUID conversationId, UUID userId) {
+        TypingState state = active.remove(new Key(conversationId, userId));
+        if (state != null) {
+            messagingTemplate.convertAndSend(state.destination, state.stopFrame);
+        }
+    }
+
+    /**
+     * Emit stop transitions for users whose typing events have lapsed
+     */
+    @Scheduled(fixedDelayString = "${chat.typing.sweep-ms:1000}")
+    public void expireIdle() {
+        long now = System.currentTimeMillis();
+        active.forEach((key, state) -> {
+            if (state.expiresAt < now && active.remove(key, state)) {
+                messagingTemplate.convertAndSend(state.destination, state.stopFrame);
+            }
+        });
+    }
+
+    private record Key(UUID conversationId, UUID userId) {}
+
+    /**
+     * Frames are built once per typing session and reused for every broadcast
+     */
+    private static final class TypingState {
+        final String destination;
+        final Map<String, Object> startFrame;
+        final Map<String, Object> stopFrame;
+        volatile long expiresAt;
+        volatile long announcedAt;
+
+        TypingState(UUID conversationId, UUID userId, long expiryMs) {
+            this.destination = "/topic/conversation/" + conversationId + "/typing";
+            this.startFrame = Map.of("userId", userId.toString(), "isTyping", true, "expiresInMs", expiryMs);
+            this.stopFrame = Map.of("userId", userId.toString(), "isTyping", false);
+        }
+    }
+}
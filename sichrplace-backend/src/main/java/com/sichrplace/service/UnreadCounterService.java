@@ -0,0 +1,125 @@
+package com.sichrplace.service;
+
+import com.sichrplace.entity.Conversation;
+import com.sichrplace.repository.MessageRepository;
+import com.sichrplace.repository.NotificationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory unread badges for notifications and messages.
+ * Counters are loaded from the DB on a cold miss and then kept current by the write
+ * paths (send, create, mark read). Updates are applied after commit so rolled-back
+ * writes never move a badge. All counters are dropped periodically and rebuilt lazily,
+ * which bounds memory and any drift from writes made outside this service.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UnreadCounterService {
+
+    private final MessageRepository messageRepository;
+    private final NotificationRepository notificationRepository;
+
+    private final Map<UUID, AtomicLong> notifications = new ConcurrentHashMap<>();
+    private final Map<UUID, AtomicLong> messagesByUser = new ConcurrentHashMap<>();
+    private final Map<ConversationKey, AtomicLong> messagesByConversation = new ConcurrentHashMap<>();
+
+    // ===== READS =====
+
+    public long unreadNotifications(UUID userId) {
+        return load(notifications, userId, () -> notificationRepository.countUnreadByUserId(userId));
+    }
+
+    public long unreadMessages(UUID userId) {
+        return load(messagesByUser, userId, () -> messageRepository.countUnreadForUser(userId));
+    }
+
+    public long unreadMessages(UUID conversationId, UUID userId) {
+        return load(messagesByConversation, new ConversationKey(conversationId, userId),
+                () -> messageRepository.countUnread(conversationId, userId));
+    }
+
+    // ===== WRITES =====
+
+    public void notificationCreated(UUID userId) {
+        AfterCommit.run(() -> incrementIfLoaded(notifications.get(userId), 1));
+    }
+
+    public void notificationsRead(UUID userId) {
+        AfterCommit.run(() -> reset(notifications, userId));
+    }
+
+    public void messageSent(Conversation conversation, UUID senderId) {
+        UUID recipientId = conversation.getParticipant1().getId().equals(senderId)
+                ? conversation.getParticipant2().getId()
+                : conversation.getParticipant1().getId();
+        UUID conversationId = conversation.getId();
+
+        AfterCommit.run(() -> {
+            incrementIfLoaded(messagesByUser.get(recipientId), 1);
+            incrementIfLoaded(messagesByConversation.get(new ConversationKey(conversationId, recipientId)), 1);
+        });
+    }
+
+    public void messagesRead(UUID conversationId, UUID userId, int markedRead) {
+        AfterCommit.run(() -> {
+            reset(messagesByConversation, new ConversationKey(conversationId, userId));
+            AtomicLong total = messagesByUser.get(userId);
+            if (total != null) {
+                total.updateAndGet(v -> Math.max(0, v - markedRead));
+            }
+        });
+    }
+
+    /**
+     * Drop every counter; the next read per key reloads from the DB
+     */
+    @Scheduled(fixedDelayString = "${unread.resync-ms:1800000}", initialDelayString = "${unread.resync-ms:1800000}")
+    public void resync() {
+        int size = notifications.size() + messagesByUser.size() + messagesByConversation.size();
+        notifications.clear();
+        messagesByUser.clear();
+        messagesByConversation.clear();
+        log.debug("Unread counters reset ({} entries)", size);
+    }
+
+    /**
+     * Cold miss: query outside any map lock (computeIfAbsent would hold a bin monitor across
+     * the JDBC call and pin the carrier in virtual-thread mode); first loader wins
+     */
+    private static <K> long load(Map<K, AtomicLong> counters, K key, LongSupplier loader) {
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            AtomicLong loaded = new AtomicLong(loader.getAsLong());
+            counter = counters.putIfAbsent(key, loaded);
+            if (counter == null) counter = loaded;
+        }
+        return counter.get();
+    }
+
+    private static void incrementIfLoaded(AtomicLong counter, int delta) {
+        // Absent counters are simply loaded with the new value on the next read
+        if (counter != null) {
+            counter.addAndGet(delta);
+        }
+    }
+
+    private static <K> void reset(Map<K, AtomicLong> counters, K key) {
+        counters.compute(key, (k, counter) -> {
+            if (counter == null) return new AtomicLong();
+            counter.set(0);
+            return counter;
+        });
+    }
+
+    private record ConversationKey(UUID conversationId, UUID userId) {}
+}
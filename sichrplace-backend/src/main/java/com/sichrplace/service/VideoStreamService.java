@@ -0,0 +1,209 @@
+package com.sichrplace.service;
+
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves video objects with HTTP Range / If-Range support. Each byte range becomes a ranged
+ * MinIO GET that is copied to the response through a pooled fixed-size buffer, so heap use per
+ * viewer is one buffer regardless of file size. Open-ended ranges ("bytes=N-", what browsers
+ * send while playing) are capped at videos.stream.max-range so an abandoned request never
+ * pins a connection for the rest of the file.
+ */
+@Service
+@Slf4j
+public class VideoStreamService {
+
+    private final MinioClient minioClient;
+    private final BlockingQueue<byte[]> buffers;
+    private final int bufferSize;
+
+    @Value("${minio.bucket.videos:secure-videos}")
+    private String bucket;
+
+    @Value("${videos.stream.max-range:8MB}")
+    private DataSize maxRange;
+
+    @Value("${videos.stream.stat-ttl-seconds:30}")
+    private long statTtlSeconds;
+
+    private record ObjectInfo(long size, String etag, long lastModified, String contentType, long loadedAt) {}
+
+    /** Short-lived stat cache: a playing video issues many range requests against the same object */
+    private final Map<String, ObjectInfo> stats = new ConcurrentHashMap<>();
+
+    record ByteRange(long start, long end) {
+        static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+    }
+
+    public VideoStreamService(MinioClient minioClient,
+                              @Value("${videos.stream.buffer-size:64KB}") DataSize bufferSize,
+                              @Value("${videos.stream.buffer-pool:256}") int poolSize) {
+        this.minioClient = minioClient;
+        this.bufferSize = (int) bufferSize.toBytes();
+        this.buffers = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    public void stream(String objectKey, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ObjectInfo info = stat(objectKey);
+        String etag = "\"" + info.etag() + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, info.lastModified());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=3600");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline");
+
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long size = info.size();
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, info.lastModified())) {
+            ByteRange byteRange = parseRange(range, size, maxRange.toBytes());
+            if (byteRange == ByteRange.UNSATISFIABLE) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            if (byteRange != null) {
+                start = byteRange.start();
+                end = byteRange.end();
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType(info.contentType());
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length <= 0) {
+            return;
+        }
+
+        try (InputStream in = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(bucket)
+                .object(objectKey)
+                .offset(start)
+                .length(length)
+                .matchETag(info.etag())
+                .build())) {
+            copy(in, response.getOutputStream());
+        } catch (ErrorResponseException e) {
+            // Object replaced since the stat was cached (412) or removed: forget it, let the client retry
+            stats.remove(objectKey);
+            throw new RuntimeException("Video changed or unavailable: " + e.errorResponse().code());
+        } catch (IOException e) {
+            log.debug("Video stream {} ended early: {}", objectKey, e.getMessage());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Video stream failed: " + e.getMessage());
+        }
+    }
+
+    private void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new byte[bufferSize]; // pool exhausted: allocate, returned to the pool if there is room
+        }
+        try {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            out.flush();
+        } finally {
+            buffers.offer(buffer);
+        }
+    }
+
+    private ObjectInfo stat(String objectKey) {
+        long now = System.currentTimeMillis();
+        ObjectInfo cached = stats.get(objectKey);
+        if (cached != null && now - cached.loadedAt() < statTtlSeconds * 1000) {
+            return cached;
+        }
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(objectKey).build());
+            String contentType = stat.contentType() != null ? stat.contentType() : "video/mp4";
+            ObjectInfo info = new ObjectInfo(stat.size(), stat.etag(),
+                    stat.lastModified().toInstant().toEpochMilli(), contentType, now);
+            if (stats.size() > 10_000) {
+                stats.values().removeIf(i -> now - i.loadedAt() >= statTtlSeconds * 1000);
+            }
+            stats.put(objectKey, info);
+            return info;
+        } catch (Exception e) {
+            throw new RuntimeException("Video not found");
+        }
+    }
+
+    /** A Range is honored only if If-Range is absent or still matches the current ETag / date */
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+            return lastModified / 1000 <= date / 1000;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses a single "bytes=" range (the first one if several are given).
+     * Returns null for a malformed header (served as a full 200), UNSATISFIABLE for 416.
+     */
+    static ByteRange parseRange(String header, long size, long maxOpenEnded) {
+        if (!header.startsWith("bytes=")) return null;
+        String spec = header.substring(6).split(",")[0].trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the final N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) return ByteRange.UNSATISFIABLE;
+                return new ByteRange(Math.max(0, size - suffix), size - 1);
+            }
+            long start = Long.parseLong(first);
+            if (start >= size) return ByteRange.UNSATISFIABLE;
+            long end = last.isEmpty()
+                    ? Math.min(size - 1, start + maxOpenEnded - 1)
+                    : Math.min(size - 1, Long.parseLong(last));
+            return end < start ? null : new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
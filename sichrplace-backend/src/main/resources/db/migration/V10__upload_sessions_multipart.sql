@@ -0,0 +1,21 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V10
+-- Resumable uploads write the parts of one S3 multipart upload
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- S3 UploadId, created with the session; complete/abort/expiry finish it
+IF COL_LENGTH('upload_sessions', 'multipart_upload_id') IS NULL
+ALTER TABLE upload_sessions ADD multipart_upload_id NVARCHAR(200) NULL;
+GO
+
+-- Sessions started before this change kept chunks as temporary objects and cannot be completed;
+-- clients restart them. The orphan sweep removes the old chunks.
+UPDATE upload_sessions SET status = 'expired', updated_at = SYSDATETIMEOFFSET()
+WHERE status = 'uploading' AND multipart_upload_id IS NULL;
+GO
+
+PRINT '✅ V10: upload_sessions.multipart_upload_id ready';
+GO
@@ -0,0 +1,30 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V11
+-- Journal of notification requests not yet persisted
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- Written by NotificationService.create in the caller's transaction and deleted in the
+-- transaction that saves the notification, so a request queued in memory when the process
+-- stops is replayed instead of lost
+IF NOT EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'notification_requests') AND type = 'U')
+CREATE TABLE notification_requests (
+    id UNIQUEIDENTIFIER PRIMARY KEY,
+    user_id UNIQUEIDENTIFIER NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    type NVARCHAR(50) NOT NULL,
+    title NVARCHAR(200) NOT NULL,
+    message NVARCHAR(MAX) NOT NULL,
+    action_url NVARCHAR(MAX),
+    priority NVARCHAR(20) NOT NULL,
+    created_at DATETIMEOFFSET NOT NULL DEFAULT SYSDATETIMEOFFSET()
+);
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_notification_requests_created_at')
+CREATE NONCLUSTERED INDEX IX_notification_requests_created_at ON notification_requests(created_at);
+GO
+
+PRINT '✅ V11: notification_requests ready';
+GO
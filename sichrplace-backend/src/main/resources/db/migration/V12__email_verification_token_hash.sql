@@ -0,0 +1,42 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V12
+-- Hashed email verification tokens with an expiry
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- Like password reset tokens, only the SHA-256 of the emailed token is stored
+IF COL_LENGTH('users', 'email_verification_token_hash') IS NULL
+ALTER TABLE users ADD email_verification_token_hash NVARCHAR(64) NULL;
+GO
+
+IF COL_LENGTH('users', 'email_verification_expires_at') IS NULL
+ALTER TABLE users ADD email_verification_expires_at DATETIMEOFFSET NULL;
+GO
+
+-- Links already sent keep working for the default 48 hours (tokens are ASCII, so the
+-- VARCHAR bytes equal the UTF-8 bytes AuthService hashes)
+IF COL_LENGTH('users', 'email_verification_token') IS NOT NULL
+EXEC('UPDATE users SET email_verification_token_hash = LOWER(CONVERT(NVARCHAR(64), ' +
+     'HASHBYTES(''SHA2_256'', CAST(email_verification_token AS VARCHAR(255))), 2)), ' +
+     'email_verification_expires_at = DATEADD(HOUR, 48, SYSDATETIMEOFFSET()) ' +
+     'WHERE email_verification_token IS NOT NULL');
+GO
+
+IF EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_users_email_verification_token')
+DROP INDEX IX_users_email_verification_token ON users;
+GO
+
+IF COL_LENGTH('users', 'email_verification_token') IS NOT NULL
+ALTER TABLE users DROP COLUMN email_verification_token;
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_users_email_verification_token_hash')
+CREATE NONCLUSTERED INDEX IX_users_email_verification_token_hash
+    ON users(email_verification_token_hash)
+    WHERE email_verification_token_hash IS NOT NULL;
+GO
+
+PRINT '✅ V12: email verification tokens hashed';
+GO
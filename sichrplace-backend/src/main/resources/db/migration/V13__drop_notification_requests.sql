@@ -0,0 +1,24 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V13
+-- Notifications are inserted by the caller's transaction; the request journal goes away
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- Requests journaled by the previous version but not yet flushed become notifications
+IF EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'notification_requests') AND type = 'U')
+EXEC('
+INSERT INTO notifications (id, user_id, type, title, message, data, action_url, priority, is_read, created_at)
+SELECT r.id, r.user_id, r.type, r.title, r.message, ''{}'', r.action_url, r.priority, 0, r.created_at
+FROM notification_requests r
+WHERE NOT EXISTS (SELECT 1 FROM notifications n WHERE n.id = r.id)
+');
+GO
+
+IF EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'notification_requests') AND type = 'U')
+DROP TABLE notification_requests;
+GO
+
+PRINT '✅ V13: notification_requests migrated and dropped';
+GO
@@ -0,0 +1,45 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V14
+-- Durable bulk notification jobs (broadcasts, price drops)
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- last_id is the keyset cursor: it moves in the same transaction as the chunk of notifications
+-- it covers, so a job interrupted by a restart resumes after its last committed chunk
+IF NOT EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'bulk_notification_jobs') AND type = 'U')
+CREATE TABLE bulk_notification_jobs (
+    id UNIQUEIDENTIFIER PRIMARY KEY,
+    name NVARCHAR(300) NOT NULL,
+    recipients_kind NVARCHAR(30) NOT NULL,      -- broadcast | favorited_by
+    target_id UNIQUEIDENTIFIER,                 -- apartment for favorited_by
+    type NVARCHAR(50) NOT NULL,
+    title NVARCHAR(200) NOT NULL,
+    message NVARCHAR(MAX) NOT NULL,
+    action_url NVARCHAR(MAX),
+    priority NVARCHAR(20) NOT NULL,
+    status NVARCHAR(20) NOT NULL DEFAULT 'queued',  -- queued, running, completed, failed
+    last_id UNIQUEIDENTIFIER NOT NULL DEFAULT '00000000-0000-0000-0000-000000000000',
+    recipients BIGINT NOT NULL DEFAULT 0,
+    inserted BIGINT NOT NULL DEFAULT 0,
+    pushed BIGINT NOT NULL DEFAULT 0,
+    attempts INT NOT NULL DEFAULT 0,
+    error NVARCHAR(1000),
+    created_at DATETIMEOFFSET NOT NULL DEFAULT SYSDATETIMEOFFSET(),
+    started_at DATETIMEOFFSET,
+    finished_at DATETIMEOFFSET,
+    updated_at DATETIMEOFFSET NOT NULL DEFAULT SYSDATETIMEOFFSET()
+);
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_bulk_notification_jobs_status_updated')
+CREATE NONCLUSTERED INDEX IX_bulk_notification_jobs_status_updated ON bulk_notification_jobs(status, updated_at);
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_bulk_notification_jobs_created_at')
+CREATE NONCLUSTERED INDEX IX_bulk_notification_jobs_created_at ON bulk_notification_jobs(created_at);
+GO
+
+PRINT '✅ V14: bulk_notification_jobs ready';
+GO
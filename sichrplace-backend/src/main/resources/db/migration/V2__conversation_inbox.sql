@@ -0,0 +1,45 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V2
+-- Conversation inbox read model (last message preview)
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- =====================================================
+-- 1. LAST MESSAGE COLUMNS ON CONVERSATIONS
+-- =====================================================
+IF COL_LENGTH('conversations', 'last_message_preview') IS NULL
+    ALTER TABLE conversations ADD last_message_preview NVARCHAR(200);
+GO
+
+IF COL_LENGTH('conversations', 'last_message_sender_id') IS NULL
+    ALTER TABLE conversations ADD last_message_sender_id UNIQUEIDENTIFIER;
+GO
+
+-- Backfill from existing messages
+UPDATE c SET
+    last_message_preview = LEFT(lm.content, 200),
+    last_message_sender_id = lm.sender_id
+FROM conversations c
+CROSS APPLY (
+    SELECT TOP 1 m.content, m.sender_id
+    FROM messages m
+    WHERE m.conversation_id = c.id
+    ORDER BY m.created_at DESC
+) lm
+WHERE c.last_message_preview IS NULL;
+GO
+
+-- =====================================================
+-- 2. INDEXES
+-- =====================================================
+
+-- Unread badge per conversation: only unread rows are indexed
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_messages_conversation_unread')
+CREATE NONCLUSTERED INDEX IX_messages_conversation_unread
+    ON messages(conversation_id, sender_id) WHERE is_read = 0;
+GO
+
+PRINT '✅ V2: conversation inbox read model ready';
+GO
@@ -0,0 +1,23 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V3
+-- Keyset pagination index for message history
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- (conversation_id, created_at, id) serves both "newest first" and
+-- before/after cursor seeks without sorting or counting
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_messages_conversation_created')
+CREATE NONCLUSTERED INDEX IX_messages_conversation_created
+    ON messages(conversation_id, created_at DESC, id DESC)
+    INCLUDE (sender_id, is_read);
+GO
+
+-- Superseded by the composite index above (same leading column)
+IF EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_messages_conversation' AND object_id = OBJECT_ID(N'messages'))
+DROP INDEX IX_messages_conversation ON messages;
+GO
+
+PRINT '✅ V3: message keyset index ready';
+GO
@@ -0,0 +1,42 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V4
+-- Checkpoints for the scheduled digest engine
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- One row per (digest window, partition). last_user_id is the keyset checkpoint,
+-- committed together with each batch of digests, so a restart resumes after it.
+IF NOT EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'digest_runs') AND type = 'U')
+CREATE TABLE digest_runs (
+    id UNIQUEIDENTIFIER PRIMARY KEY DEFAULT NEWID(),
+    run_key NVARCHAR(50) NOT NULL,                -- e.g. daily:2026-10-18
+    frequency NVARCHAR(20) NOT NULL CHECK (frequency IN ('daily', 'weekly')),
+    partition_no INT NOT NULL,
+    partition_count INT NOT NULL,
+    window_start DATETIMEOFFSET NOT NULL,
+    window_end DATETIMEOFFSET NOT NULL,
+    last_user_id UNIQUEIDENTIFIER NULL,
+    users_processed INT NOT NULL DEFAULT 0,
+    digests_created INT NOT NULL DEFAULT 0,
+    status NVARCHAR(20) NOT NULL DEFAULT 'running' CHECK (status IN ('running', 'completed', 'failed')),
+    started_at DATETIMEOFFSET DEFAULT SYSDATETIMEOFFSET(),
+    finished_at DATETIMEOFFSET NULL,
+    CONSTRAINT UQ_digest_runs_partition UNIQUE (run_key, partition_no)
+);
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_digest_runs_status')
+CREATE NONCLUSTERED INDEX IX_digest_runs_status ON digest_runs(status) INCLUDE (run_key);
+GO
+
+-- Candidate lookup: users with alerting saved searches of a given frequency
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_saved_searches_alerts')
+CREATE NONCLUSTERED INDEX IX_saved_searches_alerts
+    ON saved_searches(alert_frequency, user_id)
+    WHERE alerts_enabled = 1;
+GO
+
+PRINT '✅ V4: digest checkpoints ready';
+GO
@@ -0,0 +1,57 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V5
+-- Durable email outbox + password reset tokens
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- Mail is written here in the same transaction as the change that caused it and
+-- delivered by EmailOutboxSender, which claims rows with UPDLOCK/READPAST
+IF NOT EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'email_outbox') AND type = 'U')
+CREATE TABLE email_outbox (
+    id UNIQUEIDENTIFIER PRIMARY KEY DEFAULT NEWID(),
+    recipient NVARCHAR(255) NOT NULL,
+    domain NVARCHAR(255) NOT NULL,                -- recipient domain, for per-domain rate limits
+    subject NVARCHAR(300) NOT NULL,
+    body NVARCHAR(MAX) NOT NULL,
+    category NVARCHAR(30) NOT NULL,               -- verification, password_reset, notification, digest, test
+    status NVARCHAR(20) NOT NULL DEFAULT 'pending' CHECK (status IN ('pending', 'sending', 'sent', 'failed')),
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIMEOFFSET NOT NULL DEFAULT SYSDATETIMEOFFSET(),
+    locked_until DATETIMEOFFSET NULL,             -- claim lease; expired 'sending' rows are reclaimed
+    last_error NVARCHAR(1000) NULL,
+    created_at DATETIMEOFFSET DEFAULT SYSDATETIMEOFFSET(),
+    sent_at DATETIMEOFFSET NULL
+);
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_email_outbox_due')
+CREATE NONCLUSTERED INDEX IX_email_outbox_due
+    ON email_outbox(status, next_attempt_at)
+    INCLUDE (locked_until);
+GO
+
+-- Password reset: only a SHA-256 hash of the emailed token is stored
+IF COL_LENGTH('users', 'password_reset_token_hash') IS NULL
+ALTER TABLE users ADD password_reset_token_hash NVARCHAR(64) NULL;
+GO
+
+IF COL_LENGTH('users', 'password_reset_expires_at') IS NULL
+ALTER TABLE users ADD password_reset_expires_at DATETIMEOFFSET NULL;
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_users_password_reset_token')
+CREATE NONCLUSTERED INDEX IX_users_password_reset_token
+    ON users(password_reset_token_hash)
+    WHERE password_reset_token_hash IS NOT NULL;
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_users_email_verification_token')
+CREATE NONCLUSTERED INDEX IX_users_email_verification_token
+    ON users(email_verification_token)
+    WHERE email_verification_token IS NOT NULL;
+GO
+
+PRINT '✅ V5: email outbox ready';
+GO
@@ -0,0 +1,61 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V6
+-- Notification retention: covering index + archive table
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- Serves per-user listing, unread counts and the digest/unread queries from one index
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_notifications_user_read_created')
+CREATE NONCLUSTERED INDEX IX_notifications_user_read_created
+    ON notifications(user_id, is_read, created_at DESC)
+    INCLUDE (type);
+GO
+
+-- Retention/compaction scans only touch read rows
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_notifications_read_created')
+CREATE NONCLUSTERED INDEX IX_notifications_read_created
+    ON notifications(created_at)
+    INCLUDE (user_id, type)
+    WHERE is_read = 1;
+GO
+
+-- Superseded: user_id is the leading column above; is_read alone is too unselective
+-- to be useful and created_at is covered by the filtered index for the only scan using it
+IF EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_notifications_user' AND object_id = OBJECT_ID(N'notifications'))
+DROP INDEX IX_notifications_user ON notifications;
+GO
+
+IF EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_notifications_is_read' AND object_id = OBJECT_ID(N'notifications'))
+DROP INDEX IX_notifications_is_read ON notifications;
+GO
+
+IF EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_notifications_created_at' AND object_id = OBJECT_ID(N'notifications'))
+DROP INDEX IX_notifications_created_at ON notifications;
+GO
+
+-- Read notifications past retention move here (DELETE ... OUTPUT INTO); no FKs so
+-- deleting a user does not touch it and OUTPUT INTO is allowed
+IF NOT EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'notifications_archive') AND type = 'U')
+CREATE TABLE notifications_archive (
+    id UNIQUEIDENTIFIER PRIMARY KEY,
+    user_id UNIQUEIDENTIFIER NOT NULL,
+    type NVARCHAR(50) NOT NULL,
+    title NVARCHAR(200) NOT NULL,
+    message NVARCHAR(MAX) NOT NULL,
+    data NVARCHAR(MAX),
+    action_url NVARCHAR(MAX),
+    priority NVARCHAR(20),
+    read_at DATETIMEOFFSET,
+    created_at DATETIMEOFFSET,
+    archived_at DATETIMEOFFSET NOT NULL DEFAULT SYSDATETIMEOFFSET()
+);
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_notifications_archive_archived')
+CREATE NONCLUSTERED INDEX IX_notifications_archive_archived ON notifications_archive(archived_at);
+GO
+
+PRINT '✅ V6: notification retention ready';
+GO
@@ -0,0 +1,48 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V7
+-- Content-addressed media: one stored object per (bucket, SHA-256), plus the
+-- server-side references owners hold on them
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- Objects live under cas/<2 hex>/<sha256> in their bucket. ref_count is the number of
+-- listings/videos pointing at the object; the object is removed when it reaches zero.
+-- deleting_since is set when the last reference is released; the objects are removed after
+-- that commit and the row goes last. Uploads of the same bytes wait for the row instead of reusing it.
+IF NOT EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'media_objects') AND type = 'U')
+CREATE TABLE media_objects (
+    bucket NVARCHAR(63) NOT NULL,
+    content_hash CHAR(64) NOT NULL,               -- lowercase hex SHA-256
+    object_key NVARCHAR(500) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    content_type NVARCHAR(100) NULL,
+    ref_count INT NOT NULL DEFAULT 1 CHECK (ref_count >= 0),
+    created_at DATETIMEOFFSET DEFAULT SYSDATETIMEOFFSET(),
+    last_referenced_at DATETIMEOFFSET DEFAULT SYSDATETIMEOFFSET(),
+    deleting_since DATETIMEOFFSET NULL,
+    CONSTRAINT PK_media_objects PRIMARY KEY (bucket, content_hash)
+);
+GO
+
+-- One row per reference acquired by an upload endpoint (an owner uploading the same bytes
+-- twice holds two). Owners release exactly these rows, never keys taken from client JSON.
+-- owner_type: 'apartment' (listing photos). No FK: rows are released after the owner is gone.
+IF NOT EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'media_references') AND type = 'U')
+CREATE TABLE media_references (
+    id UNIQUEIDENTIFIER PRIMARY KEY DEFAULT NEWID(),
+    owner_type NVARCHAR(20) NOT NULL,
+    owner_id UNIQUEIDENTIFIER NOT NULL,
+    bucket NVARCHAR(63) NOT NULL,
+    object_key NVARCHAR(500) NOT NULL,
+    created_at DATETIMEOFFSET DEFAULT SYSDATETIMEOFFSET()
+);
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_media_references_owner')
+CREATE NONCLUSTERED INDEX IX_media_references_owner ON media_references(owner_type, owner_id);
+GO
+
+PRINT '✅ V7: media_objects and media_references ready';
+GO
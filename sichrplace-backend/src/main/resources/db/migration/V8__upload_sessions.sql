@@ -0,0 +1,52 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V8
+-- Resumable chunked uploads (init -> PUT chunks -> complete)
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- One row per resumable upload. Chunks are fixed-size (chunk_size) except the last;
+-- expires_at slides forward on every chunk and abandoned sessions are cleaned up.
+IF NOT EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'upload_sessions') AND type = 'U')
+CREATE TABLE upload_sessions (
+    id UNIQUEIDENTIFIER PRIMARY KEY DEFAULT NEWID(),
+    user_id UNIQUEIDENTIFIER NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    apartment_id UNIQUEIDENTIFIER NOT NULL,       -- no FK: an apartment delete must not block on uploads
+    bucket NVARCHAR(63) NOT NULL,
+    object_key NVARCHAR(500) NOT NULL,
+    file_name NVARCHAR(255) NULL,
+    title NVARCHAR(200) NULL,
+    content_type NVARCHAR(100) NOT NULL,
+    total_size BIGINT NOT NULL,
+    chunk_size INT NOT NULL,
+    status NVARCHAR(20) NOT NULL DEFAULT 'uploading'
+        CHECK (status IN ('uploading', 'completing', 'completed', 'aborted', 'expired')),
+    result_id UNIQUEIDENTIFIER NULL,              -- secure_videos.id once completed
+    expires_at DATETIMEOFFSET NOT NULL,
+    created_at DATETIMEOFFSET DEFAULT SYSDATETIMEOFFSET(),
+    updated_at DATETIMEOFFSET DEFAULT SYSDATETIMEOFFSET()
+);
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_upload_sessions_expiry')
+CREATE NONCLUSTERED INDEX IX_upload_sessions_expiry
+    ON upload_sessions(expires_at)
+    WHERE status = 'uploading';
+GO
+
+-- Server-tracked chunk state; a re-sent chunk replaces its row
+IF NOT EXISTS (SELECT * FROM sys.objects WHERE object_id = OBJECT_ID(N'upload_parts') AND type = 'U')
+CREATE TABLE upload_parts (
+    id UNIQUEIDENTIFIER PRIMARY KEY DEFAULT NEWID(),
+    upload_id UNIQUEIDENTIFIER NOT NULL REFERENCES upload_sessions(id) ON DELETE CASCADE,
+    part_number INT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    etag NVARCHAR(100) NOT NULL,
+    uploaded_at DATETIMEOFFSET DEFAULT SYSDATETIMEOFFSET(),
+    CONSTRAINT UQ_upload_parts_part UNIQUE (upload_id, part_number)
+);
+GO
+
+PRINT '✅ V8: resumable upload sessions ready';
+GO
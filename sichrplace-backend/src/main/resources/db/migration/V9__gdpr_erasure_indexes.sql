@@ -0,0 +1,23 @@
+-- =====================================================
+-- SichrPlace MSSQL Migration V9
+-- Indexes for the per-user filters of GDPR erasure and export
+-- =====================================================
+
+USE SichrPlaceDB;
+GO
+
+-- V6 only indexes archived_at; erasure deletes and exports read the archive by user
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_notifications_archive_user')
+CREATE NONCLUSTERED INDEX IX_notifications_archive_user ON notifications_archive(user_id);
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_email_outbox_recipient')
+CREATE NONCLUSTERED INDEX IX_email_outbox_recipient ON email_outbox(recipient) INCLUDE (status);
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_secure_videos_uploaded_by')
+CREATE NONCLUSTERED INDEX IX_secure_videos_uploaded_by ON secure_videos(uploaded_by);
+GO
+
+PRINT '✅ V9: GDPR erasure indexes ready';
+GO
@@ -0,0 +1,111 @@
+package com.sichrplace.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checkpointed bulk fan-out: a job resumes from its stored cursor, stops without inserting when
+ * another node moved the cursor, and never waits for the push rate. The job row is an in-memory
+ * map behind a mocked JdbcTemplate.
+ */
+class BulkNotificationServiceTest {
+
+    private static final String ZERO = new UUID(0, 0).toString();
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final PresenceService presenceService = mock(PresenceService.class);
+    private final UUID jobId = UUID.randomUUID();
+    private final Map<String, Object> job = new HashMap<>();
+    private final List<Object> cursorsRead = new ArrayList<>();
+    private List<String> recipients = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+
+    private BulkNotificationService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        job.put("name", "broadcast: test");
+        job.put("type", "announcement");
+        job.put("title", "Hello");
+        job.put("message", "World");
+        job.put("priority", "normal");
+        job.put("recipients_kind", "broadcast");
+        job.put("last_id", ZERO);
+        job.put("inserted", 0L);
+        job.put("pushed", 0L);
+
+        when(jdbcTemplate.queryForMap(contains("FROM bulk_notification_jobs"), any(Object[].class))).thenReturn(job);
+        when(jdbcTemplate.queryForList(contains("FROM users"), eq(String.class), any(Object[].class))).thenAnswer(inv -> {
+            Object[] args = inv.getArguments();
+            cursorsRead.add(args[args.length - 1]);
+            return cursorsRead.size() == 1 ? recipients : List.of();
+        });
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<Object>>getArgument(0).doInTransaction(mock(TransactionStatus.class)));
+
+        service = new BulkNotificationService(jdbcTemplate, transactionTemplate, notificationService,
+                mock(UnreadCounterService.class), presenceService, 10_000);
+        ReflectionTestUtils.setField(service, "chunkSize", 1000);
+        ReflectionTestUtils.setField(service, "chunkPauseMs", 0L);
+        ReflectionTestUtils.setField(service, "pushesPerSecond", 1);
+    }
+
+    @Test
+    void resumesFromTheCheckpointedCursor() {
+        String checkpoint = UUID.randomUUID().toString();
+        job.put("last_id", checkpoint);
+        job.put("inserted", 1000L);
+
+        service.run(jobId);
+
+        assertThat(cursorsRead).first().isEqualTo(checkpoint);
+        // The chunk and the cursor move are one transaction; the cursor only moves from where it was read
+        verify(jdbcTemplate).update(startsWith("UPDATE bulk_notification_jobs SET last_id"),
+                eq(recipients.get(1)), eq(2), eq(2), anyLong(), eq(jobId.toString()), eq(checkpoint));
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO notifications"), anyList());
+        verify(jdbcTemplate).update(contains("SET status = ?"), eq("completed"), any(), anyLong(), eq(jobId.toString()));
+    }
+
+    @Test
+    void stopsWithoutInsertingWhenTheCursorWasMovedElsewhere() {
+        when(jdbcTemplate.update(startsWith("UPDATE bulk_notification_jobs SET last_id"), any(Object[].class))).thenReturn(0);
+
+        service.run(jobId);
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        verify(jdbcTemplate, never()).update(contains("SET status = ?"), any(Object[].class));
+    }
+
+    @Test
+    void pushesAreQueuedInsteadOfPacingTheJob() {
+        recipients = IntStream.range(0, 50).mapToObj(i -> UUID.randomUUID().toString()).toList();
+        when(presenceService.isOnline(any())).thenReturn(true);
+
+        long started = System.nanoTime();
+        service.run(jobId);
+
+        // 50 pushes at 1 per second would take most of a minute on the job thread
+        assertThat(System.nanoTime() - started).isLessThan(5_000_000_000L);
+        verify(notificationService, never()).push(any(), any(), any(), any(), any(), any(), any());
+        verify(jdbcTemplate).update(contains("SET status = ?"), eq("completed"), any(), anyLong(), eq(jobId.toString()));
+    }
+}
@@ -0,0 +1,130 @@
+package com.sichrplace.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.sichrplace.entity.EmailOutbox;
+import com.sichrplace.entity.User;
+import com.sichrplace.repository.EmailOutboxRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verification mail from EmailService through the outbox to a real SMTP server (GreenMail).
+ * The outbox table is stubbed: the claim returns the row EmailService wrote.
+ */
+class EmailOutboxSenderTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final EmailOutboxRepository outboxRepository = mock(EmailOutboxRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+    private final AtomicReference<String> claimThread = new AtomicReference<>();
+
+    private EmailService emailService;
+    private EmailOutboxSender sender;
+
+    @BeforeEach
+    void setUp() {
+        when(outboxRepository.save(any(EmailOutbox.class))).thenAnswer(inv -> {
+            EmailOutbox row = inv.getArgument(0);
+            row.setId(UUID.randomUUID());
+            return row;
+        });
+        emailService = new EmailService(outboxRepository, new ObjectMapper());
+        ReflectionTestUtils.setField(emailService, "linkBaseUrl", "https://sichrplace.test");
+
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        sender = new EmailOutboxSender(jdbcTemplate, mailSender, 1);
+        ReflectionTestUtils.setField(sender, "batchSize", 20);
+        ReflectionTestUtils.setField(sender, "leaseSeconds", 120);
+        ReflectionTestUtils.setField(sender, "maxAttempts", 8);
+        ReflectionTestUtils.setField(sender, "backoffBaseMs", 30_000L);
+        ReflectionTestUtils.setField(sender, "backoffMaxMs", 3_600_000L);
+        ReflectionTestUtils.setField(sender, "perDomainPerMinute", 60);
+        ReflectionTestUtils.setField(sender, "from", "noreply@sichrplace.com");
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.shutdown();
+    }
+
+    @Test
+    void verificationMailIsDeliveredAndMarkedSent() throws Exception {
+        EmailOutbox row = enqueueVerification("new.tenant@example.org", "tok-123");
+        claimReturns(row);
+
+        sender.poll();
+
+        assertThat(greenMail.waitForIncomingEmail(5_000, 1)).isTrue();
+        assertThat(claimThread.get()).isEqualTo("email-outbox"); // not the scheduler thread
+        MimeMessage received = greenMail.getReceivedMessages()[0];
+        assertThat(received.getAllRecipients()[0].toString()).isEqualTo("new.tenant@example.org");
+        assertThat(received.getSubject()).isEqualTo("Confirm your SichrPlace email address");
+        assertThat(GreenMailUtil.getBody(received))
+                .contains("https://sichrplace.test/verify-email.html?token=tok-123");
+        verify(jdbcTemplate, timeout(5_000)).update(contains("status = 'sent'"), eq(row.getId().toString()));
+    }
+
+    @Test
+    void unreachableServerReschedulesWithBackoff() {
+        mailSender.setPort(ServerSetupTest.SMTP.getPort() + 1); // nothing listens here
+        EmailOutbox row = enqueueVerification("new.tenant@example.org", "tok-456");
+        claimReturns(row);
+
+        sender.poll();
+
+        verify(jdbcTemplate, timeout(5_000)).update(contains("status = 'pending', attempts = ?"),
+                eq(1), anyString(), any(), eq(row.getId().toString()));
+        verify(jdbcTemplate, never()).update(contains("status = 'sent'"), any(Object[].class));
+    }
+
+    private EmailOutbox enqueueVerification(String email, String token) {
+        User user = User.builder().email(email).username("tenant").firstName("Alex").build();
+        emailService.sendVerification(user, token);
+        ArgumentCaptor<EmailOutbox> saved = ArgumentCaptor.forClass(EmailOutbox.class);
+        verify(outboxRepository, atLeastOnce()).save(saved.capture());
+        return saved.getValue();
+    }
+
+    /** The claim query returns the outbox row once, as the CLAIM_SQL OUTPUT clause would */
+    @SuppressWarnings("unchecked")
+    private void claimReturns(EmailOutbox row) {
+        when(jdbcTemplate.query(startsWith("WITH due AS"), any(RowMapper.class), anyInt(), anyInt()))
+                .thenAnswer(inv -> {
+                    claimThread.set(Thread.currentThread().getName());
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getString("id")).thenReturn(row.getId().toString());
+                    when(rs.getString("recipient")).thenReturn(row.getRecipient());
+                    when(rs.getString("domain")).thenReturn(row.getDomain());
+                    when(rs.getString("subject")).thenReturn(row.getSubject());
+                    when(rs.getString("body")).thenReturn(row.getBody());
+                    when(rs.getInt("attempts")).thenReturn(row.getAttempts());
+                    RowMapper<Object> mapper = inv.getArgument(1);
+                    return List.of(mapper.mapRow(rs, 0));
+                })
+                .thenReturn(List.of());
+    }
+}
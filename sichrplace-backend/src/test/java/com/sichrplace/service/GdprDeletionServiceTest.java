@@ -0,0 +1,153 @@
+package com.sichrplace.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Resumable erasure: a failing step is retried from its checkpoint without repeating the steps
+ * before it, retries back off, and a request that keeps failing ends up failed. The gdpr_requests
+ * row is kept in memory; the step statements are answered by a mocked JdbcTemplate.
+ */
+class GdprDeletionServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UUID requestId = UUID.randomUUID();
+    private final UUID userId = UUID.randomUUID();
+
+    private final Deque<Integer> notificationBatches = new ArrayDeque<>(List.of(2, 2, 1));
+    private final AtomicInteger favoritesFailures = new AtomicInteger();
+    private volatile String status = "pending";
+    private volatile String responseData;
+
+    private GdprDeletionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(jdbcTemplate.query(contains("FROM gdpr_requests"), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(inv -> {
+                    if (!"pending".equals(status) && !"processing".equals(status)) return List.of();
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getString("id")).thenReturn(requestId.toString());
+                    when(rs.getString("user_id")).thenReturn(userId.toString());
+                    when(rs.getString("response_data")).thenReturn(responseData);
+                    when(rs.getObject("created_at", OffsetDateTime.class)).thenReturn(OffsetDateTime.now().minusDays(1));
+                    RowMapper<Object> mapper = inv.getArgument(1);
+                    return List.of(mapper.mapRow(rs, 0));
+                });
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(inv -> {
+            String sql = inv.getArgument(0);
+            if (sql.startsWith("UPDATE gdpr_requests")) {
+                status = inv.getArgument(1);
+                responseData = inv.getArgument(2);
+                return 1;
+            }
+            if (sql.contains("FROM notifications WHERE")) {
+                Integer batch = notificationBatches.poll();
+                return batch != null ? batch : 0;
+            }
+            if (sql.contains("FROM favorites") && favoritesFailures.getAndDecrement() > 0) {
+                throw new QueryTimeoutException("Lock request time out period exceeded");
+            }
+            return 0;
+        });
+
+        service = new GdprDeletionService(jdbcTemplate, objectMapper, mock(FileStorageService.class),
+                mock(MediaCleanupService.class), mock(MessageSearchService.class), mock(AdminStatsService.class));
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "minPauseMs", 0L);
+        ReflectionTestUtils.setField(service, "maxPauseMs", 0L);
+        ReflectionTestUtils.setField(service, "slowBatchMs", 250L);
+        ReflectionTestUtils.setField(service, "warnAfterDays", 21);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "retryBaseMinutes", 0L); // retries are due right away
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedStepIsRetriedFromItsCheckpoint() throws Exception {
+        favoritesFailures.set(1);
+
+        runOnce();
+        assertThat(status).isEqualTo("processing");
+        assertThat(checkpoint()).containsEntry("stage", "favorites").containsEntry("attempts", 1)
+                .containsEntry("lastError", "favorites: Lock request time out period exceeded");
+
+        runOnce();
+        assertThat(status).isEqualTo("completed");
+        Map<String, Object> done = checkpoint();
+        assertThat(done).containsEntry("stage", "done").doesNotContainKeys("lastError", "retryAt");
+        assertThat((Map<String, Object>) done.get("rows")).containsEntry("notifications", 5);
+
+        // The steps before the failure ran once; the failed one again
+        verify(jdbcTemplate, times(3)).update(contains("FROM notifications WHERE"), any(Object[].class));
+        verify(jdbcTemplate, times(1)).update(contains("FROM recently_viewed"), any(Object[].class));
+        verify(jdbcTemplate, times(2)).update(contains("FROM favorites"), any(Object[].class));
+        verify(jdbcTemplate, times(1)).update(startsWith("UPDATE users SET username"), any(Object[].class));
+    }
+
+    @Test
+    void retryWaitsForItsBackoff() throws Exception {
+        ReflectionTestUtils.setField(service, "retryBaseMinutes", 10L);
+        favoritesFailures.set(1);
+
+        runOnce();
+        long retryAt = ((Number) checkpoint().get("retryAt")).longValue();
+        assertThat(retryAt).isGreaterThan(System.currentTimeMillis() + 9 * 60_000);
+
+        runOnce();
+        assertThat(status).isEqualTo("processing");
+        verify(jdbcTemplate, times(1)).update(contains("FROM favorites"), any(Object[].class));
+    }
+
+    @Test
+    void requestThatKeepsFailingIsMarkedFailed() throws Exception {
+        favoritesFailures.set(Integer.MAX_VALUE);
+
+        for (int i = 0; i < 4; i++) runOnce();
+
+        assertThat(status).isEqualTo("failed");
+        assertThat(checkpoint()).containsEntry("attempts", 3).doesNotContainKey("retryAt");
+        verify(jdbcTemplate, times(3)).update(contains("FROM favorites"), any(Object[].class));
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE users SET username"), any(Object[].class));
+    }
+
+    /** One scheduled round, waited for */
+    private void runOnce() throws InterruptedException {
+        service.poll();
+        AtomicBoolean running = (AtomicBoolean) ReflectionTestUtils.getField(service, "running");
+        for (int i = 0; i < 500 && running.get(); i++) Thread.sleep(10);
+        assertThat(running.get()).isFalse();
+    }
+
+    private Map<String, Object> checkpoint() throws Exception {
+        return objectMapper.readValue(responseData, new TypeReference<Map<String, Object>>() {});
+    }
+}
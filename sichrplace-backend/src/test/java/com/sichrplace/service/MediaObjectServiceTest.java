@@ -0,0 +1,156 @@
+package com.sichrplace.service;
+
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Reference-count lifecycle of content-addressed objects. media_objects is simulated in memory
+ * by answering the service's statements the way SQL Server would.
+ */
+class MediaObjectServiceTest {
+
+    private static final String BUCKET = "apartment-images";
+    private static final String SHA = "ab" + "0".repeat(62);
+    private static final String KEY = MediaObjectService.keyFor(SHA);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final MinioClient minioClient = mock(MinioClient.class);
+    private final Map<String, Row> table = new ConcurrentHashMap<>();
+    private final AtomicInteger writes = new AtomicInteger();
+
+    private MediaObjectService service;
+
+    /** One media_objects row */
+    private static class Row {
+        int refCount;
+        boolean deleting;
+
+        Row(int refCount, boolean deleting) {
+            this.refCount = refCount;
+            this.deleting = deleting;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(inv -> {
+            String sql = inv.getArgument(0);
+            String id = inv.getArgument(1) + ":" + inv.getArgument(2);
+            Row row = table.get(id);
+            if (sql.contains("ref_count = ref_count + 1")) {
+                if (row == null || row.deleting) return 0;
+                row.refCount++;
+                return 1;
+            }
+            if (sql.contains("INSERT INTO media_objects")) {
+                if (row != null) throw new DuplicateKeyException("PK_media_objects");
+                table.put(id, new Row(1, false));
+                return 1;
+            }
+            if (sql.startsWith("DELETE FROM media_objects")) {
+                return row != null && row.deleting && table.remove(id) != null ? 1 : 0;
+            }
+            throw new AssertionError("Unexpected statement: " + sql);
+        });
+        when(jdbcTemplate.queryForObject(contains("COUNT(*) FROM media_objects"), eq(Integer.class), any(Object[].class)))
+                .thenAnswer(inv -> table.containsKey(inv.getArgument(2) + ":" + inv.getArgument(3)) ? 1 : 0);
+        when(jdbcTemplate.queryForList(contains("ref_count = ref_count - 1"), eq(Integer.class), any(Object[].class)))
+                .thenAnswer(inv -> {
+                    Row row = table.get(inv.getArgument(2) + ":" + inv.getArgument(3));
+                    if (row == null || row.deleting || row.refCount <= 0) return List.of();
+                    row.refCount--;
+                    row.deleting = row.refCount == 0;
+                    return List.of(row.refCount);
+                });
+        List<Result<Item>> stored = List.of(new Result<>(item(KEY)), new Result<>(item(KEY + "_w320.jpg")));
+        when(minioClient.listObjects(any(ListObjectsArgs.class))).thenReturn(stored);
+        when(minioClient.removeObjects(any(RemoveObjectsArgs.class))).thenReturn(List.<Result<DeleteError>>of());
+
+        service = new MediaObjectService(jdbcTemplate, minioClient);
+    }
+
+    @Test
+    void newContentIsWrittenOnceAndDuplicatesOnlyIncrement() throws Exception {
+        assertThat(service.reference(BUCKET, SHA, 42, "image/jpeg", key -> writes.incrementAndGet())).isEqualTo(KEY);
+        assertThat(service.reference(BUCKET, SHA, 42, "image/jpeg", key -> writes.incrementAndGet())).isEqualTo(KEY);
+
+        assertThat(writes.get()).isEqualTo(1);
+        assertThat(row().refCount).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentRegistrationOfTheSameBytesBecomesAnIncrement() throws Exception {
+        // Another upload inserts the row while ours is still writing the (identical) object
+        service.reference(BUCKET, SHA, 42, "image/jpeg", key -> {
+            writes.incrementAndGet();
+            table.put(BUCKET + ":" + SHA, new Row(1, false));
+        });
+
+        assertThat(writes.get()).isEqualTo(1);
+        assertThat(row().refCount).isEqualTo(2);
+    }
+
+    @Test
+    void lastReleaseRemovesTheObjectAndItsVariants() throws Exception {
+        service.reference(BUCKET, SHA, 42, "image/jpeg", key -> writes.incrementAndGet());
+        service.reference(BUCKET, SHA, 42, "image/jpeg", key -> writes.incrementAndGet());
+
+        assertThat(service.release(BUCKET, KEY)).isFalse();
+        verifyNoInteractions(minioClient);
+        assertThat(row().refCount).isEqualTo(1);
+
+        assertThat(service.release(BUCKET, KEY)).isTrue();
+        ArgumentCaptor<RemoveObjectsArgs> removed = ArgumentCaptor.forClass(RemoveObjectsArgs.class);
+        verify(minioClient).removeObjects(removed.capture());
+        assertThat(removed.getValue().objects()).hasSize(2); // the original and its w320 variant
+        assertThat(table).isEmpty();
+    }
+
+    @Test
+    void releaseOfUnknownObjectRemovesNothing() {
+        assertThat(service.release(BUCKET, KEY)).isFalse();
+        verifyNoInteractions(minioClient);
+    }
+
+    @Test
+    void uploadWaitsForMarkedRowAndWritesAFreshCopy() throws Exception {
+        table.put(BUCKET + ":" + SHA, new Row(0, true));
+        // The removal in progress finishes while the uploader waits
+        when(jdbcTemplate.queryForObject(contains("COUNT(*) FROM media_objects"), eq(Integer.class), any(Object[].class)))
+                .thenAnswer(inv -> table.remove(BUCKET + ":" + SHA) != null ? 1 : 0);
+
+        assertThat(service.reference(BUCKET, SHA, 42, "image/jpeg", key -> writes.incrementAndGet())).isEqualTo(KEY);
+
+        assertThat(writes.get()).isEqualTo(1);
+        assertThat(row().refCount).isEqualTo(1);
+        assertThat(row().deleting).isFalse();
+    }
+
+    private Row row() {
+        return table.get(BUCKET + ":" + SHA);
+    }
+
+    private static Item item(String name) {
+        Item item = mock(Item.class);
+        when(item.objectName()).thenReturn(name);
+        return item;
+    }
+}
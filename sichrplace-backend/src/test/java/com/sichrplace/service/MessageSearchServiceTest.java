@@ -0,0 +1,159 @@
+package com.sichrplace.service;
+
+import com.sichrplace.dto.ChatDto;
+import com.sichrplace.entity.Message;
+import com.sichrplace.repository.ConversationRepository;
+import com.sichrplace.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Segmented loading of the message index: large conversations are split into bounded segments,
+ * small cold ones are loaded together, and the memory budget unloads segments without losing hits.
+ * Messages live in a list behind a mocked repository whose keyset queries behave like the JPQL ones.
+ */
+class MessageSearchServiceTest {
+
+    private static final int SEGMENT = 10;
+
+    private final MessageRepository messages = mock(MessageRepository.class);
+    private final ConversationRepository conversations = mock(ConversationRepository.class);
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID large = UUID.randomUUID();
+    private final List<ChatDto.IndexedMessage> stored = new ArrayList<>();
+    private final List<UUID> participantOf = new ArrayList<>();
+    private MessageSearchService service;
+
+    private record Row(UUID id, UUID conversationId, UUID senderId, String content, OffsetDateTime createdAt)
+            implements ChatDto.IndexedMessage {
+        public UUID getId() { return id; }
+        public UUID getConversationId() { return conversationId; }
+        public UUID getSenderId() { return senderId; }
+        public String getContent() { return content; }
+        public OffsetDateTime getCreatedAt() { return createdAt; }
+    }
+
+    @BeforeEach
+    void setUp() {
+        OffsetDateTime start = OffsetDateTime.now().minusDays(30);
+        for (int i = 0; i < 35; i++) {
+            store(large, i % 7 == 0 ? "needle number " + i : "filler message " + i, start.plusMinutes(i));
+        }
+        participantOf.add(large);
+
+        when(conversations.findIdsByParticipant(userId)).thenAnswer(inv -> List.copyOf(participantOf));
+        when(messages.countByConversations(anyCollection())).thenAnswer(inv -> {
+            Collection<UUID> ids = inv.getArgument(0);
+            return stored.stream().filter(m -> ids.contains(m.getConversationId()))
+                    .collect(Collectors.groupingBy(ChatDto.IndexedMessage::getConversationId, Collectors.counting()))
+                    .entrySet().stream().map(e -> new Object[]{e.getKey(), e.getValue()}).toList();
+        });
+        when(messages.findForIndexIn(anyCollection())).thenAnswer(inv -> {
+            Collection<UUID> ids = inv.getArgument(0);
+            return stored.stream().filter(m -> ids.contains(m.getConversationId())).toList();
+        });
+        when(messages.findForIndexSince(anyCollection(), any())).thenAnswer(inv -> {
+            Collection<UUID> ids = inv.getArgument(0);
+            OffsetDateTime since = inv.getArgument(1);
+            return stored.stream().filter(m -> ids.contains(m.getConversationId()) && !m.getCreatedAt().isBefore(since)).toList();
+        });
+        when(messages.findForIndexAfter(any(), any(), any(), any())).thenAnswer(inv -> {
+            Pageable page = inv.getArgument(3);
+            return ordered(inv.getArgument(0)).stream()
+                    .filter(m -> after(m, inv.getArgument(1), inv.getArgument(2)))
+                    .limit(page.getPageSize())
+                    .toList();
+        });
+        when(messages.findForIndexBetween(any(), any(), any(), any(), any())).thenAnswer(inv ->
+                ordered(inv.getArgument(0)).stream()
+                        .filter(m -> after(m, inv.getArgument(1), inv.getArgument(2))
+                                && !after(m, inv.getArgument(3), inv.getArgument(4)))
+                        .toList());
+        when(messages.findAllById(any())).thenAnswer(inv -> {
+            List<Message> found = new ArrayList<>();
+            for (UUID id : inv.<Iterable<UUID>>getArgument(0)) {
+                stored.stream().filter(m -> m.getId().equals(id)).findFirst()
+                        .ifPresent(m -> found.add(Message.builder().id(id).content(m.getContent()).build()));
+            }
+            return found;
+        });
+
+        service = new MessageSearchService(messages, conversations);
+        ReflectionTestUtils.setField(service, "segmentIdleMs", 1_800_000L);
+        ReflectionTestUtils.setField(service, "segmentMessages", SEGMENT);
+        ReflectionTestUtils.setField(service, "maxIndexMemory", DataSize.ofMegabytes(64));
+    }
+
+    @Test
+    void largeConversationIsSplitIntoBoundedSegmentsAndFullySearched() {
+        List<ChatDto.SearchHit> hits = service.search(userId, "needle", 50);
+
+        assertThat(hits).hasSize(5); // messages 0, 7, 14, 21, 28
+        verify(messages, times(4)).findForIndexAfter(eq(large), any(), any(), any()); // 10 + 10 + 10 + 5
+        verify(messages, never()).findForIndexIn(anyCollection());
+    }
+
+    @Test
+    void memoryBudgetUnloadsSegmentsWithoutLosingHits() {
+        ReflectionTestUtils.setField(service, "maxIndexMemory", DataSize.ofBytes(1));
+
+        List<ChatDto.SearchHit> first = service.search(userId, "needle", 50);
+        List<ChatDto.SearchHit> again = service.search(userId, "needle", 50);
+
+        assertThat(first).hasSize(5);
+        assertThat(again).extracting(ChatDto.SearchHit::getMessageId)
+                .containsExactlyInAnyOrderElementsOf(first.stream().map(ChatDto.SearchHit::getMessageId).toList());
+        // Sealed segments are read again by range once they were unloaded
+        verify(messages, atLeast(3)).findForIndexBetween(eq(large), any(), any(), any(), any());
+        assertThat(((AtomicLong) ReflectionTestUtils.getField(service, "indexedBytes")).get()).isLessThan(2_000);
+    }
+
+    @Test
+    void smallColdConversationsAreLoadedTogether() {
+        for (int c = 0; c < 3; c++) {
+            UUID conversationId = UUID.randomUUID();
+            participantOf.add(conversationId);
+            store(conversationId, "needle in small conversation " + c, OffsetDateTime.now().minusHours(2));
+        }
+
+        List<ChatDto.SearchHit> hits = service.search(userId, "needle", 50);
+
+        assertThat(hits).hasSize(8);
+        verify(messages, times(1)).findForIndexIn(anyCollection());
+        verify(messages, times(4)).findForIndexAfter(eq(large), any(), any(), any());
+        verify(messages, never()).findForIndexAfter(argThat(id -> !large.equals(id)), any(), any(), any());
+    }
+
+    private void store(UUID conversationId, String content, OffsetDateTime createdAt) {
+        stored.add(new Row(UUID.randomUUID(), conversationId, UUID.randomUUID(), content, createdAt));
+    }
+
+    private List<ChatDto.IndexedMessage> ordered(UUID conversationId) {
+        return stored.stream()
+                .filter(m -> m.getConversationId().equals(conversationId))
+                .sorted(Comparator.comparing(ChatDto.IndexedMessage::getCreatedAt).thenComparing(ChatDto.IndexedMessage::getId))
+                .toList();
+    }
+
+    private static boolean after(ChatDto.IndexedMessage m, OffsetDateTime createdAt, UUID id) {
+        int c = m.getCreatedAt().compareTo(createdAt);
+        return c > 0 || (c == 0 && m.getId().compareTo(id) > 0);
+    }
+}
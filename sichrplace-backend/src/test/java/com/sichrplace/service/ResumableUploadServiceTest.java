@@ -0,0 +1,336 @@
+package com.sichrplace.service;
+
+import com.sichrplace.dto.StorageDto;
+import com.sichrplace.entity.Apartment;
+import com.sichrplace.entity.SecureVideo;
+import com.sichrplace.entity.UploadPart;
+import com.sichrplace.entity.UploadSession;
+import com.sichrplace.entity.User;
+import com.sichrplace.repository.ApartmentRepository;
+import com.sichrplace.repository.SecureVideoRepository;
+import com.sichrplace.repository.UploadPartRepository;
+import com.sichrplace.repository.UploadSessionRepository;
+import com.sichrplace.repository.UserRepository;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.UploadPartResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import io.minio.messages.Part;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Offset validation and the uploading -> completing -> completed state machine of resumable
+ * uploads. The session row and its parts live in memory behind mocked repositories whose
+ * conditional updates behave like the JPQL ones; MinIO is mocked.
+ */
+class ResumableUploadServiceTest {
+
+    private static final int CHUNK = 5 * 1024 * 1024;
+    private static final long TOTAL = 2L * CHUNK + 1024; // parts of 5MB, 5MB, 1KB
+
+    private final MinioAsyncClient minio = mock(MinioAsyncClient.class);
+    private final UploadSessionRepository sessions = mock(UploadSessionRepository.class);
+    private final UploadPartRepository partRepository = mock(UploadPartRepository.class);
+    private final ApartmentRepository apartments = mock(ApartmentRepository.class);
+    private final SecureVideoRepository videos = mock(SecureVideoRepository.class);
+    private final UserRepository users = mock(UserRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    private final User owner = User.builder().id(UUID.randomUUID()).build();
+    private final Map<Integer, UploadPart> parts = new TreeMap<>();
+    private UploadSession stored;
+    private ResumableUploadService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stored = UploadSession.builder()
+                .id(UUID.randomUUID())
+                .userId(owner.getId())
+                .apartmentId(UUID.randomUUID())
+                .bucket("secure-videos")
+                .objectKey("apt/video")
+                .multipartUploadId("mpu-1")
+                .contentType("video/mp4")
+                .totalSize(TOTAL)
+                .chunkSize(CHUNK)
+                .expiresAt(OffsetDateTime.now().plusHours(1))
+                .build();
+
+        when(sessions.findById(stored.getId())).thenAnswer(inv -> Optional.of(copy(stored)));
+        when(sessions.extend(eq(stored.getId()), any())).thenAnswer(inv -> {
+            if (!"uploading".equals(stored.getStatus())) return 0;
+            stored.setExpiresAt(inv.getArgument(1));
+            return 1;
+        });
+        when(sessions.transition(eq(stored.getId()), anyString(), anyString())).thenAnswer(inv -> {
+            if (!stored.getStatus().equals(inv.getArgument(1))) return 0;
+            stored.setStatus(inv.getArgument(2));
+            return 1;
+        });
+        when(sessions.markCompleted(eq(stored.getId()), any())).thenAnswer(inv -> {
+            if (!"completing".equals(stored.getStatus())) return 0;
+            stored.setStatus("completed");
+            stored.setResultId(inv.getArgument(1));
+            return 1;
+        });
+
+        when(partRepository.findByUploadIdOrderByPartNumber(stored.getId())).thenAnswer(inv -> new ArrayList<>(parts.values()));
+        when(partRepository.findByUploadIdAndPartNumber(eq(stored.getId()), anyInt()))
+                .thenAnswer(inv -> Optional.ofNullable(parts.get(inv.<Integer>getArgument(1))));
+        when(partRepository.save(any(UploadPart.class))).thenAnswer(inv -> {
+            UploadPart part = inv.getArgument(0);
+            parts.put(part.getPartNumber(), part);
+            return part;
+        });
+        doAnswer(inv -> {
+            parts.clear();
+            return null;
+        }).when(partRepository).deleteAll(any());
+
+        when(apartments.getReferenceById(any())).thenReturn(new Apartment());
+        when(videos.save(any(SecureVideo.class))).thenAnswer(inv -> {
+            SecureVideo video = inv.getArgument(0);
+            video.setId(UUID.randomUUID());
+            return video;
+        });
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(mock(TransactionStatus.class)));
+
+        when(minio.uploadPartAsync(anyString(), isNull(), anyString(), any(), anyLong(), anyString(), anyInt(), isNull(), isNull()))
+                .thenAnswer(inv -> {
+                    UploadPartResponse response = mock(UploadPartResponse.class);
+                    when(response.etag()).thenReturn("etag-" + inv.getArgument(6));
+                    return CompletableFuture.completedFuture(response);
+                });
+        when(minio.completeMultipartUploadAsync(anyString(), isNull(), anyString(), anyString(), any(Part[].class), isNull(), isNull()))
+                .thenReturn(CompletableFuture.completedFuture(mock(ObjectWriteResponse.class)));
+        when(minio.abortMultipartUploadAsync(anyString(), isNull(), anyString(), anyString(), isNull(), isNull()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        service = new ResumableUploadService(minio, sessions, partRepository, apartments, videos, users, transactionTemplate);
+        ReflectionTestUtils.setField(service, "videoBucket", "secure-videos");
+        ReflectionTestUtils.setField(service, "defaultChunk", DataSize.ofMegabytes(16));
+        ReflectionTestUtils.setField(service, "maxChunk", DataSize.ofMegabytes(64));
+        ReflectionTestUtils.setField(service, "maxSize", DataSize.ofGigabytes(10));
+        ReflectionTestUtils.setField(service, "ttlHours", 24);
+        ReflectionTestUtils.setField(service, "completingTimeoutMinutes", 30);
+    }
+
+    @Test
+    void chunkMustStartOnABoundaryAndHaveTheChunkLength() {
+        assertRejected(() -> service.putChunk(stored.getId(), owner, 1, CHUNK, body()), 400);
+        assertRejected(() -> service.putChunk(stored.getId(), owner, TOTAL, 0, body()), 400);
+        assertRejected(() -> service.putChunk(stored.getId(), owner, CHUNK, CHUNK - 1, body()), 400);
+        assertRejected(() -> service.putChunk(stored.getId(), owner, 2L * CHUNK, CHUNK, body()), 400); // last is 1KB
+        assertRejected(() -> service.putChunk(stored.getId(), owner, CHUNK, -1, body()), 411);
+        verifyNoInteractions(minio);
+        assertThat(parts).isEmpty();
+    }
+
+    @Test
+    void statusReportsTheNextMissingOffset() {
+        StorageDto.ResumableUpload status = service.putChunk(stored.getId(), owner, 2L * CHUNK, 1024, body());
+
+        assertThat(status.getMissingParts()).containsExactly(1, 2);
+        assertThat(status.getNextOffset()).isZero();
+        assertThat(status.getReceivedBytes()).isEqualTo(1024);
+        assertThat(parts.get(3).getEtag()).isEqualTo("etag-3");
+    }
+
+    @Test
+    void completeNeedsEveryChunk() {
+        service.putChunk(stored.getId(), owner, CHUNK, CHUNK, body());
+
+        assertRejected(() -> service.complete(stored.getId(), owner), 409);
+        assertThat(stored.getStatus()).isEqualTo("uploading");
+        verify(sessions, never()).transition(any(), anyString(), anyString());
+    }
+
+    @Test
+    void completeAssemblesThePartsOnceAndIsIdempotent() throws Exception {
+        uploadAll();
+
+        StorageDto.ResumableUpload first = service.complete(stored.getId(), owner);
+        StorageDto.ResumableUpload again = service.complete(stored.getId(), owner);
+
+        assertThat(first.getStatus()).isEqualTo("completed");
+        assertThat(first.getVideoId()).isNotNull().isEqualTo(stored.getResultId());
+        assertThat(again.getVideoId()).isEqualTo(first.getVideoId());
+        ArgumentCaptor<Part[]> assembled = ArgumentCaptor.forClass(Part[].class);
+        verify(minio, times(1)).completeMultipartUploadAsync(eq("secure-videos"), isNull(), eq("apt/video"), eq("mpu-1"),
+                assembled.capture(), isNull(), isNull());
+        assertThat(assembled.getValue()).extracting(Part::partNumber).containsExactly(1, 2, 3);
+        assertThat(assembled.getValue()).extracting(Part::etag).containsExactly("etag-1", "etag-2", "etag-3");
+        verify(videos, times(1)).save(any());
+    }
+
+    @Test
+    void concurrentCompleteIsRejectedWhileTheFirstIsAssembling() throws Exception {
+        uploadAll();
+        stored.setStatus("completing"); // another request won the transition after our read
+        when(sessions.findById(stored.getId()))
+                .thenAnswer(inv -> Optional.of(copy(stored, "uploading")))
+                .thenAnswer(inv -> Optional.of(copy(stored)));
+
+        assertRejected(() -> service.complete(stored.getId(), owner), 409);
+        verify(minio, never()).completeMultipartUploadAsync(anyString(), any(), anyString(), anyString(), any(), any(), any());
+        verify(videos, never()).save(any());
+    }
+
+    @Test
+    void chunkArrivingDuringCompleteIsDropped() {
+        service.putChunk(stored.getId(), owner, CHUNK, CHUNK, body());
+        String etag = parts.get(2).getEtag();
+        // A complete moves the session on while the re-sent chunk is in flight
+        when(sessions.extend(eq(stored.getId()), any())).thenAnswer(inv -> {
+            stored.setStatus("completing");
+            return 0;
+        });
+
+        assertRejected(() -> service.putChunk(stored.getId(), owner, CHUNK, CHUNK, body()), 409);
+        assertThat(parts.get(2).getEtag()).isEqualTo(etag);
+        assertThat(stored.getStatus()).isEqualTo("completing");
+    }
+
+    @Test
+    void failedAssemblyReturnsTheSessionToUploading() throws Exception {
+        uploadAll();
+        when(minio.completeMultipartUploadAsync(anyString(), isNull(), anyString(), anyString(), any(Part[].class), isNull(), isNull()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("InvalidPart")));
+
+        assertThatThrownBy(() -> service.complete(stored.getId(), owner)).hasMessageContaining("InvalidPart");
+        assertThat(stored.getStatus()).isEqualTo("uploading");
+        assertThat(parts).hasSize(3);
+        verify(videos, never()).save(any());
+    }
+
+    @Test
+    void abortDiscardsThePartsAndIsIdempotent() throws Exception {
+        service.putChunk(stored.getId(), owner, CHUNK, CHUNK, body());
+
+        service.abort(stored.getId(), owner);
+        service.abort(stored.getId(), owner);
+
+        assertThat(stored.getStatus()).isEqualTo("aborted");
+        assertThat(parts).isEmpty();
+        verify(minio, times(1)).abortMultipartUploadAsync("secure-videos", null, "apt/video", "mpu-1", null, null);
+        assertRejected(() -> service.putChunk(stored.getId(), owner, CHUNK, CHUNK, body()), 409);
+    }
+
+    @Test
+    void completedUploadCannotBeAborted() throws Exception {
+        uploadAll();
+        service.complete(stored.getId(), owner);
+
+        assertRejected(() -> service.abort(stored.getId(), owner), 409);
+        verify(minio, never()).abortMultipartUploadAsync(anyString(), any(), anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void expiryFinishesASessionStuckAfterTheObjectWasAssembled() throws Exception {
+        uploadAll();
+        stuckInCompleting();
+        when(minio.statObject(any(StatObjectArgs.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(StatObjectResponse.class)));
+        when(apartments.existsById(stored.getApartmentId())).thenReturn(true);
+
+        service.expireAbandoned();
+
+        assertThat(stored.getStatus()).isEqualTo("completed");
+        assertThat(stored.getResultId()).isNotNull();
+        verify(videos, times(1)).save(any());
+        verify(minio, never()).completeMultipartUploadAsync(anyString(), any(), anyString(), anyString(), any(), any(), any());
+    }
+
+    @Test
+    void retriedCompleteResumesASessionStuckBeforeAssembly() throws Exception {
+        uploadAll();
+        stuckInCompleting();
+        ErrorResponseException noSuchKey = mock(ErrorResponseException.class);
+        when(noSuchKey.errorResponse())
+                .thenReturn(new ErrorResponse("NoSuchKey", "missing", "secure-videos", "apt/video", null, null, null));
+        when(minio.statObject(any(StatObjectArgs.class))).thenReturn(CompletableFuture.failedFuture(noSuchKey));
+
+        StorageDto.ResumableUpload result = service.complete(stored.getId(), owner);
+
+        assertThat(result.getStatus()).isEqualTo("completed");
+        verify(minio, times(1)).completeMultipartUploadAsync(eq("secure-videos"), isNull(), eq("apt/video"), eq("mpu-1"),
+                any(Part[].class), isNull(), isNull());
+        verify(videos, times(1)).save(any());
+    }
+
+    @Test
+    void recentCompletingSessionIsLeftAlone() throws Exception {
+        uploadAll();
+        stored.setStatus("completing");
+        stored.setUpdatedAt(OffsetDateTime.now());
+
+        assertRejected(() -> service.complete(stored.getId(), owner), 409);
+        verify(minio, never()).statObject(any(StatObjectArgs.class));
+    }
+
+    /** A complete that died between the completing transition and markCompleted */
+    private void stuckInCompleting() {
+        stored.setStatus("completing");
+        stored.setUpdatedAt(OffsetDateTime.now().minusHours(1));
+        when(sessions.findTop100ByStatusAndUpdatedAtBefore(eq("completing"), any()))
+                .thenAnswer(inv -> List.of(copy(stored)));
+    }
+
+    private void uploadAll() {
+        for (int n = 1; n <= 3; n++) {
+            long size = n < 3 ? CHUNK : 1024;
+            parts.put(n, UploadPart.builder().uploadId(stored.getId()).partNumber(n).sizeBytes(size).etag("etag-" + n).build());
+        }
+    }
+
+    private static InputStream body() {
+        return new ByteArrayInputStream(new byte[0]); // MinIO is mocked; only the declared length matters
+    }
+
+    private static void assertRejected(Runnable call, int status) {
+        assertThatThrownBy(call::run)
+                .isInstanceOfSatisfying(StreamingUploadService.UploadRejectedException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(status));
+    }
+
+    /** What a fresh read of the row returns */
+    private static UploadSession copy(UploadSession s) {
+        return copy(s, s.getStatus());
+    }
+
+    private static UploadSession copy(UploadSession s, String status) {
+        return UploadSession.builder()
+                .id(s.getId()).userId(s.getUserId()).apartmentId(s.getApartmentId())
+                .bucket(s.getBucket()).objectKey(s.getObjectKey()).multipartUploadId(s.getMultipartUploadId())
+                .contentType(s.getContentType()).totalSize(s.getTotalSize()).chunkSize(s.getChunkSize())
+                .status(status).resultId(s.getResultId()).expiresAt(s.getExpiresAt()).updatedAt(s.getUpdatedAt())
+                .build();
+    }
+}